@@ -0,0 +1,117 @@
+package com.example.puzzle_assemble_picture;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import android.app.Instrumentation;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.graphics.RecordingCanvas;
+import android.graphics.RenderNode;
+import android.os.Build;
+import android.os.Bundle;
+import android.view.View;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * So sánh 2 path vẽ cell của PuzzleView trên board 11x11: batched (drawVertices + drawLines) và từng
+ * piece (drawBitmap). Mỗi frame được record vào RenderNode như khi view vẽ trên hardware canvas; kết
+ * quả gửi qua instrumentation status (am instrument -r) để so sánh giữa các máy.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PieceBatchRenderBenchmark {
+    private static final int VIEW_WIDTH = 1080;
+    private static final int VIEW_HEIGHT = 1920;
+    private static final int GRID_SIZE = 11;
+    private static final int WARMUP_FRAMES = 100;
+    private static final int MEASURED_FRAMES = 500;
+    // Record các cell phải vừa trong nửa frame 60Hz để còn thời gian cho phần còn lại của frame
+    private static final long CELL_DRAW_BUDGET_MICROS = 8_333;
+
+    private final long[] cellDrawMicros = new long[2];
+    private final long[] frameMicros = new long[2];
+    private final int[] drawCalls = new int[2];
+
+    @Test
+    public void batchedAndPerPiecePathsStayWithinBudget() {
+        // Hardware canvas chỉ hỗ trợ drawVertices (và RenderNode public) từ API 29
+        assumeTrue(Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q);
+
+        Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+        instrumentation.runOnMainSync(() -> {
+            PuzzleView view = createView(instrumentation);
+            measure(view, false);
+            measure(view, true);
+            view.cleanup();
+        });
+
+        Bundle results = new Bundle();
+        results.putLong("per_piece_cell_draw_us", cellDrawMicros[0]);
+        results.putLong("batched_cell_draw_us", cellDrawMicros[1]);
+        results.putLong("per_piece_frame_us", frameMicros[0]);
+        results.putLong("batched_frame_us", frameMicros[1]);
+        results.putInt("per_piece_draw_calls", drawCalls[0]);
+        results.putInt("batched_draw_calls", drawCalls[1]);
+        instrumentation.sendStatus(0, results);
+
+        assertTrue("Per-piece cell draw " + cellDrawMicros[0] + "us over budget",
+                cellDrawMicros[0] <= CELL_DRAW_BUDGET_MICROS);
+        assertTrue("Batched cell draw " + cellDrawMicros[1] + "us over budget",
+                cellDrawMicros[1] <= CELL_DRAW_BUDGET_MICROS);
+        assertTrue("Batched path issued " + drawCalls[1] + " draw calls, per-piece " + drawCalls[0],
+                drawCalls[1] < drawCalls[0]);
+    }
+
+    private static PuzzleView createView(Instrumentation instrumentation) {
+        PuzzleView view = new PuzzleView(instrumentation.getTargetContext(), null);
+        view.measure(View.MeasureSpec.makeMeasureSpec(VIEW_WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(VIEW_HEIGHT, View.MeasureSpec.EXACTLY));
+        view.layout(0, 0, VIEW_WIDTH, VIEW_HEIGHT);
+
+        Bitmap image = Bitmap.createBitmap(1024, 1024, Bitmap.Config.RGB_565);
+        image.eraseColor(Color.GRAY);
+        PuzzleConfig config = new PuzzleConfig();
+        config.gridSize = GRID_SIZE;
+        config.shuffleSeed = 42;
+        config.initialCorrectFraction = 0.3f; // có cả piece khoá (dim) lẫn piece chưa đúng chỗ
+        view.initPuzzle(image, config, null);
+        // Vẽ cell mỗi frame thay vì phát lại Picture đã record
+        view.setStaticLayerEnabled(false);
+        return view;
+    }
+
+    private void measure(PuzzleView view, boolean batched) {
+        int path = batched ? 1 : 0;
+        view.setBatchedRenderingEnabled(batched);
+        RenderNode node = new RenderNode("PuzzleView");
+        node.setPosition(0, 0, VIEW_WIDTH, VIEW_HEIGHT);
+
+        for (int frame = 0; frame < WARMUP_FRAMES; frame++) {
+            recordFrame(view, node);
+        }
+        view.resetCellDrawStats();
+
+        long start = System.nanoTime();
+        for (int frame = 0; frame < MEASURED_FRAMES; frame++) {
+            recordFrame(view, node);
+        }
+        frameMicros[path] = (System.nanoTime() - start) / MEASURED_FRAMES / 1000;
+        cellDrawMicros[path] = view.getAverageCellDrawMicros(batched);
+        drawCalls[path] = view.getLastCellDrawCalls();
+        node.discardDisplayList();
+    }
+
+    private static void recordFrame(PuzzleView view, RenderNode node) {
+        RecordingCanvas canvas = node.beginRecording();
+        try {
+            view.draw(canvas);
+        } finally {
+            node.endRecording();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.puzzle_assemble_picture;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.RecordingCanvas;
+import android.graphics.RenderNode;
+import android.graphics.Shader;
+import android.os.Build;
+import android.os.Bundle;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dựng hình jigsaw cho board 11x11 (cỡ lớn nhất) và vẽ cả board như PuzzleView.drawShapedPiece, kiểm
+ * tra cả hai nằm trong ngân sách trên máy thật. Thời gian gửi qua instrumentation status.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PieceShapesBudgetTest {
+    private static final int GRID_SIZE = 11;
+    private static final int BOARD_SIZE = 1078; // 98px mỗi cell, board vừa màn hình 1080px
+    private static final int CELL_SIZE = BOARD_SIZE / GRID_SIZE;
+    private static final long SEED = 20240101L;
+    private static final int MEASURED_BUILDS = 5;
+    private static final int WARMUP_FRAMES = 50;
+    private static final int MEASURED_FRAMES = 300;
+    // Record 121 piece có tab phải vừa trong nửa frame 60Hz
+    private static final long DRAW_BUDGET_MICROS = 8_333;
+
+    @Test
+    public void buildStaysWithinBudget() throws InterruptedException {
+        // Lần đầu có cả khởi động pool / JIT, không tính
+        build();
+
+        long totalMillis = 0;
+        long worstMillis = 0;
+        for (int i = 0; i < MEASURED_BUILDS; i++) {
+            long millis = build().getBuildMillis();
+            totalMillis += millis;
+            worstMillis = Math.max(worstMillis, millis);
+        }
+        long averageMillis = totalMillis / MEASURED_BUILDS;
+
+        Bundle results = new Bundle();
+        results.putLong("shapes_build_avg_ms", averageMillis);
+        results.putLong("shapes_build_worst_ms", worstMillis);
+        InstrumentationRegistry.getInstrumentation().sendStatus(0, results);
+
+        assertTrue("Average build " + averageMillis + "ms over " + PieceShapes.BUILD_BUDGET_MS + "ms",
+                averageMillis <= PieceShapes.BUILD_BUDGET_MS);
+    }
+
+    @Test
+    public void drawStaysWithinBudget() throws InterruptedException {
+        // Đo trên hardware canvas như khi PuzzleView vẽ; RenderNode public từ API 29
+        assumeTrue(Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q);
+        PieceShapes shapes = build();
+
+        Bitmap atlas = Bitmap.createBitmap(BOARD_SIZE, BOARD_SIZE, Bitmap.Config.RGB_565);
+        atlas.eraseColor(Color.GRAY);
+        Paint shapePaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG);
+        shapePaint.setShader(new BitmapShader(atlas, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP));
+        Paint borderPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        borderPaint.setStyle(Paint.Style.STROKE);
+        borderPaint.setStrokeWidth(2f);
+
+        RenderNode node = new RenderNode("PieceShapes");
+        node.setPosition(0, 0, BOARD_SIZE, BOARD_SIZE);
+        for (int frame = 0; frame < WARMUP_FRAMES; frame++) {
+            recordBoard(node, shapes, shapePaint, borderPaint);
+        }
+        long start = System.nanoTime();
+        for (int frame = 0; frame < MEASURED_FRAMES; frame++) {
+            recordBoard(node, shapes, shapePaint, borderPaint);
+        }
+        long frameMicros = (System.nanoTime() - start) / MEASURED_FRAMES / 1000;
+        node.discardDisplayList();
+        atlas.recycle();
+
+        Bundle results = new Bundle();
+        results.putLong("shapes_draw_us", frameMicros);
+        InstrumentationRegistry.getInstrumentation().sendStatus(0, results);
+
+        assertTrue("Shaped board draw " + frameMicros + "us over " + DRAW_BUDGET_MICROS + "us",
+                frameMicros <= DRAW_BUDGET_MICROS);
+    }
+
+    private static PieceShapes build() throws InterruptedException {
+        PieceShapes shapes = new PieceShapes(GRID_SIZE, SEED, CELL_SIZE, CELL_SIZE);
+        CountDownLatch ready = new CountDownLatch(1);
+        shapes.buildAsync(ready::countDown);
+        assertTrue("Shapes not built in time", ready.await(10, TimeUnit.SECONDS));
+        assertTrue(shapes.isReady());
+        return shapes;
+    }
+
+    /**
+     * Như PuzzleView.drawShapedPiece cho mọi piece tại đúng cell của nó (piece chưa khoá: fill + viền);
+     * tại cell gốc path đã nằm đúng toạ độ atlas nên không cần translate.
+     */
+    private static void recordBoard(RenderNode node, PieceShapes shapes, Paint shapePaint, Paint borderPaint) {
+        RecordingCanvas canvas = node.beginRecording();
+        try {
+            for (int piece = 0; piece < GRID_SIZE * GRID_SIZE; piece++) {
+                Path path = shapes.getPath(piece);
+                canvas.drawPath(path, shapePaint);
+                canvas.drawPath(path, borderPaint);
+            }
+        } finally {
+            node.endRecording();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.puzzle_assemble_picture;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * LRU cache các Bitmap level đã decode, theo key (level, kích thước decode) và giới hạn bằng byte.
+ *
+ * Mỗi entry có bộ đếm tham chiếu: acquire / put tăng, release giảm. Chỉ entry không còn ai dùng mới
+ * bị đẩy ra (cũ nhất trước) và recycle khi vượt ngân sách, nên màn hình này không thể recycle Bitmap
+ * màn hình khác đang vẽ. Entry đang dùng vẫn tính vào ngân sách. Chỉ dùng trên main thread.
+ */
+final class BitmapCache {
+    private static final String TAG = "BitmapCache";
+
+    private static final class Entry {
+        final long key;
+        final Bitmap bitmap;
+        final int bytes;
+        int refCount;
+
+        Entry(long key, Bitmap bitmap, int refCount) {
+            this.key = key;
+            this.bitmap = bitmap;
+            this.bytes = bitmap.getAllocationByteCount();
+            this.refCount = refCount;
+        }
+    }
+
+    private final long maxBytes;
+    // accessOrder = true: entry vừa acquire chuyển về cuối, đầu map là entry lâu nhất chưa dùng
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final IdentityHashMap<Bitmap, Entry> byBitmap = new IdentityHashMap<>();
+    private long cachedBytes;
+    private int hits, misses;
+
+    BitmapCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    static long key(int levelNumber, int decodeSize) {
+        return ((long) levelNumber << 32) | (decodeSize & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Bitmap đã cache cho key (tăng bộ đếm), hoặc null nếu chưa có.
+     */
+    Bitmap acquire(long key) {
+        Entry entry = entries.get(key);
+        if (entry == null || entry.bitmap.isRecycled()) {
+            misses++;
+            return null;
+        }
+        hits++;
+        entry.refCount++;
+        return entry.bitmap;
+    }
+
+    /**
+     * Thêm Bitmap vừa decode, đã được refCount caller giữ.
+     */
+    void put(long key, Bitmap bitmap, int refCount) {
+        Entry old = entries.remove(key);
+        if (old != null) {
+            // Hiếm: decode trùng key; entry cũ thành mồ côi, recycle khi caller cuối trả lại
+            cachedBytes -= old.bytes;
+            if (old.refCount == 0) {
+                recycle(old);
+            }
+        }
+
+        Entry entry = new Entry(key, bitmap, refCount);
+        entries.put(key, entry);
+        byBitmap.put(bitmap, entry);
+        cachedBytes += entry.bytes;
+        trimTo(maxBytes);
+    }
+
+    /**
+     * Trả lại một tham chiếu.
+     *
+     * @return false nếu Bitmap không do cache quản lý (caller tự xử lý)
+     */
+    boolean release(Bitmap bitmap) {
+        Entry entry = byBitmap.get(bitmap);
+        if (entry == null) {
+            return false;
+        }
+        if (entry.refCount > 0) {
+            entry.refCount--;
+        }
+        if (entry.refCount == 0) {
+            if (entries.get(entry.key) != entry) {
+                recycle(entry);
+            } else {
+                trimTo(maxBytes);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Đẩy các entry không còn ai dùng (cũ nhất trước) tới khi tổng còn ≤ targetBytes.
+     */
+    void trimTo(long targetBytes) {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (cachedBytes > targetBytes && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.refCount > 0) {
+                continue;
+            }
+            iterator.remove();
+            cachedBytes -= entry.bytes;
+            recycle(entry);
+        }
+    }
+
+    private void recycle(Entry entry) {
+        byBitmap.remove(entry.bitmap);
+        if (!entry.bitmap.isRecycled()) {
+            entry.bitmap.recycle();
+        }
+        Log.d(TAG, "Evicted level " + (entry.key >>> 32) + " (" + entry.bytes / 1024 + " KB), cache "
+                + cachedBytes / 1024 + "/" + maxBytes / 1024 + " KB, hits " + hits + ", misses " + misses);
+    }
+
+    long getMaxBytes() {
+        return maxBytes;
+    }
+
+    long getCachedBytes() {
+        return cachedBytes;
+    }
+}
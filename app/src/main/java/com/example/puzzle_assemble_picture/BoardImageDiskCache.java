@@ -0,0 +1,178 @@
+package com.example.puzzle_assemble_picture;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache trên đĩa của ảnh board đã scale (atlas của PuzzleView) theo level và kích thước view, để lần
+ * mở level sau bỏ qua cả decode WebP lẫn createScaledBitmap.
+ *
+ * File là pixel thô (header 16 byte + bộ nhớ Bitmap nguyên trạng), đọc bằng FileChannel.map rồi
+ * copyPixelsFromBuffer - không giải nén. Tổng dung lượng giới hạn bằng byte, đẩy file dùng lâu nhất ra
+ * trước. Gọi từ thread nền (các hàm đồng bộ với nhau).
+ */
+final class BoardImageDiskCache {
+    private static final String TAG = "BoardImageDiskCache";
+
+    private static final int MAGIC = 0x505A4249; // "PZBI"
+    private static final int HEADER_BYTES = 16;
+    private static final int CONFIG_ARGB_8888 = 0;
+    private static final int CONFIG_RGB_565 = 1;
+    private static final String SUFFIX = ".px";
+
+    private final File dir;
+    private final long maxBytes;
+    // Tên file -> kích thước; accessOrder = true nên đầu map là file lâu nhất chưa dùng
+    private LinkedHashMap<String, Long> index;
+    private long totalBytes;
+
+    BoardImageDiskCache(File dir, long maxBytes) {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+    }
+
+    static String key(int levelNumber, int viewWidth, int viewHeight) {
+        return "L" + levelNumber + "_" + viewWidth + "x" + viewHeight;
+    }
+
+    /**
+     * Ảnh board đã lưu cho key, hoặc null nếu chưa có / file hỏng.
+     */
+    synchronized Bitmap read(String key) {
+        ensureIndex();
+        String name = key + SUFFIX;
+        if (!index.containsKey(name)) {
+            return null;
+        }
+
+        File file = new File(dir, name);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (mapped.remaining() < HEADER_BYTES || mapped.getInt() != MAGIC) {
+                throw new IOException("Bad header");
+            }
+            int width = mapped.getInt();
+            int height = mapped.getInt();
+            Bitmap.Config config = mapped.getInt() == CONFIG_RGB_565 ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+            int bytesPerPixel = config == Bitmap.Config.RGB_565 ? 2 : 4;
+            if (width <= 0 || height <= 0 || mapped.remaining() != (long) width * height * bytesPerPixel) {
+                throw new IOException("Bad size " + width + "x" + height);
+            }
+
+            Bitmap bitmap = Bitmap.createBitmap(width, height, config);
+            bitmap.copyPixelsFromBuffer(mapped);
+            index.get(name); // đánh dấu vừa dùng
+            file.setLastModified(System.currentTimeMillis());
+            return bitmap;
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Dropping unreadable " + name, e);
+            remove(name);
+            return null;
+        }
+    }
+
+    /**
+     * Lưu pixel (bitmap.copyPixelsToBuffer) của ảnh board; ghi file tạm rồi rename nên không bao giờ
+     * để lại file dở dang dưới tên thật.
+     */
+    synchronized void write(String key, int width, int height, Bitmap.Config config, ByteBuffer pixels) {
+        ensureIndex();
+        String name = key + SUFFIX;
+        File tmp = new File(dir, name + ".tmp");
+        File file = new File(dir, name);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(width).putInt(height)
+                .putInt(config == Bitmap.Config.RGB_565 ? CONFIG_RGB_565 : CONFIG_ARGB_8888);
+        header.flip();
+        pixels.rewind();
+
+        try (RandomAccessFile raf = new RandomAccessFile(tmp, "rw");
+             FileChannel channel = raf.getChannel()) {
+            raf.setLength(0);
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            while (pixels.hasRemaining()) {
+                channel.write(pixels);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot write " + name, e);
+            tmp.delete();
+            return;
+        }
+
+        remove(name);
+        if (!tmp.renameTo(file)) {
+            Log.w(TAG, "Cannot rename " + tmp);
+            tmp.delete();
+            return;
+        }
+        long length = file.length();
+        index.put(name, length);
+        totalBytes += length;
+        trim();
+        Log.d(TAG, "Stored " + name + " (" + length / 1024 + " KB), total " + totalBytes / 1024 + " KB");
+    }
+
+    private void trim() {
+        Iterator<Map.Entry<String, Long>> iterator = index.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            iterator.remove();
+            totalBytes -= eldest.getValue();
+            new File(dir, eldest.getKey()).delete();
+        }
+    }
+
+    private void remove(String name) {
+        Long length = index.remove(name);
+        if (length != null) {
+            totalBytes -= length;
+        }
+        new File(dir, name).delete();
+    }
+
+    /**
+     * Lần đầu: quét thư mục, xếp theo lastModified để giữ thứ tự LRU giữa các lần mở app.
+     */
+    private void ensureIndex() {
+        if (index != null) {
+            return;
+        }
+        index = new LinkedHashMap<>(16, 0.75f, true);
+        totalBytes = 0;
+        if (!dir.exists() && !dir.mkdirs()) {
+            Log.w(TAG, "Cannot create " + dir);
+            return;
+        }
+
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File file : files) {
+            if (file.getName().endsWith(SUFFIX)) {
+                index.put(file.getName(), file.length());
+                totalBytes += file.length();
+            } else {
+                // File tạm sót lại từ lần ghi bị ngắt
+                file.delete();
+            }
+        }
+        trim();
+    }
+}
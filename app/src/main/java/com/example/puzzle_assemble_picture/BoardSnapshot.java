@@ -0,0 +1,134 @@
+package com.example.puzzle_assemble_picture;
+
+import android.animation.TimeInterpolator;
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Trạng thái board PuzzleView ghi trên UI thread và PuzzleRenderThread đọc trên render thread.
+ * Không giữ tham chiếu tới PuzzlePiece / grid nên render thread không bao giờ thấy state đang bị sửa dở.
+ *
+ * Snapshot được dùng lại theo vòng (PuzzleView giữ SNAPSHOT_POOL_SIZE cái, mảng cấp phát một lần theo
+ * số cell): UI thread chỉ ghi snapshot có inRender = false; render thread trả lại (inRender = false)
+ * khi đã có snapshot mới hơn hoặc khi bị clear, nên vẽ mỗi frame không cấp phát gì.
+ */
+final class BoardSnapshot {
+    static final int EMPTY = -1;
+    static final int LOCKED_BIT = 1 << 30;
+    static final int INDEX_MASK = LOCKED_BIT - 1;
+
+    // true từ lúc publish tới khi render thread trả lại
+    final AtomicBoolean inRender = new AtomicBoolean(false);
+
+    Bitmap atlas;
+    // Source rect trong atlas theo piece index (correctRow * gridSize + correctCol), dùng chung giữa các snapshot
+    Rect[] sourceRects;
+    int gridSize;
+    float gridX, gridY;
+    int gridWidth, gridHeight;
+    int cellWidth, cellHeight;
+    boolean dimLockedPieces;
+
+    float scaleFactor, panX, panY;
+
+    // Piece index tại mỗi cell (row * gridSize + col), | LOCKED_BIT nếu đã khoá, EMPTY nếu trống
+    final int[] cells;
+    // Số lần xoay 90° theo piece index (bản sao của board)
+    final byte[] rotations;
+    int selectedCell;
+    // Cell của piece / nhóm đang kéo (phần tử đầu là piece được chạm, vẽ tại draggedX/Y)
+    final int[] draggedCells;
+    int draggedCount;
+    float draggedX, draggedY;
+    final Tween[] tweens;
+    int tweenCount;
+    // Piece đang kéo hoặc có tween, bị bỏ qua khi vẽ theo cells
+    private final boolean[] moving;
+
+    BoardSnapshot(int cellCount) {
+        cells = new int[cellCount];
+        rotations = new byte[cellCount];
+        draggedCells = new int[cellCount];
+        tweens = new Tween[cellCount];
+        for (int i = 0; i < cellCount; i++) {
+            tweens[i] = new Tween();
+        }
+        moving = new boolean[cellCount];
+    }
+
+    int getCellCount() {
+        return cells.length;
+    }
+
+    /**
+     * Gọi sau khi đã ghi cells / draggedCells / tweens, trước khi publish.
+     */
+    void updateMoving() {
+        Arrays.fill(moving, false);
+        for (int i = 0; i < draggedCount; i++) {
+            int value = cells[draggedCells[i]];
+            if (value != EMPTY) {
+                moving[value & INDEX_MASK] = true;
+            }
+        }
+        for (int i = 0; i < tweenCount; i++) {
+            moving[tweens[i].pieceIndex] = true;
+        }
+    }
+
+    boolean isMoving(int pieceIndex) {
+        return moving[pieceIndex];
+    }
+
+    boolean hasRunningTweens(long frameTimeNanos) {
+        for (int i = 0; i < tweenCount; i++) {
+            Tween tween = tweens[i];
+            if (frameTimeNanos < tween.startNanos + tween.durationNanos) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Di chuyển một piece theo thời gian (System.nanoTime), để render thread tự nội suy vị trí
+     * mà không cần chờ ValueAnimator trên UI thread.
+     */
+    static final class Tween {
+        int pieceIndex;
+        float fromX, fromY, toX, toY;
+        long startNanos;
+        long durationNanos;
+        // Interpolator của framework không có state nên dùng chung giữa 2 thread được
+        TimeInterpolator interpolator;
+
+        void set(int pieceIndex, float fromX, float fromY, float toX, float toY,
+                 long startNanos, long durationNanos, TimeInterpolator interpolator) {
+            this.pieceIndex = pieceIndex;
+            this.fromX = fromX;
+            this.fromY = fromY;
+            this.toX = toX;
+            this.toY = toY;
+            this.startNanos = startNanos;
+            this.durationNanos = durationNanos;
+            this.interpolator = interpolator;
+        }
+
+        float progress(long frameTimeNanos) {
+            float t = (float) (frameTimeNanos - startNanos) / durationNanos;
+            t = Math.max(0f, Math.min(1f, t));
+            return interpolator.getInterpolation(t);
+        }
+
+        float x(float progress) {
+            return fromX + (toX - fromX) * progress;
+        }
+
+        float y(float progress) {
+            return fromY + (toY - fromY) * progress;
+        }
+    }
+}
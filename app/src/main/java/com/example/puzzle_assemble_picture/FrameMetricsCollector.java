@@ -0,0 +1,248 @@
+package com.example.puzzle_assemble_picture;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+import android.view.FrameMetrics;
+import android.view.Window;
+
+import com.google.gson.Gson;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Thu thập frame time của GameActivity trong khi chơi một level (Window.addOnFrameMetricsAvailableListener).
+ * Frames được chia theo trạng thái tương tác của PuzzleView; khi kết thúc, p50/p90/p99 + số frame jank
+ * cùng thời gian vẽ cell của PuzzleView (batched / từng piece, số cell bị cull) được ghi thêm một dòng
+ * JSON vào files/frame_metrics.jsonl (adb pull để tổng hợp).
+ */
+public class FrameMetricsCollector {
+    private static final String TAG = "FrameMetricsCollector";
+
+    private static final String FILE_NAME = "frame_metrics.jsonl";
+    private static final long MAX_FILE_BYTES = 512 * 1024;
+    private static final String[] STATE_NAMES = {"idle", "dragging", "swap_animation", "shuffle", "completion"};
+
+    // Histogram 0.25ms / bucket tới 250ms, frame dài hơn vào bucket cuối
+    private static final long BUCKET_NANOS = 250_000L;
+    private static final int BUCKET_COUNT = 1000;
+
+    private static final ExecutorService writeExecutor = Executors.newSingleThreadExecutor();
+
+    private final Context context;
+    private final Window window;
+    private final PuzzleView puzzleView;
+    private final int level;
+    private final String mode;
+    private final int gridSize;
+    private final long frameIntervalNanos;
+
+    // Chỉ ghi trên metricsThread
+    private final int[][] histograms = new int[PuzzleView.STATE_COUNT][BUCKET_COUNT];
+    private final int[] frameCounts = new int[PuzzleView.STATE_COUNT];
+    private final int[] jankCounts = new int[PuzzleView.STATE_COUNT];
+    private final long[] maxNanos = new long[PuzzleView.STATE_COUNT];
+
+    private HandlerThread metricsThread;
+    private Handler metricsHandler;
+    private long startTimeMillis;
+
+    private final Window.OnFrameMetricsAvailableListener frameListener = this::onFrameMetricsAvailable;
+
+    public FrameMetricsCollector(Context context, Window window, PuzzleView puzzleView,
+                                 int level, String mode, int gridSize, float refreshRate) {
+        this.context = context.getApplicationContext();
+        this.window = window;
+        this.puzzleView = puzzleView;
+        this.level = level;
+        this.mode = mode;
+        this.gridSize = gridSize;
+        this.frameIntervalNanos = (long) (1_000_000_000L / (refreshRate > 0 ? refreshRate : 60f));
+    }
+
+    public void start() {
+        if (metricsThread != null) {
+            return;
+        }
+
+        metricsThread = new HandlerThread(TAG);
+        metricsThread.start();
+        metricsHandler = new Handler(metricsThread.getLooper());
+        startTimeMillis = System.currentTimeMillis();
+        puzzleView.resetCellDrawStats();
+        window.addOnFrameMetricsAvailableListener(frameListener, metricsHandler);
+    }
+
+    private void onFrameMetricsAvailable(Window w, FrameMetrics frameMetrics, int dropCount) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
+                && frameMetrics.getMetric(FrameMetrics.FIRST_DRAW_FRAME) == 1) {
+            return;
+        }
+        record(puzzleView.getInteractionState(), frameMetrics.getMetric(FrameMetrics.TOTAL_DURATION));
+    }
+
+    private void record(int state, long durationNanos) {
+        if (state < 0 || state >= PuzzleView.STATE_COUNT) {
+            state = PuzzleView.STATE_IDLE;
+        }
+
+        int bucket = (int) Math.min(BUCKET_COUNT - 1, durationNanos / BUCKET_NANOS);
+        histograms[state][bucket]++;
+        frameCounts[state]++;
+        if (durationNanos > frameIntervalNanos) {
+            jankCounts[state]++;
+        }
+        if (durationNanos > maxNanos[state]) {
+            maxNanos[state] = durationNanos;
+        }
+    }
+
+    /**
+     * Dừng thu thập và ghi kết quả của session vào file (trên background thread).
+     */
+    public void stop() {
+        if (metricsThread == null) {
+            return;
+        }
+
+        try {
+            window.removeOnFrameMetricsAvailableListener(frameListener);
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "Frame metrics listener already removed", e);
+        }
+
+        HandlerThread thread = metricsThread;
+        metricsThread = null;
+        long endTimeMillis = System.currentTimeMillis();
+        // Số liệu vẽ của PuzzleView chỉ đọc trên UI thread
+        DrawStats drawStats = new DrawStats();
+        drawStats.batchedRendering = puzzleView.isBatchedRenderingEnabled();
+        drawStats.cellDrawMicrosBatched = puzzleView.getAverageCellDrawMicros(true);
+        drawStats.cellDrawMicrosPerPiece = puzzleView.getAverageCellDrawMicros(false);
+        drawStats.lastCellDrawCalls = puzzleView.getLastCellDrawCalls();
+        drawStats.lastDrawnCells = puzzleView.getLastDrawnCellCount();
+        drawStats.lastCulledCells = puzzleView.getLastCulledCellCount();
+
+        // Tổng hợp trên metricsThread để không đua với frame đang được record
+        metricsHandler.post(() -> {
+            SessionReport report = buildReport(endTimeMillis);
+            report.draw = drawStats;
+            thread.quitSafely();
+            if (report.totalFrames > 0) {
+                writeExecutor.execute(() -> appendReport(report));
+            }
+        });
+    }
+
+    private SessionReport buildReport(long endTimeMillis) {
+        SessionReport report = new SessionReport();
+        report.level = level;
+        report.mode = mode;
+        report.gridSize = gridSize;
+        report.device = Build.MANUFACTURER + " " + Build.MODEL;
+        report.sdkInt = Build.VERSION.SDK_INT;
+        report.frameIntervalMs = frameIntervalNanos / 1_000_000f;
+        report.startTime = startTimeMillis;
+        report.durationMs = endTimeMillis - startTimeMillis;
+
+        for (int state = 0; state < PuzzleView.STATE_COUNT; state++) {
+            int count = frameCounts[state];
+            if (count == 0) {
+                continue;
+            }
+
+            StateStats stats = new StateStats();
+            stats.state = STATE_NAMES[state];
+            stats.frames = count;
+            stats.jankFrames = jankCounts[state];
+            stats.p50Ms = percentileMs(histograms[state], count, 0.50f);
+            stats.p90Ms = percentileMs(histograms[state], count, 0.90f);
+            stats.p99Ms = percentileMs(histograms[state], count, 0.99f);
+            stats.maxMs = maxNanos[state] / 1_000_000f;
+            report.states.add(stats);
+
+            report.totalFrames += count;
+            report.totalJankFrames += stats.jankFrames;
+        }
+        return report;
+    }
+
+    private static float percentileMs(int[] histogram, int count, float percentile) {
+        int target = (int) Math.ceil(count * percentile);
+        int seen = 0;
+        for (int bucket = 0; bucket < histogram.length; bucket++) {
+            seen += histogram[bucket];
+            if (seen >= target) {
+                // Cận trên của bucket
+                return (bucket + 1) * BUCKET_NANOS / 1_000_000f;
+            }
+        }
+        return BUCKET_COUNT * BUCKET_NANOS / 1_000_000f;
+    }
+
+    private void appendReport(SessionReport report) {
+        File file = new File(context.getFilesDir(), FILE_NAME);
+        if (file.length() > MAX_FILE_BYTES) {
+            File old = new File(context.getFilesDir(), FILE_NAME + ".old");
+            if (old.exists() && !old.delete()) {
+                Log.w(TAG, "Cannot delete old metrics file");
+            }
+            if (!file.renameTo(old)) {
+                Log.w(TAG, "Cannot rotate metrics file");
+            }
+        }
+
+        try (FileWriter writer = new FileWriter(file, true)) {
+            writer.write(new Gson().toJson(report));
+            writer.write('\n');
+            Log.d(TAG, "Frame metrics saved: level " + report.level + " " + report.mode
+                    + " " + report.gridSize + "x" + report.gridSize + ", " + report.totalFrames
+                    + " frames, " + report.totalJankFrames + " jank");
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing frame metrics", e);
+        }
+    }
+
+    static class SessionReport {
+        int level;
+        String mode;
+        int gridSize;
+        String device;
+        int sdkInt;
+        float frameIntervalMs;
+        long startTime;
+        long durationMs;
+        int totalFrames;
+        int totalJankFrames;
+        DrawStats draw;
+        List<StateStats> states = new ArrayList<>();
+    }
+
+    static class DrawStats {
+        boolean batchedRendering;
+        // Thời gian CPU trung bình vẽ / record các cell theo path, 0 nếu path không được dùng
+        long cellDrawMicrosBatched;
+        long cellDrawMicrosPerPiece;
+        int lastCellDrawCalls;
+        int lastDrawnCells;
+        int lastCulledCells;
+    }
+
+    static class StateStats {
+        String state;
+        int frames;
+        int jankFrames;
+        float p50Ms;
+        float p90Ms;
+        float p99Ms;
+        float maxMs;
+    }
+}
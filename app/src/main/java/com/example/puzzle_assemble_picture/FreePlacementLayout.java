@@ -0,0 +1,449 @@
+package com.example.puzzle_assemble_picture;
+
+import java.util.Random;
+
+/**
+ * State của chế độ đặt tự do: piece nằm ở toạ độ bất kỳ quanh board (toạ độ content của PuzzleView),
+ * có z-order, và hút vào đúng chỗ hoặc vào piece kề đúng khi thả đủ gần.
+ *
+ * Piece hút vào nhau được gom nhóm (PieceGroups) và di chuyển cùng nhau; nhóm chạm đúng chỗ thì
+ * được đặt (placed) - không kéo được nữa và được tính là đúng / đã khoá. Hit-test qua PieceSpatialHash.
+ */
+final class FreePlacementLayout {
+    static final int DROP_NONE = 0;
+    static final int DROP_SNAPPED = 1;
+    static final int DROP_PLACED = 2;
+
+    /**
+     * Hình thật của piece (vd. tab / blank jigsaw); toạ độ tính từ góc trên trái ô của piece.
+     */
+    interface HitMask {
+        boolean contains(int piece, float localX, float localY);
+    }
+
+    // Khoảng cách hút tính theo phần kích thước piece
+    private static final float SNAP_FRACTION = 0.25f;
+    // Lệch tối đa (px) để coi hai piece là đã khít sau khi hút
+    private static final float ALIGN_EPSILON = 0.5f;
+
+    private final int gridSize;
+    private final int pieceCount;
+    private final float boardX, boardY;
+    private final float pieceWidth, pieceHeight;
+    private final float areaX, areaY, areaWidth, areaHeight;
+    private final float snapDistance;
+
+    private final float[] x;
+    private final float[] y;
+    private final boolean[] placed;
+    private int placedCount;
+
+    // Thứ tự vẽ từ dưới lên, zRank[piece] = vị trí trong zOrder
+    private final int[] zOrder;
+    private final int[] zRank;
+
+    private final PieceGroups groups;
+    private final PieceSpatialHash hash;
+
+    private final int[] members;
+    private final boolean[] moving;
+
+    // Mặc định piece là hình chữ nhật; overhang là phần hình lồi ra ngoài ô
+    private HitMask hitMask;
+    private float overhang;
+
+    FreePlacementLayout(int gridSize, float boardX, float boardY, float pieceWidth, float pieceHeight,
+                        float areaX, float areaY, float areaWidth, float areaHeight) {
+        this.gridSize = gridSize;
+        this.pieceCount = gridSize * gridSize;
+        this.boardX = boardX;
+        this.boardY = boardY;
+        this.pieceWidth = pieceWidth;
+        this.pieceHeight = pieceHeight;
+        this.areaX = areaX;
+        this.areaY = areaY;
+        this.areaWidth = Math.max(areaWidth, pieceWidth);
+        this.areaHeight = Math.max(areaHeight, pieceHeight);
+        this.snapDistance = Math.min(pieceWidth, pieceHeight) * SNAP_FRACTION;
+
+        x = new float[pieceCount];
+        y = new float[pieceCount];
+        placed = new boolean[pieceCount];
+        zOrder = new int[pieceCount];
+        zRank = new int[pieceCount];
+        groups = new PieceGroups(gridSize);
+        hash = new PieceSpatialHash(areaX, areaY, this.areaWidth, this.areaHeight, pieceWidth, pieceHeight);
+        members = new int[pieceCount];
+        moving = new boolean[pieceCount];
+
+        for (int i = 0; i < pieceCount; i++) {
+            zOrder[i] = i;
+            zRank[i] = i;
+        }
+    }
+
+    // ===== Truy vấn =====
+
+    int getPieceCount() {
+        return pieceCount;
+    }
+
+    float getX(int piece) {
+        return x[piece];
+    }
+
+    float getY(int piece) {
+        return y[piece];
+    }
+
+    boolean isPlaced(int piece) {
+        return placed[piece];
+    }
+
+    int getPlacedCount() {
+        return placedCount;
+    }
+
+    boolean isComplete() {
+        return placedCount == pieceCount;
+    }
+
+    /**
+     * Piece thứ index theo thứ tự vẽ (0 = dưới cùng).
+     */
+    int pieceAtDepth(int index) {
+        return zOrder[index];
+    }
+
+    float targetX(int piece) {
+        return boardX + (piece % gridSize) * pieceWidth;
+    }
+
+    float targetY(int piece) {
+        return boardY + (piece / gridSize) * pieceHeight;
+    }
+
+    /**
+     * Piece trên cùng (chưa đặt) chứa điểm (px, py), hoặc -1.
+     */
+    int hitTest(float px, float py) {
+        int bucket = hash.bucketAt(px, py);
+        int best = -1;
+        for (int i = 0; i < hash.bucketSize(bucket); i++) {
+            int piece = hash.bucketItem(bucket, i);
+            if ((best < 0 || zRank[piece] > zRank[best]) && containsPoint(piece, px, py)) {
+                best = piece;
+            }
+        }
+        return best;
+    }
+
+    private boolean containsPoint(int piece, float px, float py) {
+        float localX = px - x[piece];
+        float localY = py - y[piece];
+        if (hitMask == null) {
+            return localX >= 0 && localX < pieceWidth && localY >= 0 && localY < pieceHeight;
+        }
+        return localX >= -overhang && localX < pieceWidth + overhang
+                && localY >= -overhang && localY < pieceHeight + overhang
+                && hitMask.contains(piece, localX, localY);
+    }
+
+    /**
+     * Ghi các piece cùng nhóm với piece vào out (piece đứng đầu).
+     */
+    int collectGroup(int piece, int[] out) {
+        return groups.collectMembers(piece, out);
+    }
+
+    // ===== Thay đổi state =====
+
+    /**
+     * Đổi hình dùng cho hit-test (null = chữ nhật); hash được dựng lại với rect nới thêm overhang.
+     */
+    void setHitMask(HitMask mask, float maskOverhang) {
+        hitMask = mask;
+        overhang = mask != null ? maskOverhang : 0f;
+        hash.clear();
+        for (int piece = 0; piece < pieceCount; piece++) {
+            if (!placed[piece]) {
+                hashInsert(piece, x[piece], y[piece]);
+            }
+        }
+    }
+
+    /**
+     * Rải mọi piece ngẫu nhiên trong vùng chơi, bỏ nhóm và trạng thái đã đặt.
+     */
+    void scatter(Random random) {
+        groups.reset();
+        hash.clear();
+        placedCount = 0;
+        for (int piece = 0; piece < pieceCount; piece++) {
+            placed[piece] = false;
+            x[piece] = areaX + random.nextFloat() * (areaWidth - pieceWidth);
+            y[piece] = areaY + random.nextFloat() * (areaHeight - pieceHeight);
+            hashInsert(piece, x[piece], y[piece]);
+        }
+        shuffleDepth(random);
+    }
+
+    /**
+     * Rải lại các piece chưa đặt (nhóm của chúng bị tách).
+     *
+     * @return số piece đã rải
+     */
+    int scatterUnplaced(Random random) {
+        int count = 0;
+        for (int piece = 0; piece < pieceCount; piece++) {
+            if (!placed[piece]) {
+                members[count++] = piece;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            int piece = members[i];
+            hashRemove(piece, x[piece], y[piece]);
+            x[piece] = areaX + random.nextFloat() * (areaWidth - pieceWidth);
+            y[piece] = areaY + random.nextFloat() * (areaHeight - pieceHeight);
+            hashInsert(piece, x[piece], y[piece]);
+        }
+        rebuildGroups();
+        return count;
+    }
+
+    private void shuffleDepth(Random random) {
+        for (int i = pieceCount - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = zOrder[i];
+            zOrder[i] = zOrder[j];
+            zOrder[j] = tmp;
+        }
+        for (int i = 0; i < pieceCount; i++) {
+            zRank[zOrder[i]] = i;
+        }
+    }
+
+    /**
+     * Đưa cả nhóm của piece lên trên cùng, giữ thứ tự tương đối. Chỉ gọi khi bắt đầu kéo.
+     *
+     * @return số piece trong nhóm (ghi vào out)
+     */
+    int bringGroupToFront(int piece, int[] out) {
+        int count = groups.collectMembers(piece, out);
+        for (int i = 0; i < count; i++) {
+            moving[out[i]] = true;
+        }
+
+        int write = 0;
+        for (int read = 0; read < pieceCount; read++) {
+            int p = zOrder[read];
+            if (!moving[p]) {
+                zOrder[write++] = p;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            zOrder[write++] = out[i];
+            moving[out[i]] = false;
+        }
+        for (int i = 0; i < pieceCount; i++) {
+            zRank[zOrder[i]] = i;
+        }
+        return count;
+    }
+
+    /**
+     * Dịch cả nhóm (members[0..count) từ bringGroupToFront) đi (dx, dy), giữ trong vùng chơi.
+     */
+    void translateGroup(int[] group, int count, float dx, float dy) {
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            int piece = group[i];
+            minX = Math.min(minX, x[piece]);
+            minY = Math.min(minY, y[piece]);
+            maxX = Math.max(maxX, x[piece]);
+            maxY = Math.max(maxY, y[piece]);
+        }
+        dx = Math.max(areaX - minX, Math.min(areaX + areaWidth - pieceWidth - maxX, dx));
+        dy = Math.max(areaY - minY, Math.min(areaY + areaHeight - pieceHeight - maxY, dy));
+
+        for (int i = 0; i < count; i++) {
+            setPosition(group[i], x[group[i]] + dx, y[group[i]] + dy);
+        }
+    }
+
+    /**
+     * Thả nhóm: hút vào đúng chỗ nếu có piece đủ gần cell của nó, không thì hút vào piece kề đúng gần nhất.
+     *
+     * @return DROP_NONE / DROP_SNAPPED / DROP_PLACED
+     */
+    int drop(int[] group, int count) {
+        // 1. Đúng chỗ trên board
+        for (int i = 0; i < count; i++) {
+            int piece = group[i];
+            float dx = targetX(piece) - x[piece];
+            float dy = targetY(piece) - y[piece];
+            if (Math.abs(dx) <= snapDistance && Math.abs(dy) <= snapDistance) {
+                translateExact(group, count, dx, dy);
+                placeGroup(group, count);
+                return DROP_PLACED;
+            }
+        }
+
+        // 2. Piece kề đúng (biết trước theo index nên không cần tìm trong hash)
+        for (int i = 0; i < count; i++) {
+            int piece = group[i];
+            int row = piece / gridSize;
+            int col = piece % gridSize;
+            if (col > 0 && trySnapTo(group, count, piece, piece - 1, -1, 0)) return DROP_SNAPPED;
+            if (col < gridSize - 1 && trySnapTo(group, count, piece, piece + 1, 1, 0)) return DROP_SNAPPED;
+            if (row > 0 && trySnapTo(group, count, piece, piece - gridSize, 0, -1)) return DROP_SNAPPED;
+            if (row < gridSize - 1 && trySnapTo(group, count, piece, piece + gridSize, 0, 1)) return DROP_SNAPPED;
+        }
+        return DROP_NONE;
+    }
+
+    private boolean trySnapTo(int[] group, int count, int piece, int neighbor, int colStep, int rowStep) {
+        if (groups.sameGroup(piece, neighbor)) {
+            return false;
+        }
+
+        // Vị trí piece cần có để khít với neighbor
+        float wantX = x[neighbor] - colStep * pieceWidth;
+        float wantY = y[neighbor] - rowStep * pieceHeight;
+        float dx = wantX - x[piece];
+        float dy = wantY - y[piece];
+        if (Math.abs(dx) > snapDistance || Math.abs(dy) > snapDistance) {
+            return false;
+        }
+
+        if (placed[neighbor]) {
+            // Khít với piece đã đặt = đúng chỗ
+            translateExact(group, count, dx, dy);
+            placeGroup(group, count);
+            return true;
+        }
+
+        translateExact(group, count, dx, dy);
+        connectAligned(group, count);
+        return true;
+    }
+
+    private void translateExact(int[] group, int count, float dx, float dy) {
+        for (int i = 0; i < count; i++) {
+            setPosition(group[i], x[group[i]] + dx, y[group[i]] + dy);
+        }
+    }
+
+    /**
+     * Nối các piece trong group với mọi piece kề đúng đang khít với chúng.
+     */
+    private void connectAligned(int[] group, int count) {
+        for (int i = 0; i < count; i++) {
+            connectAlignedNeighbors(group[i]);
+        }
+    }
+
+    private void connectAlignedNeighbors(int piece) {
+        int row = piece / gridSize;
+        int col = piece % gridSize;
+        if (col > 0) connectIfAligned(piece, piece - 1, -1, 0);
+        if (col < gridSize - 1) connectIfAligned(piece, piece + 1, 1, 0);
+        if (row > 0) connectIfAligned(piece, piece - gridSize, 0, -1);
+        if (row < gridSize - 1) connectIfAligned(piece, piece + gridSize, 0, 1);
+    }
+
+    private void connectIfAligned(int piece, int neighbor, int colStep, int rowStep) {
+        if (placed[piece] != placed[neighbor]) {
+            return;
+        }
+        float dx = x[neighbor] - colStep * pieceWidth - x[piece];
+        float dy = y[neighbor] - rowStep * pieceHeight - y[piece];
+        if (Math.abs(dx) <= ALIGN_EPSILON && Math.abs(dy) <= ALIGN_EPSILON) {
+            groups.union(piece, neighbor);
+        }
+    }
+
+    private void placeGroup(int[] group, int count) {
+        for (int i = 0; i < count; i++) {
+            int piece = group[i];
+            if (!placed[piece]) {
+                placed[piece] = true;
+                placedCount++;
+                // Piece đã đặt không còn kéo được nên không cần hit-test
+                hashRemove(piece, x[piece], y[piece]);
+            }
+        }
+        connectAligned(group, count);
+    }
+
+    /**
+     * Đặt piece thẳng vào đúng chỗ (auto solve), kèm cả nhóm của nó.
+     *
+     * @return số piece trong nhóm (ghi vào out, vị trí cũ đọc trước khi gọi)
+     */
+    int placeGroupOf(int piece, int[] out) {
+        int count = groups.collectMembers(piece, out);
+        translateExact(out, count, targetX(piece) - x[piece], targetY(piece) - y[piece]);
+        placeGroup(out, count);
+        return count;
+    }
+
+    /**
+     * Piece chưa đặt đầu tiên theo index, hoặc -1.
+     */
+    int firstUnplaced() {
+        for (int piece = 0; piece < pieceCount; piece++) {
+            if (!placed[piece]) {
+                return piece;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Khôi phục vị trí từ game đã lưu; nhóm được dựng lại sau khi đặt xong mọi piece (rebuildGroups).
+     */
+    void restore(int piece, float px, float py, boolean isPlaced) {
+        if (placed[piece]) {
+            placedCount--;
+        } else {
+            hashRemove(piece, x[piece], y[piece]);
+        }
+
+        placed[piece] = isPlaced;
+        if (isPlaced) {
+            x[piece] = targetX(piece);
+            y[piece] = targetY(piece);
+            placedCount++;
+        } else {
+            x[piece] = px;
+            y[piece] = py;
+            hashInsert(piece, px, py);
+        }
+    }
+
+    void rebuildGroups() {
+        groups.reset();
+        for (int piece = 0; piece < pieceCount; piece++) {
+            connectAlignedNeighbors(piece);
+        }
+    }
+
+    private void hashInsert(int piece, float px, float py) {
+        hash.insert(piece, px - overhang, py - overhang, pieceWidth + 2 * overhang, pieceHeight + 2 * overhang);
+    }
+
+    private void hashRemove(int piece, float px, float py) {
+        hash.remove(piece, px - overhang, py - overhang, pieceWidth + 2 * overhang, pieceHeight + 2 * overhang);
+    }
+
+    private void setPosition(int piece, float newX, float newY) {
+        if (!placed[piece]) {
+            hashRemove(piece, x[piece], y[piece]);
+            hashInsert(piece, newX, newY);
+        }
+        x[piece] = newX;
+        y[piece] = newY;
+    }
+}
@@ -23,7 +23,7 @@ public class GalleryActivity extends AppCompatActivity {
     private TextView progressText;
     private ProgressBar progressBar;
     private GameProgressManager progressManager;
-    private PuzzleImageLoader imageLoader;
+    private PuzzleImageRepository imageLoader;
     private GalleryAdapter galleryAdapter;
 
     @Override
@@ -33,7 +33,7 @@ public class GalleryActivity extends AppCompatActivity {
 
         try {
             progressManager = new GameProgressManager(this);
-            imageLoader = new PuzzleImageLoader(this);
+            imageLoader = PuzzleImageRepository.getInstance(this);
 
             // Initialize views with null checks
             galleryRecyclerView = findViewById(R.id.galleryRecyclerView);
@@ -151,7 +151,8 @@ public class GalleryActivity extends AppCompatActivity {
             loadingBar.setVisibility(View.VISIBLE);
             fullImageView.setVisibility(View.GONE);
 
-            imageLoader.loadLevelImage(level, new PuzzleImageLoader.ImageLoadCallback() {
+            Bitmap[] shownBitmap = new Bitmap[1];
+            PuzzleImageRepository.ImageLoadCallback callback = new PuzzleImageRepository.ImageLoadCallback() {
                 @Override
                 public void onSuccess(Bitmap bitmap) {
                     runOnUiThread(() -> {
@@ -159,6 +160,9 @@ public class GalleryActivity extends AppCompatActivity {
                             loadingBar.setVisibility(View.GONE);
                             fullImageView.setVisibility(View.VISIBLE);
                             fullImageView.setImageBitmap(bitmap);
+                            shownBitmap[0] = bitmap;
+                        } else {
+                            imageLoader.release(bitmap);
                         }
                     });
                 }
@@ -182,12 +186,23 @@ public class GalleryActivity extends AppCompatActivity {
                         }
                     });
                 }
-            });
+            };
 
             // Click to dismiss
             dialogView.setOnClickListener(v -> dialog.dismiss());
+            // Đóng dialog trước khi ảnh về thì không cần ảnh nữa; ảnh đã hiện thì trả lại cho cache
+            dialog.setOnDismissListener(d -> {
+                imageLoader.cancel(level, callback);
+                if (shownBitmap[0] != null) {
+                    fullImageView.setImageDrawable(null);
+                    imageLoader.release(shownBitmap[0]);
+                    shownBitmap[0] = null;
+                }
+            });
 
             dialog.show();
+            // Sau show(): ảnh có trong cache được trả ngay, đồng bộ
+            imageLoader.loadLevelImage(level, callback);
 
         } catch (Exception e) {
             Log.e(TAG, "Error showing full image", e);
@@ -231,11 +246,6 @@ public class GalleryActivity extends AppCompatActivity {
         if (galleryAdapter != null) {
             galleryAdapter.cleanup();
         }
-
-        // Cleanup image loader
-        if (imageLoader != null) {
-            imageLoader.cancelDownloads();
-        }
     }
 
     // Gallery Item class
@@ -21,7 +21,7 @@ public class GalleryAdapter extends RecyclerView.Adapter<GalleryAdapter.GalleryV
 
     private final List<GalleryActivity.GalleryItem> items;
     private final OnGalleryItemClickListener listener;
-    private final PuzzleImageLoader imageLoader;
+    private final PuzzleImageRepository imageLoader;
     private final Map<Integer, Bitmap> thumbnailCache = new HashMap<>();
 
     public interface OnGalleryItemClickListener {
@@ -30,7 +30,7 @@ public class GalleryAdapter extends RecyclerView.Adapter<GalleryAdapter.GalleryV
 
     public GalleryAdapter(List<GalleryActivity.GalleryItem> items,
                           OnGalleryItemClickListener listener,
-                          PuzzleImageLoader imageLoader) {
+                          PuzzleImageRepository imageLoader) {
         this.items = items;
         this.listener = listener;
         this.imageLoader = imageLoader;
@@ -50,6 +50,13 @@ public class GalleryAdapter extends RecyclerView.Adapter<GalleryAdapter.GalleryV
         holder.bind(item, listener, imageLoader, thumbnailCache);
     }
 
+    @Override
+    public void onViewRecycled(@NonNull GalleryViewHolder holder) {
+        super.onViewRecycled(holder);
+        // Cuộn nhanh: bỏ request của item đã ra khỏi màn hình
+        holder.cancelPendingLoad(imageLoader);
+    }
+
     @Override
     public int getItemCount() {
         return items.size();
@@ -71,6 +78,9 @@ public class GalleryAdapter extends RecyclerView.Adapter<GalleryAdapter.GalleryV
         private final ImageView lockIcon;
         private final TextView pieceNumberText;
         private final ProgressBar loadingBar;
+        // Request thumbnail đang chờ của item đang bind
+        private PuzzleImageRepository.ImageLoadCallback pendingCallback;
+        private int pendingLevel;
 
         public GalleryViewHolder(@NonNull View itemView) {
             super(itemView);
@@ -83,11 +93,12 @@ public class GalleryAdapter extends RecyclerView.Adapter<GalleryAdapter.GalleryV
 
         public void bind(GalleryActivity.GalleryItem item,
                          OnGalleryItemClickListener listener,
-                         PuzzleImageLoader imageLoader,
+                         PuzzleImageRepository imageLoader,
                          Map<Integer, Bitmap> thumbnailCache) {
 
             int levelNumber = item.pieceIndex + 1;
             pieceNumberText.setText(String.valueOf(levelNumber));
+            cancelPendingLoad(imageLoader);
 
             if (item.isUnlocked) {
                 // Show unlocked state
@@ -128,7 +139,7 @@ public class GalleryAdapter extends RecyclerView.Adapter<GalleryAdapter.GalleryV
         }
 
         private void loadThumbnail(GalleryActivity.GalleryItem item,
-                                   PuzzleImageLoader imageLoader,
+                                   PuzzleImageRepository imageLoader,
                                    Map<Integer, Bitmap> thumbnailCache) {
 
             int levelNumber = item.pieceIndex + 1;
@@ -136,12 +147,18 @@ public class GalleryAdapter extends RecyclerView.Adapter<GalleryAdapter.GalleryV
             loadingBar.setVisibility(View.VISIBLE);
             imageView.setImageDrawable(null);
 
-            imageLoader.loadLevelImage(levelNumber, new PuzzleImageLoader.ImageLoadCallback() {
+            pendingLevel = levelNumber;
+            pendingCallback = new PuzzleImageRepository.ImageLoadCallback() {
                 @Override
                 public void onSuccess(Bitmap bitmap) {
+                    pendingCallback = null;
                     if (bitmap != null && !bitmap.isRecycled()) {
                         // Create thumbnail (scale down)
-                        Bitmap thumbnail = createThumbnail(bitmap);
+                        Bitmap scaled = createThumbnail(bitmap);
+                        // createScaledBitmap trả lại chính ảnh gốc khi cùng kích thước
+                        Bitmap thumbnail = scaled != bitmap ? scaled : bitmap.copy(bitmap.getConfig(), false);
+                        // Thumbnail là bản riêng, ảnh gốc trả lại cho cache dùng chung
+                        imageLoader.release(bitmap);
 
                         // Cache the thumbnail
                         thumbnailCache.put(item.pieceIndex, thumbnail);
@@ -156,6 +173,7 @@ public class GalleryAdapter extends RecyclerView.Adapter<GalleryAdapter.GalleryV
 
                 @Override
                 public void onError(String error) {
+                    pendingCallback = null;
                     Log.e("GalleryAdapter", "Failed to load thumbnail for level " + levelNumber + ": " + error);
                     imageView.post(() -> {
                         loadingBar.setVisibility(View.GONE);
@@ -167,7 +185,15 @@ public class GalleryAdapter extends RecyclerView.Adapter<GalleryAdapter.GalleryV
                 public void onDownloadProgress(int progress) {
                     // Optional: show progress
                 }
-            });
+            };
+            imageLoader.loadLevelImage(levelNumber, pendingCallback);
+        }
+
+        void cancelPendingLoad(PuzzleImageRepository imageLoader) {
+            if (pendingCallback != null) {
+                imageLoader.cancel(pendingLevel, pendingCallback);
+                pendingCallback = null;
+            }
         }
 
         private Bitmap createThumbnail(Bitmap original) {
@@ -3,10 +3,12 @@ package com.example.puzzle_assemble_picture;
 import android.content.Intent;
 import android.graphics.Bitmap;
 import android.media.MediaPlayer;
+import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
 import android.util.Log;
+import android.view.Display;
 import android.view.View;
 import android.view.animation.AlphaAnimation;
 import android.view.animation.Animation;
@@ -31,6 +33,8 @@ public class GameActivity extends AppCompatActivity {
     private TextView levelText;
     private Button checkButton;
     private Button saveButton;
+    private Button undoButton;
+    private Button redoButton;
     private Button hintButton;
     private TextView levelCompleteText;
     private View completionOverlay;
@@ -45,7 +49,12 @@ public class GameActivity extends AppCompatActivity {
     private MediaPlayer celebrationSound;
     private MediaPlayer confettiSound;
     private GameProgressManager progressManager;
-    private PuzzleImageLoader imageLoader;
+    private PuzzleImageRepository imageLoader;
+    // Request ảnh level đang chờ, huỷ khi activity bị huỷ
+    private PuzzleImageRepository.ImageLoadCallback levelImageCallback;
+    private FrameMetricsCollector frameMetricsCollector;
+    // Nhật ký nhị phân của phiên (files/replays/<mode>_<level>.pzr), ghi đè mỗi lần chơi level
+    private ReplayRecorder replayRecorder;
     private Bitmap currentPuzzleBitmap;
     private android.app.ProgressDialog downloadDialog;
 
@@ -103,7 +112,7 @@ public class GameActivity extends AppCompatActivity {
             currentMode = gameMode;
 
             progressManager = new GameProgressManager(this);
-            imageLoader = new PuzzleImageLoader(this);
+            imageLoader = PuzzleImageRepository.getInstance(this);
 
             if (gameMode == null || gameMode.isEmpty()) {
                 gameMode = GameMode.MODE_EASY;
@@ -113,11 +122,22 @@ public class GameActivity extends AppCompatActivity {
 
             // Initialize views
             puzzleView = findViewById(R.id.puzzleView);
+            replayRecorder = new ReplayRecorder(new java.io.File(getFilesDir(),
+                    "replays/" + gameMode + "_" + currentLevel + ".pzr"));
+            puzzleView.setReplayRecorder(replayRecorder);
+            puzzleView.setBatchedRenderingEnabled(SettingsActivity.isBatchedRenderingEnabled(this));
+            if (SettingsActivity.isRenderThreadEnabled(this)) {
+                PuzzleTextureView puzzleTextureView = findViewById(R.id.puzzleTextureView);
+                puzzleTextureView.setVisibility(View.VISIBLE);
+                puzzleView.setRenderBackend(puzzleTextureView);
+            }
             sampleImageView = findViewById(R.id.sampleImageView);
             progressText = findViewById(R.id.progressText);
             levelText = findViewById(R.id.levelText);
             checkButton = findViewById(R.id.checkButton);
             saveButton = findViewById(R.id.saveButton);
+            undoButton = findViewById(R.id.undoButton);
+            redoButton = findViewById(R.id.redoButton);
             hintButton = findViewById(R.id.hintButton);
             levelCompleteText = findViewById(R.id.levelCompleteText);
             completionOverlay = findViewById(R.id.completionOverlay);
@@ -142,6 +162,18 @@ public class GameActivity extends AppCompatActivity {
 
             checkButton.setOnClickListener(v -> checkProgress());
             saveButton.setOnClickListener(v -> saveGame());
+            undoButton.setOnClickListener(v -> {
+                if (puzzleView.undoMove()) {
+                    playClickSound();
+                }
+                updateUndoButtons();
+            });
+            redoButton.setOnClickListener(v -> {
+                if (puzzleView.redoMove()) {
+                    playClickSound();
+                }
+                updateUndoButtons();
+            });
             hintButton.setOnClickListener(v -> showHint());
             findViewById(R.id.backButton).setOnClickListener(v -> showExitDialog());
 
@@ -682,7 +714,7 @@ public class GameActivity extends AppCompatActivity {
             showDownloadDialog();
         }
 
-        imageLoader.loadLevelImage(currentLevel, new PuzzleImageLoader.ImageLoadCallback() {
+        levelImageCallback = new PuzzleImageRepository.ImageLoadCallback() {
             @Override
             public void onSuccess(Bitmap bitmap) {
                 dismissDownloadDialog();
@@ -705,27 +737,23 @@ public class GameActivity extends AppCompatActivity {
                     sampleImageView.setVisibility(View.GONE);
                 }
 
-                puzzleView.getViewTreeObserver().addOnGlobalLayoutListener(
-                        new android.view.ViewTreeObserver.OnGlobalLayoutListener() {
-                            @Override
-                            public void onGlobalLayout() {
-                                puzzleView.getViewTreeObserver().removeOnGlobalLayoutListener(this);
-
-                                if (puzzleView.getWidth() == 0 || puzzleView.getHeight() == 0) {
-                                    finish();
-                                    return;
-                                }
+                runWhenLaidOut(() -> {
+                    if (puzzleView.getWidth() == 0 || puzzleView.getHeight() == 0) {
+                        finish();
+                        return;
+                    }
 
-                                try {
-                                    puzzleView.initPuzzle(currentPuzzleBitmap, config, createPuzzleListener());
-                                    updateProgress();
-                                } catch (Exception e) {
-                                    Log.e(TAG, "Error initializing puzzle", e);
-                                    finish();
-                                }
-                            }
-                        }
-                );
+                    try {
+                        puzzleView.initPuzzle(currentPuzzleBitmap, config, createPuzzleListener());
+                        storeBoardImage();
+                        attachHighResSource();
+                        startFrameMetrics();
+                        updateProgress();
+                    } catch (Exception e) {
+                        Log.e(TAG, "Error initializing puzzle", e);
+                        finish();
+                    }
+                });
             }
 
             @Override
@@ -739,7 +767,8 @@ public class GameActivity extends AppCompatActivity {
             public void onDownloadProgress(int progress) {
                 updateDownloadProgress(progress);
             }
-        });
+        };
+        loadPuzzleImage(levelImageCallback);
     }
 
     private void loadSavedGame() {
@@ -755,7 +784,7 @@ public class GameActivity extends AppCompatActivity {
             showDownloadDialog();
         }
 
-        imageLoader.loadLevelImage(currentLevel, new PuzzleImageLoader.ImageLoadCallback() {
+        levelImageCallback = new PuzzleImageRepository.ImageLoadCallback() {
             @Override
             public void onSuccess(Bitmap bitmap) {
                 dismissDownloadDialog();
@@ -777,24 +806,20 @@ public class GameActivity extends AppCompatActivity {
                     sampleImageView.setVisibility(View.GONE);
                 }
 
-                puzzleView.getViewTreeObserver().addOnGlobalLayoutListener(
-                        new android.view.ViewTreeObserver.OnGlobalLayoutListener() {
-                            @Override
-                            public void onGlobalLayout() {
-                                puzzleView.getViewTreeObserver().removeOnGlobalLayoutListener(this);
-
-                                try {
-                                    puzzleView.initPuzzle(currentPuzzleBitmap, config, createPuzzleListener());
-                                    puzzleView.loadGameState(saveData);
-                                    updateProgress();
-                                    Toast.makeText(GameActivity.this, "Game loaded!", Toast.LENGTH_SHORT).show();
-                                } catch (Exception e) {
-                                    Log.e(TAG, "Error loading saved game", e);
-                                    finish();
-                                }
-                            }
-                        }
-                );
+                runWhenLaidOut(() -> {
+                    try {
+                        puzzleView.initPuzzle(currentPuzzleBitmap, config, createPuzzleListener());
+                        storeBoardImage();
+                        puzzleView.loadGameState(saveData);
+                        attachHighResSource();
+                        startFrameMetrics();
+                        updateProgress();
+                        Toast.makeText(GameActivity.this, "Game loaded!", Toast.LENGTH_SHORT).show();
+                    } catch (Exception e) {
+                        Log.e(TAG, "Error loading saved game", e);
+                        finish();
+                    }
+                });
             }
 
             @Override
@@ -807,6 +832,92 @@ public class GameActivity extends AppCompatActivity {
             public void onDownloadProgress(int progress) {
                 updateDownloadProgress(progress);
             }
+        };
+        loadPuzzleImage(levelImageCallback);
+    }
+
+    /**
+     * Load ảnh level; ảnh board đã scale cho đúng kích thước PuzzleView (cache đĩa, hoặc decode từng
+     * piece khi bật Low-Memory Loading) được ưu tiên nên phải chờ view có kích thước trước.
+     */
+    private void loadPuzzleImage(PuzzleImageRepository.ImageLoadCallback callback) {
+        runWhenLaidOut(() -> {
+            if (levelImageCallback != callback || isFinishing() || isDestroyed()) {
+                return;
+            }
+            imageLoader.loadBoardImage(currentLevel, puzzleView.getWidth(), puzzleView.getHeight(), gridSize,
+                    SettingsActivity.isRegionDecodeEnabled(this), callback);
+        });
+    }
+
+    /**
+     * Chạy ngay nếu PuzzleView đã layout xong, không thì sau lần layout kế tiếp.
+     */
+    private void runWhenLaidOut(Runnable action) {
+        if (puzzleView.getWidth() > 0 && puzzleView.getHeight() > 0 && !puzzleView.isLayoutRequested()) {
+            action.run();
+            return;
+        }
+        puzzleView.getViewTreeObserver().addOnGlobalLayoutListener(
+                new android.view.ViewTreeObserver.OnGlobalLayoutListener() {
+                    @Override
+                    public void onGlobalLayout() {
+                        puzzleView.getViewTreeObserver().removeOnGlobalLayoutListener(this);
+                        action.run();
+                    }
+                }
+        );
+    }
+
+    /**
+     * Lưu atlas vừa scale xuống cache đĩa (bỏ qua khi chính ảnh đã là ảnh board đọc từ cache).
+     */
+    private void storeBoardImage() {
+        Bitmap board = puzzleView.getBoardImage();
+        if (board != null && board != currentPuzzleBitmap) {
+            imageLoader.storeBoardImage(currentLevel, puzzleView.getWidth(), puzzleView.getHeight(), board);
+        }
+    }
+
+    /**
+     * Bắt đầu ghi frame time cho level hiện tại (kết quả ghi khi activity bị huỷ)
+     */
+    private void startFrameMetrics() {
+        if (frameMetricsCollector != null) {
+            return;
+        }
+        frameMetricsCollector = new FrameMetricsCollector(this, getWindow(), puzzleView,
+                currentLevel, gameMode, gridSize, getDisplayRefreshRate());
+        frameMetricsCollector.start();
+    }
+
+    @SuppressWarnings("deprecation")
+    private float getDisplayRefreshRate() {
+        Display display = Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+                ? getDisplay()
+                : getWindowManager().getDefaultDisplay();
+        return display.getRefreshRate();
+    }
+
+    /**
+     * Mở ảnh gốc của level cho tile pyramid (deep zoom). Lỗi chỉ log, puzzle vẫn chơi với atlas.
+     */
+    private void attachHighResSource() {
+        final int level = currentLevel;
+        imageLoader.openRegionDecoder(level, new PuzzleImageRepository.RegionDecoderCallback() {
+            @Override
+            public void onReady(android.graphics.BitmapRegionDecoder decoder) {
+                if (isFinishing() || isDestroyed() || level != currentLevel) {
+                    decoder.recycle();
+                    return;
+                }
+                puzzleView.attachHighResSource(decoder);
+            }
+
+            @Override
+            public void onError(String error) {
+                Log.w(TAG, "High-res tiles unavailable: " + error);
+            }
         });
     }
 
@@ -852,6 +963,8 @@ public class GameActivity extends AppCompatActivity {
                 config.canSeparateConnectedPieces = false;
                 config.autoConnectCorrectPieces = true;
                 config.dimLockedPieces = true;
+                config.initialCorrectFraction = 0.05f;
+                config.shuffleCycleDensity = 0.5f;
                 break;
 
             case GameMode.MODE_NORMAL:
@@ -860,6 +973,8 @@ public class GameActivity extends AppCompatActivity {
                 config.canSeparateConnectedPieces = false;
                 config.autoConnectCorrectPieces = true;
                 config.dimLockedPieces = false;
+                config.initialCorrectFraction = 0f;
+                config.shuffleCycleDensity = 0.25f;
                 break;
 
             case GameMode.MODE_HARD:
@@ -868,6 +983,8 @@ public class GameActivity extends AppCompatActivity {
                 config.canSeparateConnectedPieces = true;
                 config.autoConnectCorrectPieces = true;
                 config.dimLockedPieces = false;
+                config.initialCorrectFraction = 0f;
+                config.shuffleCycleDensity = 0.1f;
                 break;
 
             case GameMode.MODE_INSANE:
@@ -876,9 +993,19 @@ public class GameActivity extends AppCompatActivity {
                 config.canSeparateConnectedPieces = true;
                 config.autoConnectCorrectPieces = false;
                 config.dimLockedPieces = false;
+                config.enableRotation = true;
+                config.initialCorrectFraction = 0f;
+                config.shuffleCycleDensity = 0f;
                 break;
         }
 
+        config.freePlacement = SettingsActivity.isFreePlacementEnabled(this);
+        config.shapedPieces = SettingsActivity.isJigsawShapesEnabled(this);
+        // Hình piece cố định theo level + mode để chơi lại vẫn gặp cùng bộ tab
+        config.shapeSeed = currentLevel * 31L + mode.hashCode();
+        // Mỗi level + mode có một board ban đầu cố định
+        config.shuffleSeed = currentLevel * 1_000_003L + mode.hashCode() * 31L;
+
         return config;
     }
 
@@ -889,7 +1016,7 @@ public class GameActivity extends AppCompatActivity {
                 playClickSound();
 
                 PuzzlePiece lastMovedPiece = getLastMovedPiece();
-                if (lastMovedPiece != null && lastMovedPiece.isLocked()) {
+                if (lastMovedPiece != null && puzzleView.isPieceLocked(lastMovedPiece)) {
                     currentStreak++;
                     if (currentStreak > 1) {
                         Toast.makeText(GameActivity.this,
@@ -1304,10 +1431,24 @@ public class GameActivity extends AppCompatActivity {
     }
 
     private void recycleBitmap() {
-        if (currentPuzzleBitmap != null && !currentPuzzleBitmap.isRecycled()) {
-            currentPuzzleBitmap.recycle();
-            currentPuzzleBitmap = null;
+        if (currentPuzzleBitmap == null) {
+            return;
+        }
+        // Ảnh board decode đúng kích thước (hoặc từ cache đĩa) chính là atlas của PuzzleView và không
+        // thuộc cache nên release sẽ recycle: mọi view đang vẽ nó phải bỏ trước (cleanup đợi render
+        // thread bỏ snapshot)
+        if (puzzleView != null) {
+            puzzleView.cleanup();
+        }
+        if (sampleImageView != null) {
+            sampleImageView.setImageBitmap(null);
         }
+        if (fullscreenImageView != null) {
+            fullscreenImageView.setImageBitmap(null);
+        }
+        // Ảnh level thuộc cache dùng chung: trả lại thay vì recycle (màn hình khác có thể đang giữ)
+        imageLoader.release(currentPuzzleBitmap);
+        currentPuzzleBitmap = null;
     }
 
     private void initSounds() {
@@ -1347,6 +1488,9 @@ public class GameActivity extends AppCompatActivity {
     @Override
     protected void onPause() {
         super.onPause();
+        if (replayRecorder != null) {
+            replayRecorder.flush();
+        }
     }
 
     private void updateStats() {
@@ -1363,6 +1507,14 @@ public class GameActivity extends AppCompatActivity {
         streakCountText.setText(String.valueOf(currentStreak));
 
         progressText.setText(correctPieces + "/" + totalPieces + " (" + progress + "%)");
+        updateUndoButtons();
+    }
+
+    private void updateUndoButtons() {
+        if (undoButton != null) {
+            undoButton.setEnabled(puzzleView.canUndo());
+            redoButton.setEnabled(puzzleView.canRedo());
+        }
     }
 
     private void updateCoinDisplay() {
@@ -1381,7 +1533,24 @@ public class GameActivity extends AppCompatActivity {
 
         handler.removeCallbacksAndMessages(null);
         revealHandler.removeCallbacksAndMessages(null); // ✅ Also cleanup reveal handler
+        if (frameMetricsCollector != null) {
+            frameMetricsCollector.stop();
+            frameMetricsCollector = null;
+        }
+        if (replayRecorder != null) {
+            replayRecorder.close();
+            replayRecorder = null;
+        }
         dismissDownloadDialog();
+        // View trước: cleanup đợi render thread bỏ snapshot đang vẽ atlas, atlas có thể chính là
+        // currentPuzzleBitmap (ảnh board từ cache đĩa) mà recycleBitmap sắp recycle
+        if (puzzleView != null) {
+            try {
+                puzzleView.cleanup();
+            } catch (Exception e) {
+                Log.e(TAG, "Error cleaning up PuzzleView", e);
+            }
+        }
         recycleBitmap();
 
         if (successSound != null) {
@@ -1401,16 +1570,9 @@ public class GameActivity extends AppCompatActivity {
             confettiSound = null;
         }
 
-        if (puzzleView != null) {
-            try {
-                puzzleView.cleanup();
-            } catch (Exception e) {
-                Log.e(TAG, "Error cleaning up PuzzleView", e);
-            }
-        }
-
-        if (imageLoader != null) {
-            imageLoader.cancelDownloads();
+        if (imageLoader != null && levelImageCallback != null) {
+            imageLoader.cancel(currentLevel, levelImageCallback);
+            levelImageCallback = null;
         }
 
         if (adView != null) {
@@ -52,7 +52,7 @@ public class GameMode {
                         "✗ No sample image\n" +
                         "✗ No auto-lock\n" +
                         "✗ No dimming\n" +
-                        "✓ Pieces start rotated randomly (90°–180°)\n" +
+                        "✓ Pieces start rotated randomly — tap a piece to turn it 90°\n" +
                         "✓ Limited mistakes allowed (too many → shuffle)\n" +
                         "✓ Time pressure — complete before the timer runs out\n" +
                         "Only for true masters!";
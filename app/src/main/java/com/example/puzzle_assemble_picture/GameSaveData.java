@@ -21,6 +21,8 @@ public class GameSaveData {
         public float x;
         public float y;
         public boolean isLocked;
+        // Số lần xoay 90° (INSANE); save cũ không có field này nên mặc định 0
+        public int rotation;
 
         public PiecePosition(int correctRow, int correctCol, float x, float y, boolean isLocked) {
             this.correctRow = correctRow;
@@ -18,7 +18,9 @@ public class LevelSelectionActivity extends AppCompatActivity {
     private TextView titleText;
     private TextView coinCountText;
     private GameProgressManager progressManager;
-    private PuzzleImageLoader imageLoader;
+    private PuzzleImageRepository imageLoader;
+    // Download pack đang chờ (dialog download), huỷ khi activity bị huỷ
+    private PuzzleImageRepository.PackDownloadCallback downloadCallback;
     private CoinManager coinManager;
     private String selectedMode;
     private AdView adView;
@@ -30,7 +32,7 @@ public class LevelSelectionActivity extends AppCompatActivity {
             setContentView(R.layout.activity_level_selection);
 
             progressManager = new GameProgressManager(this);
-            imageLoader = new PuzzleImageLoader(this);
+            imageLoader = PuzzleImageRepository.getInstance(this);
             coinManager = new CoinManager(this);
             selectedMode = getIntent().getStringExtra("MODE");
 
@@ -125,9 +127,11 @@ public class LevelSelectionActivity extends AppCompatActivity {
         progressDialog.setMax(100);
         progressDialog.show();
 
-        imageLoader.loadLevelImage(item.levelNumber, new PuzzleImageLoader.ImageLoadCallback() {
+        downloadCallback = new PuzzleImageRepository.PackDownloadCallback() {
             @Override
-            public void onSuccess(android.graphics.Bitmap bitmap) {
+            public void onReady() {
+                // Chỉ cần pack có trên máy: GameActivity decode ảnh board đúng kích thước một lần
+                downloadCallback = null;
                 runOnUiThread(() -> {
                     progressDialog.dismiss();
                     startGame(item.levelNumber);
@@ -136,6 +140,7 @@ public class LevelSelectionActivity extends AppCompatActivity {
 
             @Override
             public void onError(String error) {
+                downloadCallback = null;
                 runOnUiThread(() -> {
                     progressDialog.dismiss();
                     android.widget.Toast.makeText(LevelSelectionActivity.this,
@@ -151,7 +156,8 @@ public class LevelSelectionActivity extends AppCompatActivity {
                     progressDialog.setMessage("Downloading... " + progress + "%");
                 });
             }
-        });
+        };
+        imageLoader.ensureLevelDownloaded(item.levelNumber, downloadCallback);
     }
 
     private void startGame(int levelNumber) {
@@ -183,8 +189,9 @@ public class LevelSelectionActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        if (imageLoader != null) {
-            imageLoader.cancelDownloads();
+        if (imageLoader != null && downloadCallback != null) {
+            imageLoader.cancelDownload(downloadCallback);
+            downloadCallback = null;
         }
         AdMobHelper.destroyAd(adView);
     }
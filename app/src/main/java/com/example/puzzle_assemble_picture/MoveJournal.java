@@ -0,0 +1,287 @@
+package com.example.puzzle_assemble_picture;
+
+import java.util.BitSet;
+
+/**
+ * Nhật ký nước đi của PuzzleBoard, không phụ thuộc Android.
+ *
+ * Mỗi thay đổi nguyên tử (đổi chỗ 2 cell, khoá / bỏ khoá, xoay) là một int đóng gói; một bước
+ * (nước đi / power-up) gồm các entry liên tiếp, entry đầu mang cờ STEP_START. Entry nằm trong ring
+ * buffer int[] tự tăng tới MAX_ENTRIES (16 KB); đầy thì bước cũ nhất được gộp vào checkpoint gốc.
+ * Undo / redo chỉ di chuyển con trỏ qua các entry của một bước - không allocate.
+ *
+ * Trạng thái gốc là board xáo từ seed (ShuffleGenerator); checkpoint mảng chỉ được tạo khi
+ * bước đầu tiên bị đẩy ra khỏi ring buffer, hoặc khi gốc không đến từ seed (game đã lưu).
+ */
+public class MoveJournal {
+    public static final int OP_SWAP = 0;
+    public static final int OP_LOCK = 1;
+    public static final int OP_UNLOCK = 2;
+    public static final int OP_ROTATE = 3;
+
+    private static final int STEP_START = 1 << 31;
+    private static final int OP_SHIFT = 29;
+    private static final int OP_MASK = 3;
+    private static final int A_SHIFT = 14;
+    private static final int FIELD_MASK = (1 << 14) - 1;
+
+    private static final int INITIAL_CAPACITY = 64;
+    static final int MAX_ENTRIES = 4096;
+
+    private final int gridSize;
+
+    private int[] entries = new int[INITIAL_CAPACITY];
+    private int head;
+    // Số entry trong buffer; cursor = số entry đã áp dụng (phần sau cursor là redo)
+    private int size;
+    private int cursor;
+    private boolean stepOpen;
+
+    private long seed;
+    private ShuffleGenerator generator;
+    private int[] baseCells;
+    private byte[] baseRotations;
+    private BitSet baseLocked;
+
+    public MoveJournal(int gridSize) {
+        if (gridSize * gridSize > FIELD_MASK + 1) {
+            throw new IllegalArgumentException("Grid too large for journal: " + gridSize);
+        }
+        this.gridSize = gridSize;
+    }
+
+    // ===== Đóng gói entry =====
+
+    public static int op(int entry) {
+        return (entry >>> OP_SHIFT) & OP_MASK;
+    }
+
+    public static int a(int entry) {
+        return (entry >>> A_SHIFT) & FIELD_MASK;
+    }
+
+    public static int b(int entry) {
+        return entry & FIELD_MASK;
+    }
+
+    private static int pack(int op, int a, int b) {
+        return (op << OP_SHIFT) | (a << A_SHIFT) | b;
+    }
+
+    // ===== Gốc =====
+
+    /**
+     * Bắt đầu nhật ký mới từ board mà generator xáo bằng seed.
+     */
+    public void reset(long seed, ShuffleGenerator generator) {
+        this.seed = seed;
+        this.generator = generator;
+        baseCells = null;
+        baseRotations = null;
+        baseLocked = null;
+        clearEntries();
+    }
+
+    /**
+     * Bắt đầu nhật ký mới từ trạng thái cho trước (vd. game vừa load), không dùng seed.
+     */
+    public void reset(int[] cells, byte[] rotations, BitSet locked) {
+        baseCells = cells.clone();
+        baseRotations = rotations.clone();
+        baseLocked = (BitSet) locked.clone();
+        clearEntries();
+    }
+
+    private void clearEntries() {
+        head = 0;
+        size = 0;
+        cursor = 0;
+        stepOpen = false;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Ghi trạng thái gốc vào các mảng cho trước.
+     */
+    public void copyBase(int[] cellsOut, byte[] rotationsOut, BitSet lockedOut) {
+        lockedOut.clear();
+        if (baseCells == null) {
+            generator.generate(seed, cellsOut, rotationsOut);
+            return;
+        }
+        System.arraycopy(baseCells, 0, cellsOut, 0, baseCells.length);
+        System.arraycopy(baseRotations, 0, rotationsOut, 0, baseRotations.length);
+        lockedOut.or(baseLocked);
+    }
+
+    // ===== Ghi =====
+
+    /**
+     * Entry ghi tiếp theo mở một bước mới. Bỏ phần redo.
+     */
+    public void beginStep() {
+        stepOpen = true;
+        size = cursor;
+    }
+
+    public void recordSwap(int cellA, int cellB) {
+        append(pack(OP_SWAP, cellA, cellB));
+    }
+
+    public void recordLock(int cell, boolean locked) {
+        append(pack(locked ? OP_LOCK : OP_UNLOCK, cell, 0));
+    }
+
+    public void recordRotation(int cell, int from, int to) {
+        append(pack(OP_ROTATE, cell, (from << 2) | to));
+    }
+
+    private void append(int entry) {
+        size = cursor;
+        if (stepOpen || size == 0) {
+            entry |= STEP_START;
+            stepOpen = false;
+        }
+
+        if (size == entries.length) {
+            if (entries.length < MAX_ENTRIES || !evictOldestStep()) {
+                grow();
+            }
+        }
+        entries[(head + size) % entries.length] = entry;
+        size++;
+        cursor = size;
+    }
+
+    private void grow() {
+        int[] grown = new int[entries.length * 2];
+        for (int i = 0; i < size; i++) {
+            grown[i] = entries[(head + i) % entries.length];
+        }
+        entries = grown;
+        head = 0;
+    }
+
+    /**
+     * Gộp bước cũ nhất vào checkpoint gốc để lấy chỗ.
+     *
+     * @return false nếu buffer chỉ có một bước (đang ghi), khi đó caller tăng buffer
+     */
+    private boolean evictOldestStep() {
+        int length = 1;
+        while (length < size && (entries[(head + length) % entries.length] & STEP_START) == 0) {
+            length++;
+        }
+        if (length == size) {
+            return false;
+        }
+
+        if (baseCells == null) {
+            int count = gridSize * gridSize;
+            baseCells = new int[count];
+            baseRotations = new byte[count];
+            baseLocked = new BitSet(count);
+            generator.generate(seed, baseCells, baseRotations);
+        }
+        for (int i = 0; i < length; i++) {
+            applyToBase(entries[(head + i) % entries.length]);
+        }
+
+        head = (head + length) % entries.length;
+        size -= length;
+        cursor -= length;
+        return true;
+    }
+
+    private void applyToBase(int entry) {
+        int cell = a(entry);
+        switch (op(entry)) {
+            case OP_SWAP:
+                int other = b(entry);
+                int piece = baseCells[cell];
+                baseCells[cell] = baseCells[other];
+                baseCells[other] = piece;
+                break;
+            case OP_LOCK:
+                baseLocked.set(cell);
+                break;
+            case OP_UNLOCK:
+                baseLocked.clear(cell);
+                break;
+            default:
+                baseRotations[baseCells[cell]] = (byte) (b(entry) & 3);
+                break;
+        }
+    }
+
+    // ===== Undo / redo =====
+
+    public boolean canUndo() {
+        return cursor > 0;
+    }
+
+    public boolean canRedo() {
+        return cursor < size;
+    }
+
+    /**
+     * Số entry của bước ngay trước cursor (bước sẽ bị undo), 0 nếu không có.
+     */
+    public int undoLength() {
+        int length = 0;
+        while (length < cursor) {
+            length++;
+            if ((entryAt(cursor - length) & STEP_START) != 0) {
+                break;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Số entry của bước ngay sau cursor (bước sẽ được redo), 0 nếu không có.
+     */
+    public int redoLength() {
+        if (cursor == size) {
+            return 0;
+        }
+        int length = 1;
+        while (cursor + length < size && (entryAt(cursor + length) & STEP_START) == 0) {
+            length++;
+        }
+        return length;
+    }
+
+    /**
+     * Entry thứ index tính từ entry cũ nhất trong buffer.
+     */
+    public int entryAt(int index) {
+        return entries[(head + index) % entries.length];
+    }
+
+    public int getCursor() {
+        return cursor;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Dời cursor sau khi caller đã áp dụng (redo, delta > 0) hoặc đảo ngược (undo, delta < 0) các entry.
+     */
+    public void moveCursor(int delta) {
+        cursor += delta;
+        stepOpen = false;
+    }
+
+    /**
+     * Bộ nhớ đang dùng cho entry (byte).
+     */
+    public int getBufferBytes() {
+        return entries.length * 4;
+    }
+}
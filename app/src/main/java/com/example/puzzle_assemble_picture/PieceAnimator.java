@@ -0,0 +1,254 @@
+package com.example.puzzle_assemble_picture;
+
+import android.animation.TimeInterpolator;
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Animation engine dùng chung cho mọi di chuyển piece của PuzzleView (swap, shuffle, solve corners/edges).
+ * State lưu trong mảng primitive theo piece index (correctRow * gridSize + correctCol), một
+ * Choreographer callback cập nhật tất cả tweens mỗi frame - không allocate, không tra map.
+ *
+ * Piece đang chạy mà nhận tween mới sẽ đi tiếp từ vị trí hiện tại (animation chồng nhau không bị giật).
+ */
+final class PieceAnimator implements Choreographer.FrameCallback {
+
+    interface Host {
+        /** Sau khi engine cập nhật vị trí trong một frame */
+        void onAnimationFrame();
+
+        /** Có piece bắt đầu hoặc kết thúc animation */
+        void onActiveSetChanged();
+    }
+
+    /**
+     * Nhóm tweens bắt đầu cùng nhau; onEnd chạy khi tween cuối cùng trong nhóm kết thúc.
+     */
+    static final class Batch {
+        private final Runnable onEnd;
+        private int remaining;
+        private boolean committed;
+
+        private Batch(Runnable onEnd) {
+            this.onEnd = onEnd;
+        }
+    }
+
+    private final Host host;
+    private final Choreographer choreographer = Choreographer.getInstance();
+    private boolean frameScheduled;
+
+    private float[] fromX = new float[0];
+    private float[] fromY = new float[0];
+    private float[] toX = new float[0];
+    private float[] toY = new float[0];
+    private float[] currentX = new float[0];
+    private float[] currentY = new float[0];
+    private long[] startNanos = new long[0];
+    private long[] durationNanos = new long[0];
+    private TimeInterpolator[] interpolators = new TimeInterpolator[0];
+    private Batch[] batches = new Batch[0];
+
+    // Danh sách dày các piece đang chạy + vị trí của mỗi piece trong danh sách (-1 nếu không chạy)
+    private int[] activePieces = new int[0];
+    private int[] activeSlot = new int[0];
+    private int activeCount;
+
+    // Batch vừa kết thúc trong frame, callback chạy sau khi cập nhật xong
+    private final List<Batch> finishedBatches = new ArrayList<>();
+
+    PieceAnimator(Host host) {
+        this.host = host;
+    }
+
+    /**
+     * Cấp phát lại mảng cho số piece của level mới (huỷ mọi animation đang chạy).
+     */
+    void resize(int pieceCount) {
+        cancelAll();
+        if (fromX.length == pieceCount) {
+            return;
+        }
+
+        fromX = new float[pieceCount];
+        fromY = new float[pieceCount];
+        toX = new float[pieceCount];
+        toY = new float[pieceCount];
+        currentX = new float[pieceCount];
+        currentY = new float[pieceCount];
+        startNanos = new long[pieceCount];
+        durationNanos = new long[pieceCount];
+        interpolators = new TimeInterpolator[pieceCount];
+        batches = new Batch[pieceCount];
+        activePieces = new int[pieceCount];
+        activeSlot = new int[pieceCount];
+        Arrays.fill(activeSlot, -1);
+    }
+
+    Batch newBatch(Runnable onEnd) {
+        return new Batch(onEnd);
+    }
+
+    /**
+     * Thêm tween cho piece vào batch. Gọi commit(batch) sau khi thêm xong.
+     */
+    void animate(Batch batch, int piece, float startX, float startY, float endX, float endY,
+                 long durationMs, TimeInterpolator interpolator) {
+        long now = System.nanoTime();
+
+        if (activeSlot[piece] >= 0) {
+            // Tiếp tục từ vị trí đang hiển thị, tween cũ coi như xong với batch của nó
+            startX = currentX[piece];
+            startY = currentY[piece];
+            releaseFromBatch(piece);
+        } else {
+            activeSlot[piece] = activeCount;
+            activePieces[activeCount++] = piece;
+            currentX[piece] = startX;
+            currentY[piece] = startY;
+        }
+
+        fromX[piece] = startX;
+        fromY[piece] = startY;
+        toX[piece] = endX;
+        toY[piece] = endY;
+        startNanos[piece] = now;
+        durationNanos[piece] = Math.max(1L, durationMs * 1_000_000L);
+        interpolators[piece] = interpolator;
+        batches[piece] = batch;
+        batch.remaining++;
+    }
+
+    void commit(Batch batch) {
+        batch.committed = true;
+        if (batch.remaining == 0) {
+            finishedBatches.add(batch);
+        }
+        host.onActiveSetChanged();
+        scheduleFrame();
+    }
+
+    private void releaseFromBatch(int piece) {
+        Batch batch = batches[piece];
+        batches[piece] = null;
+        if (batch != null && --batch.remaining == 0 && batch.committed) {
+            finishedBatches.add(batch);
+        }
+    }
+
+    private void scheduleFrame() {
+        if (!frameScheduled) {
+            frameScheduled = true;
+            choreographer.postFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        frameScheduled = false;
+        boolean activeSetChanged = false;
+
+        int i = 0;
+        while (i < activeCount) {
+            int piece = activePieces[i];
+            float t = (float) (frameTimeNanos - startNanos[piece]) / durationNanos[piece];
+            boolean finished = t >= 1f;
+            float progress = interpolators[piece].getInterpolation(Math.max(0f, Math.min(1f, t)));
+            currentX[piece] = fromX[piece] + (toX[piece] - fromX[piece]) * progress;
+            currentY[piece] = fromY[piece] + (toY[piece] - fromY[piece]) * progress;
+
+            if (finished) {
+                removeActive(piece);
+                releaseFromBatch(piece);
+                activeSetChanged = true;
+                // Phần tử cuối đã được chuyển vào slot i, không tăng i
+            } else {
+                i++;
+            }
+        }
+
+        if (activeSetChanged) {
+            host.onActiveSetChanged();
+        }
+        host.onAnimationFrame();
+        runFinishedBatches();
+
+        if (activeCount > 0) {
+            scheduleFrame();
+        }
+    }
+
+    private void runFinishedBatches() {
+        while (!finishedBatches.isEmpty()) {
+            Batch batch = finishedBatches.remove(finishedBatches.size() - 1);
+            if (batch.onEnd != null) {
+                batch.onEnd.run();
+            }
+        }
+    }
+
+    private void removeActive(int piece) {
+        int slot = activeSlot[piece];
+        int last = activePieces[--activeCount];
+        activePieces[slot] = last;
+        activeSlot[last] = slot;
+        activeSlot[piece] = -1;
+        interpolators[piece] = null;
+    }
+
+    /**
+     * Dừng mọi tween ngay lập tức, không chạy callback của batch.
+     */
+    void cancelAll() {
+        for (int i = 0; i < activeCount; i++) {
+            int piece = activePieces[i];
+            activeSlot[piece] = -1;
+            interpolators[piece] = null;
+            batches[piece] = null;
+        }
+        activeCount = 0;
+        finishedBatches.clear();
+        if (frameScheduled) {
+            choreographer.removeFrameCallback(this);
+            frameScheduled = false;
+        }
+    }
+
+    boolean isActive(int piece) {
+        return piece >= 0 && piece < activeSlot.length && activeSlot[piece] >= 0;
+    }
+
+    int getActiveCount() {
+        return activeCount;
+    }
+
+    int getActivePiece(int index) {
+        return activePieces[index];
+    }
+
+    float getX(int piece) {
+        return currentX[piece];
+    }
+
+    float getY(int piece) {
+        return currentY[piece];
+    }
+
+    /**
+     * Ghi tweens đang chạy vào mảng Tween dựng sẵn của snapshot (không cấp phát).
+     *
+     * @return số tween đã ghi
+     */
+    int exportTweens(BoardSnapshot.Tween[] out) {
+        int count = Math.min(activeCount, out.length);
+        for (int i = 0; i < count; i++) {
+            int piece = activePieces[i];
+            out[i].set(piece, fromX[piece], fromY[piece], toX[piece], toY[piece],
+                    startNanos[piece], durationNanos[piece], interpolators[piece]);
+        }
+        return count;
+    }
+}
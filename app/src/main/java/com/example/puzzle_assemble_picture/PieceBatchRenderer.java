@@ -0,0 +1,161 @@
+package com.example.puzzle_assemble_picture;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.Shader;
+
+/**
+ * Vẽ nhiều piece cùng lúc: mọi piece dùng chung atlas nên được gom thành textured quads trong một
+ * Canvas.drawVertices (thêm một lần cho các piece bị dim), còn viền của chúng gom vào một drawLines.
+ *
+ * drawVertices chỉ được hardware canvas hỗ trợ từ API 29, PuzzleView tự chọn path theo thiết bị.
+ */
+final class PieceBatchRenderer {
+    private static final int FLOATS_PER_QUAD = 8;   // 4 đỉnh (x, y)
+    private static final int INDICES_PER_QUAD = 6;  // 2 tam giác
+    private static final int LINE_FLOATS_PER_QUAD = 16; // 4 cạnh (x0, y0, x1, y1)
+    // Vị trí đỉnh trong quad (TL, TR, BL, BR) của các góc theo chiều kim đồng hồ từ trên trái
+    private static final int[] CORNER_SLOTS = {0, 1, 3, 2};
+
+    private final Paint atlasPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG);
+    private final Paint dimAtlasPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG);
+    private Bitmap shaderAtlas;
+
+    private float[] verts = new float[0];
+    private float[] texs = new float[0];
+    private float[] dimVerts = new float[0];
+    private float[] dimTexs = new float[0];
+    private float[] lines = new float[0];
+    private short[] indices = new short[0];
+    private int quadCount;
+    private int dimQuadCount;
+    private int lineFloatCount;
+
+    /**
+     * @param dimPaint paint dùng cho piece đã khoá (alpha + color filter được copy sang)
+     */
+    PieceBatchRenderer(Paint dimPaint) {
+        dimAtlasPaint.setAlpha(dimPaint.getAlpha());
+        dimAtlasPaint.setColorFilter(dimPaint.getColorFilter());
+    }
+
+    /**
+     * Đổi atlas (level mới) và cấp phát buffer cho tối đa pieceCount piece.
+     */
+    void setAtlas(Bitmap atlas, int pieceCount) {
+        if (atlas != shaderAtlas) {
+            shaderAtlas = atlas;
+            BitmapShader shader = atlas != null
+                    ? new BitmapShader(atlas, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP)
+                    : null;
+            atlasPaint.setShader(shader);
+            dimAtlasPaint.setShader(shader);
+        }
+
+        if (verts.length < pieceCount * FLOATS_PER_QUAD) {
+            verts = new float[pieceCount * FLOATS_PER_QUAD];
+            texs = new float[pieceCount * FLOATS_PER_QUAD];
+            dimVerts = new float[pieceCount * FLOATS_PER_QUAD];
+            dimTexs = new float[pieceCount * FLOATS_PER_QUAD];
+            lines = new float[pieceCount * LINE_FLOATS_PER_QUAD];
+
+            // Index dùng chung cho mọi batch: quad i = đỉnh 4i..4i+3 (TL, TR, BL, BR)
+            indices = new short[pieceCount * INDICES_PER_QUAD];
+            for (int quad = 0; quad < pieceCount; quad++) {
+                int v = quad * 4;
+                int i = quad * INDICES_PER_QUAD;
+                indices[i] = (short) v;
+                indices[i + 1] = (short) (v + 1);
+                indices[i + 2] = (short) (v + 2);
+                indices[i + 3] = (short) (v + 2);
+                indices[i + 4] = (short) (v + 1);
+                indices[i + 5] = (short) (v + 3);
+            }
+        }
+    }
+
+    /**
+     * Số piece tối đa một batch chứa được (index là short nên giới hạn 16383 quads).
+     */
+    boolean canBatch(int pieceCount) {
+        return shaderAtlas != null && !shaderAtlas.isRecycled()
+                && pieceCount * 4 <= Short.MAX_VALUE && verts.length >= pieceCount * FLOATS_PER_QUAD;
+    }
+
+    void begin() {
+        quadCount = 0;
+        dimQuadCount = 0;
+        lineFloatCount = 0;
+    }
+
+    /**
+     * @param rotation số lần xoay 90° theo chiều kim đồng hồ; xoay bằng cách hoán vị toạ độ texture
+     */
+    void addPiece(Rect source, float x, float y, float width, float height, int rotation,
+                  boolean dimmed, boolean border) {
+        if (dimmed) {
+            putQuad(dimVerts, dimTexs, dimQuadCount++, source, x, y, width, height, rotation);
+        } else {
+            putQuad(verts, texs, quadCount++, source, x, y, width, height, rotation);
+        }
+
+        if (border) {
+            float right = x + width;
+            float bottom = y + height;
+            int i = lineFloatCount;
+            lines[i] = x;       lines[i + 1] = y;      lines[i + 2] = right; lines[i + 3] = y;
+            lines[i + 4] = right; lines[i + 5] = y;    lines[i + 6] = right; lines[i + 7] = bottom;
+            lines[i + 8] = right; lines[i + 9] = bottom; lines[i + 10] = x;  lines[i + 11] = bottom;
+            lines[i + 12] = x;  lines[i + 13] = bottom; lines[i + 14] = x;   lines[i + 15] = y;
+            lineFloatCount += LINE_FLOATS_PER_QUAD;
+        }
+    }
+
+    private static void putQuad(float[] v, float[] t, int quad, Rect source,
+                                float x, float y, float width, float height, int rotation) {
+        int i = quad * FLOATS_PER_QUAD;
+        float right = x + width;
+        float bottom = y + height;
+
+        v[i] = x;         v[i + 1] = y;
+        v[i + 2] = right; v[i + 3] = y;
+        v[i + 4] = x;     v[i + 5] = bottom;
+        v[i + 6] = right; v[i + 7] = bottom;
+
+        // Đỉnh theo chiều kim đồng hồ (trên trái, trên phải, dưới phải, dưới trái) lấy góc source
+        // lùi rotation bước; slot của các đỉnh đó trong mảng là 0, 1, 3, 2
+        for (int corner = 0; corner < 4; corner++) {
+            int sourceCorner = (corner - rotation) & 3;
+            int slot = i + CORNER_SLOTS[corner] * 2;
+            t[slot] = sourceCorner == 0 || sourceCorner == 3 ? source.left : source.right;
+            t[slot + 1] = sourceCorner < 2 ? source.top : source.bottom;
+        }
+    }
+
+    /**
+     * Phát các batch đã gom: tối đa 2 drawVertices (thường + dim) và 1 drawLines.
+     *
+     * @return số draw call đã phát
+     */
+    int flush(Canvas canvas, Paint borderPaint) {
+        int calls = 0;
+        if (quadCount > 0) {
+            canvas.drawVertices(Canvas.VertexMode.TRIANGLES, quadCount * FLOATS_PER_QUAD, verts, 0,
+                    texs, 0, null, 0, indices, 0, quadCount * INDICES_PER_QUAD, atlasPaint);
+            calls++;
+        }
+        if (dimQuadCount > 0) {
+            canvas.drawVertices(Canvas.VertexMode.TRIANGLES, dimQuadCount * FLOATS_PER_QUAD, dimVerts, 0,
+                    dimTexs, 0, null, 0, indices, 0, dimQuadCount * INDICES_PER_QUAD, dimAtlasPaint);
+            calls++;
+        }
+        if (lineFloatCount > 0) {
+            canvas.drawLines(lines, 0, lineFloatCount, borderPaint);
+            calls++;
+        }
+        return calls;
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.puzzle_assemble_picture;
+
+import java.util.Arrays;
+
+/**
+ * Nhóm các piece đã ghép đúng với nhau (disjoint-set theo piece index, không phụ thuộc Android).
+ *
+ * Hai piece cạnh nhau trên board được nối khi vị trí tương đối của chúng đúng như ảnh gốc, kể cả khi
+ * cả nhóm chưa nằm đúng chỗ. find/union gần như O(1) (path halving + union by size); mỗi nhóm còn
+ * có một danh sách vòng (next[]) để duyệt thành viên mà không cần quét cả board. Bộ nhớ O(n).
+ */
+public class PieceGroups {
+    private final int gridSize;
+    private final int[] parent;
+    private final int[] size;
+    // Danh sách vòng các thành viên cùng nhóm: next[piece] -> piece kế tiếp
+    private final int[] next;
+
+    // Scratch cho rebuild, tránh allocate mỗi lần tách nhóm
+    private final int[] scratch;
+    private final int[] rebuildStamp;
+    private int stamp;
+
+    public PieceGroups(int gridSize) {
+        this.gridSize = gridSize;
+        int count = gridSize * gridSize;
+        this.parent = new int[count];
+        this.size = new int[count];
+        this.next = new int[count];
+        this.scratch = new int[count];
+        this.rebuildStamp = new int[count];
+        reset();
+    }
+
+    /**
+     * Mọi piece thành nhóm riêng.
+     */
+    public void reset() {
+        for (int i = 0; i < parent.length; i++) {
+            parent[i] = i;
+            size[i] = 1;
+            next[i] = i;
+        }
+    }
+
+    public int find(int piece) {
+        while (parent[piece] != piece) {
+            parent[piece] = parent[parent[piece]];
+            piece = parent[piece];
+        }
+        return piece;
+    }
+
+    public boolean sameGroup(int pieceA, int pieceB) {
+        return find(pieceA) == find(pieceB);
+    }
+
+    public int groupSize(int piece) {
+        return size[find(piece)];
+    }
+
+    /**
+     * @return true nếu 2 nhóm vừa được gộp
+     */
+    public boolean union(int pieceA, int pieceB) {
+        int rootA = find(pieceA);
+        int rootB = find(pieceB);
+        if (rootA == rootB) {
+            return false;
+        }
+
+        if (size[rootA] < size[rootB]) {
+            int tmp = rootA;
+            rootA = rootB;
+            rootB = tmp;
+        }
+        parent[rootB] = rootA;
+        size[rootA] += size[rootB];
+
+        // Nối 2 danh sách vòng bằng cách đổi next của 2 phần tử
+        int tmp = next[rootA];
+        next[rootA] = next[rootB];
+        next[rootB] = tmp;
+        return true;
+    }
+
+    /**
+     * Nối piece tại cell với các piece kề đúng vị trí tương đối.
+     *
+     * @return số lần gộp nhóm
+     */
+    public int connectAround(PuzzleBoard board, int cell) {
+        int row = cell / gridSize;
+        int col = cell % gridSize;
+        int merges = 0;
+        if (col > 0 && connectIfAdjacent(board, cell - 1, cell)) merges++;
+        if (col < gridSize - 1 && connectIfAdjacent(board, cell, cell + 1)) merges++;
+        if (row > 0 && connectIfAdjacent(board, cell - gridSize, cell)) merges++;
+        if (row < gridSize - 1 && connectIfAdjacent(board, cell, cell + gridSize)) merges++;
+        return merges;
+    }
+
+    /**
+     * @param firstCell cell trái / trên, secondCell là cell phải / dưới kề nó
+     */
+    private boolean connectIfAdjacent(PuzzleBoard board, int firstCell, int secondCell) {
+        int first = board.pieceAt(firstCell);
+        int second = board.pieceAt(secondCell);
+        return isCorrectNeighbor(first, second, secondCell - firstCell)
+                && isUpright(board, first) && isUpright(board, second) && union(first, second);
+    }
+
+    /**
+     * Piece bị xoay không khớp với piece nào cho tới khi được xoay về 0.
+     */
+    private static boolean isUpright(PuzzleBoard board, int piece) {
+        return board.getRotation(piece) == 0;
+    }
+
+    /**
+     * second nằm ngay phải (delta = 1) hoặc ngay dưới (delta = gridSize) first trong ảnh gốc.
+     */
+    private boolean isCorrectNeighbor(int first, int second, int delta) {
+        if (delta == 1) {
+            return second == first + 1 && first % gridSize != gridSize - 1;
+        }
+        return second == first + gridSize;
+    }
+
+    /**
+     * Dựng lại nhóm của piece sau khi một số thành viên bị di chuyển: thành viên cũ trở thành nhóm
+     * riêng rồi được nối lại theo vị trí hiện tại. O(kích thước nhóm).
+     */
+    public void rebuildGroup(PuzzleBoard board, int piece) {
+        int root = find(piece);
+        if (size[root] == 1) {
+            return;
+        }
+
+        // Thu thành viên trước khi cắt danh sách vòng
+        int count = 0;
+        int member = root;
+        do {
+            scratch[count++] = member;
+            member = next[member];
+        } while (member != root);
+
+        if (++stamp == Integer.MAX_VALUE) {
+            Arrays.fill(rebuildStamp, 0);
+            stamp = 1;
+        }
+        for (int i = 0; i < count; i++) {
+            int m = scratch[i];
+            parent[m] = m;
+            size[m] = 1;
+            next[m] = m;
+            rebuildStamp[m] = stamp;
+        }
+
+        // Chỉ nối lại trong phạm vi nhóm cũ; nối với piece ngoài nhóm là việc của connectAround
+        for (int i = 0; i < count; i++) {
+            int m = scratch[i];
+            int cell = board.cellOf(m);
+            int col = cell % gridSize;
+            if (col < gridSize - 1) {
+                int right = board.pieceAt(cell + 1);
+                if (rebuildStamp[right] == stamp && isCorrectNeighbor(m, right, 1)
+                        && isUpright(board, m) && isUpright(board, right)) {
+                    union(m, right);
+                }
+            }
+            if (cell + gridSize < parent.length) {
+                int below = board.pieceAt(cell + gridSize);
+                if (rebuildStamp[below] == stamp && isCorrectNeighbor(m, below, gridSize)
+                        && isUpright(board, m) && isUpright(board, below)) {
+                    union(m, below);
+                }
+            }
+        }
+    }
+
+    /**
+     * Ghi các piece cùng nhóm với piece vào out (piece đứng đầu).
+     *
+     * @return số piece đã ghi
+     */
+    public int collectMembers(int piece, int[] out) {
+        int count = 0;
+        int member = piece;
+        do {
+            out[count++] = member;
+            member = next[member];
+        } while (member != piece);
+        return count;
+    }
+
+    /**
+     * Ghi các cell hiện tại của nhóm chứa piece vào out (cần đủ chỗ cho groupSize).
+     *
+     * @return số cell đã ghi
+     */
+    public int collectCells(PuzzleBoard board, int piece, int[] out) {
+        int count = 0;
+        int member = piece;
+        do {
+            out[count++] = board.cellOf(member);
+            member = next[member];
+        } while (member != piece);
+        return count;
+    }
+}
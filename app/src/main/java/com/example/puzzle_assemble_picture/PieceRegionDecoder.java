@@ -0,0 +1,197 @@
+package com.example.puzzle_assemble_picture;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Point;
+import android.graphics.Rect;
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dựng ảnh board (atlas của PuzzleView) thẳng từ file ảnh level bằng BitmapRegionDecoder: vùng nguồn
+ * của từng piece được decode riêng ở inSampleSize gần nhất rồi vẽ scale vào đúng ô của nó trên atlas.
+ *
+ * Không bao giờ có ảnh nguyên cỡ decode ra hay bản scale trung gian: lúc cao điểm chỉ có atlas cộng
+ * một vùng piece tạm cho mỗi worker. Mỗi worker mở decoder riêng (decodeRegion khoá theo decoder) và
+ * lấy ô tiếp theo từ bộ đếm chung; thread gọi cũng tự decode nên không bao giờ chờ pool đang bận.
+ */
+final class PieceRegionDecoder {
+    private static final String TAG = "PieceRegionDecoder";
+
+    interface StreamSource {
+        InputStream open() throws IOException;
+    }
+
+    private final StreamSource source;
+    private final int gridSize;
+    private final Bitmap board;
+    // Pixel nguồn trên mỗi pixel board
+    private final float scaleX;
+    private final float scaleY;
+    private final int sampleSize;
+    private final int cellWidth;
+    private final int cellHeight;
+    private final int sourceWidth;
+    private final int sourceHeight;
+    private final AtomicInteger nextCell = new AtomicInteger();
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    private PieceRegionDecoder(StreamSource source, int gridSize, int sourceWidth, int sourceHeight,
+                               int boardWidth, int boardHeight) {
+        this.source = source;
+        this.gridSize = gridSize;
+        this.sourceWidth = sourceWidth;
+        this.sourceHeight = sourceHeight;
+        this.board = Bitmap.createBitmap(boardWidth, boardHeight, Bitmap.Config.RGB_565);
+        this.scaleX = (float) sourceWidth / boardWidth;
+        this.scaleY = (float) sourceHeight / boardHeight;
+        this.cellWidth = boardWidth / gridSize;
+        this.cellHeight = boardHeight / gridSize;
+
+        int sample = 1;
+        while (sample * 2 <= Math.min(scaleX, scaleY)) {
+            sample *= 2;
+        }
+        this.sampleSize = sample;
+    }
+
+    /**
+     * Decode ảnh board cho view (kích thước theo PuzzleView.measureBoard).
+     *
+     * @param workers số thread tối đa (kể cả thread gọi); phần còn lại được gửi vào pool
+     */
+    static Bitmap decodeBoard(StreamSource source, int viewWidth, int viewHeight, int gridSize,
+                              ExecutorService pool, int workers) throws Exception {
+        BitmapRegionDecoder decoder = open(source);
+        PieceRegionDecoder job;
+        try {
+            int sourceWidth = decoder.getWidth();
+            int sourceHeight = decoder.getHeight();
+            Point boardSize = PuzzleView.measureBoard(viewWidth, viewHeight, sourceWidth, sourceHeight);
+            if (boardSize.x < gridSize || boardSize.y < gridSize) {
+                throw new IOException("Board too small: " + boardSize.x + "x" + boardSize.y);
+            }
+            job = new PieceRegionDecoder(source, gridSize, sourceWidth, sourceHeight, boardSize.x, boardSize.y);
+        } catch (Exception | OutOfMemoryError e) {
+            decoder.recycle();
+            throw e;
+        }
+
+        long start = System.nanoTime();
+        List<Future<?>> helpers = new ArrayList<>();
+        for (int i = 1; i < Math.min(workers, gridSize * gridSize); i++) {
+            helpers.add(pool.submit(() -> {
+                job.run(null);
+                return null;
+            }));
+        }
+        try {
+            job.run(decoder);
+            for (Future<?> helper : helpers) {
+                // Helper chưa chạy thì bỏ (thread gọi đã làm hết ô); đang chạy thì chờ ô cuối của nó
+                if (!helper.cancel(false)) {
+                    helper.get();
+                }
+            }
+        } catch (Exception | OutOfMemoryError e) {
+            // Dừng các helper khác và chờ helper đang chạy buông atlas rồi mới recycle; helper chưa chạy thì bỏ
+            job.nextCell.set(gridSize * gridSize);
+            for (Future<?> helper : helpers) {
+                try {
+                    if (!helper.cancel(false)) {
+                        helper.get();
+                    }
+                } catch (Exception ignored) {
+                }
+            }
+            job.board.recycle();
+            throw e;
+        }
+
+        Log.d(TAG, "Decoded " + gridSize + "x" + gridSize + " pieces into " + job.board.getWidth() + "x"
+                + job.board.getHeight() + " board (source " + job.sourceWidth + "x" + job.sourceHeight
+                + ", inSampleSize " + job.sampleSize + ") in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return job.board;
+    }
+
+    private static BitmapRegionDecoder open(StreamSource source) throws IOException {
+        try (InputStream inputStream = source.open()) {
+            BitmapRegionDecoder decoder = BitmapRegionDecoder.newInstance(inputStream, false);
+            if (decoder == null) {
+                throw new IOException("Cannot open region decoder");
+            }
+            return decoder;
+        }
+    }
+
+    /**
+     * Lấy và decode các ô cho tới khi hết. decoder null thì tự mở decoder riêng; decoder luôn được
+     * recycle khi xong.
+     */
+    private void run(BitmapRegionDecoder decoder) throws IOException {
+        int cellCount = gridSize * gridSize;
+        if (nextCell.get() >= cellCount) {
+            if (decoder != null) {
+                decoder.recycle();
+            }
+            return;
+        }
+
+        BitmapRegionDecoder own = decoder != null ? decoder : open(source);
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        options.inPreferredConfig = Bitmap.Config.RGB_565;
+        Canvas canvas = new Canvas(board);
+        Matrix matrix = new Matrix();
+        Rect dst = new Rect();
+        Rect src = new Rect();
+        try {
+            for (int cell = nextCell.getAndIncrement(); cell < cellCount; cell = nextCell.getAndIncrement()) {
+                int row = cell / gridSize;
+                int col = cell % gridSize;
+
+                // Ô giống source rect của piece; hàng / cột cuối lấy luôn phần dư của board
+                dst.left = col * cellWidth;
+                dst.top = row * cellHeight;
+                dst.right = col == gridSize - 1 ? board.getWidth() : dst.left + cellWidth;
+                dst.bottom = row == gridSize - 1 ? board.getHeight() : dst.top + cellHeight;
+
+                // Vùng nguồn tương ứng, thêm 1 pixel viền để lọc bilinear không lộ đường nối giữa các ô
+                src.left = Math.max(0, (int) Math.floor(dst.left * scaleX) - 1);
+                src.top = Math.max(0, (int) Math.floor(dst.top * scaleY) - 1);
+                src.right = Math.min(sourceWidth, (int) Math.ceil(dst.right * scaleX) + 1);
+                src.bottom = Math.min(sourceHeight, (int) Math.ceil(dst.bottom * scaleY) + 1);
+
+                Bitmap region = own.decodeRegion(src, options);
+                if (region == null) {
+                    throw new IOException("Failed to decode region " + src.toShortString());
+                }
+
+                // Pixel (0,0) của region là pixel nguồn src.left/top; mỗi pixel region = sampleSize pixel nguồn
+                matrix.setScale((float) src.width() / region.getWidth() / scaleX,
+                        (float) src.height() / region.getHeight() / scaleY);
+                matrix.postTranslate(src.left / scaleX, src.top / scaleY);
+                synchronized (board) {
+                    canvas.save();
+                    canvas.clipRect(dst);
+                    canvas.drawBitmap(region, matrix, paint);
+                    canvas.restore();
+                }
+                region.recycle();
+            }
+        } finally {
+            own.recycle();
+        }
+    }
+}
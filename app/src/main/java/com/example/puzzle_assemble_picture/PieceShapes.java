@@ -0,0 +1,187 @@
+package com.example.puzzle_assemble_picture;
+
+import android.graphics.Path;
+import android.graphics.Rect;
+import android.graphics.Region;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hình piece kiểu jigsaw cổ điển (tab / blank) cho một board. Cạnh trong được chọn ngẫu nhiên từ seed
+ * nên cùng level luôn cho cùng hình; Path + Region của từng piece được dựng song song trên pool nền
+ * một lần rồi giữ lại cho cả level.
+ *
+ * Path và Region nằm trong toạ độ atlas (piece (row, col) bắt đầu tại col * cellWidth, row * cellHeight)
+ * để vẽ bằng một BitmapShader atlas cố định, chỉ cần translate canvas.
+ */
+final class PieceShapes {
+    private static final String TAG = "PieceShapes";
+
+    // Chiều cao tab theo phần cạnh ngắn của piece
+    static final float TAB_FRACTION = 0.2f;
+    // Thời gian dựng tối đa cho một level (11x11 trên máy tầm trung), vượt thì log cảnh báo
+    static final long BUILD_BUDGET_MS = 100;
+
+    private static final ExecutorService buildPool = Executors.newFixedThreadPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+
+    private final int gridSize;
+    private final long seed;
+    private final int cellWidth, cellHeight;
+    private final float overhang;
+
+    // +1: piece phía trên / trái có tab lồi sang piece kia, -1: ngược lại
+    private final byte[] horizontalEdges; // giữa row r và r + 1, index r * gridSize + col
+    private final byte[] verticalEdges;   // giữa col c và c + 1, index row * gridSize + c
+
+    private final Path[] paths;
+    private final Region[] regions;
+    private volatile boolean ready;
+    private long buildMillis;
+
+    PieceShapes(int gridSize, long seed, int cellWidth, int cellHeight) {
+        this.gridSize = gridSize;
+        this.seed = seed;
+        this.cellWidth = cellWidth;
+        this.cellHeight = cellHeight;
+        this.overhang = Math.min(cellWidth, cellHeight) * TAB_FRACTION;
+
+        int count = gridSize * gridSize;
+        horizontalEdges = new byte[count];
+        verticalEdges = new byte[count];
+        paths = new Path[count];
+        regions = new Region[count];
+
+        Random random = new Random(seed);
+        for (int i = 0; i < count; i++) {
+            horizontalEdges[i] = (byte) (random.nextBoolean() ? 1 : -1);
+            verticalEdges[i] = (byte) (random.nextBoolean() ? 1 : -1);
+        }
+    }
+
+    boolean matches(int gridSize, long seed, int cellWidth, int cellHeight) {
+        return this.gridSize == gridSize && this.seed == seed
+                && this.cellWidth == cellWidth && this.cellHeight == cellHeight;
+    }
+
+    /**
+     * Dựng mọi Path / Region trên pool nền (mỗi hàng một task); onReady chạy trên main thread.
+     */
+    void buildAsync(Runnable onReady) {
+        long start = SystemClock.elapsedRealtime();
+        Handler mainHandler = new Handler(Looper.getMainLooper());
+        AtomicInteger remainingRows = new AtomicInteger(gridSize);
+
+        for (int row = 0; row < gridSize; row++) {
+            final int r = row;
+            buildPool.execute(() -> {
+                for (int col = 0; col < gridSize; col++) {
+                    buildPiece(r, col);
+                }
+                if (remainingRows.decrementAndGet() == 0) {
+                    buildMillis = SystemClock.elapsedRealtime() - start;
+                    ready = true;
+                    if (buildMillis > BUILD_BUDGET_MS) {
+                        Log.w(TAG, "Shapes " + gridSize + "x" + gridSize + " built in " + buildMillis
+                                + "ms, over budget " + BUILD_BUDGET_MS + "ms");
+                    } else {
+                        Log.d(TAG, "Shapes " + gridSize + "x" + gridSize + " built in " + buildMillis + "ms");
+                    }
+                    mainHandler.post(onReady);
+                }
+            });
+        }
+    }
+
+    boolean isReady() {
+        return ready;
+    }
+
+    long getBuildMillis() {
+        return buildMillis;
+    }
+
+    float getOverhang() {
+        return overhang;
+    }
+
+    Path getPath(int piece) {
+        return paths[piece];
+    }
+
+    /**
+     * Điểm (localX, localY), tính từ góc trên trái cell của piece, nằm trong hình piece.
+     */
+    boolean contains(int piece, float localX, float localY) {
+        Region region = regions[piece];
+        if (region == null) {
+            return false;
+        }
+        int atlasX = (piece % gridSize) * cellWidth + (int) Math.floor(localX);
+        int atlasY = (piece / gridSize) * cellHeight + (int) Math.floor(localY);
+        return region.contains(atlasX, atlasY);
+    }
+
+    private void buildPiece(int row, int col) {
+        float left = col * cellWidth;
+        float top = row * cellHeight;
+        float right = left + cellWidth;
+        float bottom = top + cellHeight;
+
+        int topSign = row > 0 ? -horizontalEdges[(row - 1) * gridSize + col] : 0;
+        int rightSign = col < gridSize - 1 ? verticalEdges[row * gridSize + col] : 0;
+        int bottomSign = row < gridSize - 1 ? horizontalEdges[row * gridSize + col] : 0;
+        int leftSign = col > 0 ? -verticalEdges[row * gridSize + col - 1] : 0;
+
+        // Đi theo chiều kim đồng hồ; pháp tuyến ngoài của mỗi cạnh là (nx, ny)
+        Path path = new Path();
+        path.moveTo(left, top);
+        addEdge(path, left, top, right, top, 0, -1, topSign);
+        addEdge(path, right, top, right, bottom, 1, 0, rightSign);
+        addEdge(path, right, bottom, left, bottom, 0, 1, bottomSign);
+        addEdge(path, left, bottom, left, top, -1, 0, leftSign);
+        path.close();
+
+        int margin = (int) Math.ceil(overhang) + 1;
+        Region clip = new Region(new Rect((int) left - margin, (int) top - margin,
+                (int) right + margin, (int) bottom + margin));
+        Region region = new Region();
+        region.setPath(path, clip);
+
+        int piece = row * gridSize + col;
+        paths[piece] = path;
+        regions[piece] = region;
+    }
+
+    /**
+     * Cạnh từ (x0, y0) tới (x1, y1) với núm ở giữa: sign 1 lồi ra ngoài, -1 lõm vào, 0 thẳng.
+     */
+    private void addEdge(Path path, float x0, float y0, float x1, float y1, float nx, float ny, int sign) {
+        if (sign == 0) {
+            path.lineTo(x1, y1);
+            return;
+        }
+
+        float h = overhang * sign;
+        float dx = x1 - x0;
+        float dy = y1 - y0;
+        // Điểm tại t (theo chiều dài cạnh) và k (theo chiều cao tab)
+        path.lineTo(x0 + dx * 0.35f, y0 + dy * 0.35f);
+        path.cubicTo(
+                x0 + dx * 0.40f, y0 + dy * 0.40f,
+                x0 + dx * 0.30f + nx * h, y0 + dy * 0.30f + ny * h,
+                x0 + dx * 0.50f + nx * h, y0 + dy * 0.50f + ny * h);
+        path.cubicTo(
+                x0 + dx * 0.70f + nx * h, y0 + dy * 0.70f + ny * h,
+                x0 + dx * 0.60f, y0 + dy * 0.60f,
+                x0 + dx * 0.65f, y0 + dy * 0.65f);
+        path.lineTo(x1, y1);
+    }
+}
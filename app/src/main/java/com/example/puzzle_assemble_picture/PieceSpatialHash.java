@@ -0,0 +1,110 @@
+package com.example.puzzle_assemble_picture;
+
+/**
+ * Uniform grid cho hit-test piece ở chế độ đặt tự do. Bucket có kích thước bằng một piece nên mỗi
+ * piece nằm trong tối đa 4 bucket và một điểm chạm chỉ cần xét các piece trong 1 bucket.
+ */
+final class PieceSpatialHash {
+    private static final int INITIAL_BUCKET_CAPACITY = 4;
+
+    private final float originX, originY;
+    private final float bucketWidth, bucketHeight;
+    private final int columns, rows;
+    private final int[][] buckets;
+    private final int[] counts;
+
+    PieceSpatialHash(float originX, float originY, float width, float height,
+                     float bucketWidth, float bucketHeight) {
+        this.originX = originX;
+        this.originY = originY;
+        this.bucketWidth = bucketWidth;
+        this.bucketHeight = bucketHeight;
+        this.columns = Math.max(1, (int) Math.ceil(width / bucketWidth));
+        this.rows = Math.max(1, (int) Math.ceil(height / bucketHeight));
+        this.buckets = new int[columns * rows][];
+        this.counts = new int[columns * rows];
+    }
+
+    void clear() {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = 0;
+        }
+    }
+
+    void insert(int piece, float x, float y, float width, float height) {
+        int colStart = column(x);
+        int colEnd = column(x + width);
+        int rowStart = row(y);
+        int rowEnd = row(y + height);
+        for (int r = rowStart; r <= rowEnd; r++) {
+            for (int c = colStart; c <= colEnd; c++) {
+                add(r * columns + c, piece);
+            }
+        }
+    }
+
+    /**
+     * Gỡ piece khỏi các bucket mà rect (x, y, width, height) - vị trí lúc insert - đã chiếm.
+     */
+    void remove(int piece, float x, float y, float width, float height) {
+        int colStart = column(x);
+        int colEnd = column(x + width);
+        int rowStart = row(y);
+        int rowEnd = row(y + height);
+        for (int r = rowStart; r <= rowEnd; r++) {
+            for (int c = colStart; c <= colEnd; c++) {
+                removeFrom(r * columns + c, piece);
+            }
+        }
+    }
+
+    /**
+     * Bucket chứa điểm (x, y); dùng với bucketSize / bucketItem.
+     */
+    int bucketAt(float x, float y) {
+        return row(y) * columns + column(x);
+    }
+
+    int bucketSize(int bucket) {
+        return counts[bucket];
+    }
+
+    int bucketItem(int bucket, int index) {
+        return buckets[bucket][index];
+    }
+
+    private int column(float x) {
+        return Math.max(0, Math.min(columns - 1, (int) Math.floor((x - originX) / bucketWidth)));
+    }
+
+    private int row(float y) {
+        return Math.max(0, Math.min(rows - 1, (int) Math.floor((y - originY) / bucketHeight)));
+    }
+
+    private void add(int bucket, int piece) {
+        int[] items = buckets[bucket];
+        if (items == null) {
+            items = new int[INITIAL_BUCKET_CAPACITY];
+            buckets[bucket] = items;
+        } else if (counts[bucket] == items.length) {
+            int[] grown = new int[items.length * 2];
+            System.arraycopy(items, 0, grown, 0, items.length);
+            items = grown;
+            buckets[bucket] = items;
+        }
+        items[counts[bucket]++] = piece;
+    }
+
+    private void removeFrom(int bucket, int piece) {
+        int[] items = buckets[bucket];
+        int count = counts[bucket];
+        for (int i = 0; i < count; i++) {
+            if (items[i] == piece) {
+                // Thứ tự trong bucket không quan trọng, z-order nằm ở layout
+                items[i] = items[count - 1];
+                counts[bucket] = count - 1;
+                return;
+            }
+        }
+    }
+}
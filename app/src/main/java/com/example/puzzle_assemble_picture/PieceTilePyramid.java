@@ -0,0 +1,277 @@
+package com.example.puzzle_assemble_picture;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Tile pyramid cho deep zoom trong PuzzleView:
+ * - Level 0: atlas fit-to-screen (PuzzleView tự vẽ, không nằm ở đây)
+ * - Level 1: tile 2x độ phân giải cell, Level 2: tile 4x
+ *
+ * Tiles được decode theo yêu cầu từ ảnh gốc bằng BitmapRegionDecoder (không bị giới hạn MAX_IMAGE_SIZE),
+ * giữ trong mảng theo key với LRU theo bytes (danh sách liên kết trên int[], getTile không boxing key
+ * nên vẽ khi zoom không allocate) và bị loại khi piece rời viewport.
+ */
+public class PieceTilePyramid {
+    private static final String TAG = "PieceTilePyramid";
+
+    public static final int MAX_LEVEL = 2;
+    // scaleFactor từ ngưỡng này trở lên sẽ dùng level tương ứng
+    private static final float LEVEL_1_ZOOM = 1.5f;
+    private static final float LEVEL_2_ZOOM = 3.0f;
+
+    public interface TileListener {
+        void onTileReady();
+    }
+
+    private final BitmapRegionDecoder decoder;
+    private final int gridSize;
+    private final int cellWidth;
+    private final int cellHeight;
+    private final float sourceScaleX;
+    private final float sourceScaleY;
+    private final int sourceWidth;
+    private final int sourceHeight;
+
+    // Tile theo key; LRU là danh sách liên kết vòng qua node gốc lruHead (= số key), đầu là tile mới
+    // dùng nhất. Chỉ truy cập trên main thread
+    private final Bitmap[] tiles;
+    private final int[] lruPrev;
+    private final int[] lruNext;
+    private final int lruHead;
+    private final long maxTileBytes;
+    private long tileBytes;
+    // Key đang decode / đang được viewport cần; chỉ đọc-ghi trên main thread (pending) hoặc atomic (wanted)
+    private final boolean[] pending;
+    private final AtomicIntegerArray wanted;
+    private int pendingCount;
+    private final boolean[] visibleMask;
+
+    private final ExecutorService decodeExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final TileListener listener;
+    private volatile boolean released = false;
+
+    public PieceTilePyramid(BitmapRegionDecoder decoder, int gridSize, int boardWidth, int boardHeight,
+                            int cellWidth, int cellHeight, TileListener listener) {
+        this.decoder = decoder;
+        this.gridSize = gridSize;
+        this.cellWidth = cellWidth;
+        this.cellHeight = cellHeight;
+        this.sourceWidth = decoder.getWidth();
+        this.sourceHeight = decoder.getHeight();
+        this.sourceScaleX = (float) sourceWidth / boardWidth;
+        this.sourceScaleY = (float) sourceHeight / boardHeight;
+        this.listener = listener;
+
+        int keyCount = MAX_LEVEL * gridSize * gridSize;
+        this.pending = new boolean[keyCount];
+        this.wanted = new AtomicIntegerArray(keyCount);
+        this.visibleMask = new boolean[gridSize * gridSize];
+
+        // 1/16 heap cho tiles; tile cũ không recycle() vì display list của frame trước có thể vẫn tham chiếu
+        this.maxTileBytes = Runtime.getRuntime().maxMemory() / 16;
+        this.tiles = new Bitmap[keyCount];
+        this.lruPrev = new int[keyCount + 1];
+        this.lruNext = new int[keyCount + 1];
+        this.lruHead = keyCount;
+        lruPrev[lruHead] = lruHead;
+        lruNext[lruHead] = lruHead;
+
+        Log.d(TAG, "Tile pyramid ready: source " + sourceWidth + "x" + sourceHeight
+                + ", cell " + cellWidth + "x" + cellHeight + ", budget " + maxTileBytes + " bytes");
+    }
+
+    /**
+     * Level pyramid phù hợp với mức zoom hiện tại (0 = dùng atlas)
+     */
+    public static int levelForScale(float scaleFactor) {
+        if (scaleFactor >= LEVEL_2_ZOOM) return 2;
+        if (scaleFactor >= LEVEL_1_ZOOM) return 1;
+        return 0;
+    }
+
+    private int key(int level, int pieceIndex) {
+        return (level - 1) * gridSize * gridSize + pieceIndex;
+    }
+
+    /**
+     * Tile đã decode cho piece ở level này, hoặc null (khi đó request decode và vẽ tạm bằng atlas).
+     * Gọi trên main thread.
+     */
+    public Bitmap getTile(int level, int pieceIndex) {
+        if (level <= 0 || released) {
+            return null;
+        }
+
+        int key = key(level, pieceIndex);
+        Bitmap tile = tiles[key];
+        if (tile != null) {
+            if (lruNext[lruHead] != key) {
+                unlink(key);
+                linkFirst(key);
+            }
+        } else if (!pending[key]) {
+            requestTile(level, pieceIndex, key);
+        }
+        return tile;
+    }
+
+    /**
+     * Số tile đang decode (main thread).
+     */
+    int getPendingCount() {
+        return pendingCount;
+    }
+
+    // ===== LRU =====
+
+    private void putTile(int key, Bitmap tile) {
+        removeTile(key);
+        tiles[key] = tile;
+        tileBytes += tile.getByteCount();
+        linkFirst(key);
+        // Tile vừa thêm luôn được giữ, kể cả khi một mình nó vượt budget
+        while (tileBytes > maxTileBytes && lruPrev[lruHead] != key) {
+            removeTile(lruPrev[lruHead]);
+        }
+    }
+
+    private void removeTile(int key) {
+        Bitmap tile = tiles[key];
+        if (tile == null) {
+            return;
+        }
+        unlink(key);
+        tileBytes -= tile.getByteCount();
+        tiles[key] = null;
+    }
+
+    private void linkFirst(int key) {
+        int first = lruNext[lruHead];
+        lruPrev[key] = lruHead;
+        lruNext[key] = first;
+        lruPrev[first] = key;
+        lruNext[lruHead] = key;
+    }
+
+    private void unlink(int key) {
+        lruNext[lruPrev[key]] = lruNext[key];
+        lruPrev[lruNext[key]] = lruPrev[key];
+    }
+
+    private void requestTile(int level, int pieceIndex, int key) {
+        pending[key] = true;
+        pendingCount++;
+        wanted.set(key, 1);
+
+        decodeExecutor.execute(() -> {
+            Bitmap tile = null;
+            if (!released && wanted.get(key) == 1) {
+                tile = decodeTile(level, pieceIndex);
+            }
+
+            final Bitmap result = tile;
+            mainHandler.post(() -> {
+                pending[key] = false;
+                pendingCount--;
+                if (released || result == null) {
+                    return;
+                }
+                if (wanted.get(key) == 1) {
+                    putTile(key, result);
+                    if (listener != null) {
+                        listener.onTileReady();
+                    }
+                }
+            });
+        });
+    }
+
+    private Bitmap decodeTile(int level, int pieceIndex) {
+        int row = pieceIndex / gridSize;
+        int col = pieceIndex % gridSize;
+
+        Rect region = new Rect(
+                Math.round(col * cellWidth * sourceScaleX),
+                Math.round(row * cellHeight * sourceScaleY),
+                Math.round((col + 1) * cellWidth * sourceScaleX),
+                Math.round((row + 1) * cellHeight * sourceScaleY)
+        );
+        region.intersect(0, 0, sourceWidth, sourceHeight);
+        if (region.isEmpty()) {
+            return null;
+        }
+
+        int targetWidth = cellWidth << level;
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inPreferredConfig = Bitmap.Config.RGB_565;
+        options.inSampleSize = 1;
+        while (region.width() / (options.inSampleSize * 2) >= targetWidth) {
+            options.inSampleSize *= 2;
+        }
+
+        try {
+            return decoder.decodeRegion(region, options);
+        } catch (Exception e) {
+            Log.e(TAG, "Error decoding tile level " + level + " piece " + pieceIndex, e);
+            return null;
+        }
+    }
+
+    /**
+     * Loại tiles của piece không còn trong viewport (và của level khác level hiện tại).
+     * Gọi khi dải row/col hiển thị thay đổi.
+     */
+    public void retainVisible(PuzzleBoard board, int level,
+                              int rowStart, int rowEnd, int colStart, int colEnd) {
+        if (released) {
+            return;
+        }
+
+        Arrays.fill(visibleMask, false);
+        if (level > 0) {
+            for (int row = rowStart; row < rowEnd; row++) {
+                for (int col = colStart; col < colEnd; col++) {
+                    visibleMask[board.pieceAt(row, col)] = true;
+                }
+            }
+        }
+
+        int pieceCount = gridSize * gridSize;
+        for (int l = 1; l <= MAX_LEVEL; l++) {
+            for (int i = 0; i < pieceCount; i++) {
+                if (l != level || !visibleMask[i]) {
+                    int key = key(l, i);
+                    wanted.set(key, 0);
+                    removeTile(key);
+                }
+            }
+        }
+    }
+
+    public void release() {
+        if (released) {
+            return;
+        }
+        released = true;
+        mainHandler.removeCallbacksAndMessages(null);
+        Arrays.fill(tiles, null);
+        tileBytes = 0;
+        lruPrev[lruHead] = lruHead;
+        lruNext[lruHead] = lruHead;
+        // Task decode còn trong queue sẽ bỏ qua vì released; recycle decoder sau chúng trên cùng thread
+        decodeExecutor.execute(decoder::recycle);
+        decodeExecutor.shutdown();
+    }
+}
@@ -0,0 +1,764 @@
+package com.example.puzzle_assemble_picture;
+
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * Luật chơi của puzzle, không phụ thuộc Android (chạy / benchmark được trên JVM).
+ *
+ * State là một hoán vị: cells[cell] = piece nằm ở cell đó, với cell = row * gridSize + col và
+ * piece = correctRow * gridSize + correctCol (piece đúng chỗ khi cells[cell] == cell).
+ * Cell đã khoá nằm trong BitSet locked; piece chỉ bị khoá khi đã đúng chỗ nên khoá cell = khoá piece.
+ *
+ * Số piece đúng chỗ / đã khoá được cập nhật O(1) ở mỗi swap, và lockCorrectPieces chỉ xét các cell
+ * thay đổi kể từ lần gọi trước - chi phí mỗi nước đi không tăng theo gridSize.
+ *
+ * Nếu bật auto connect, các piece kề nhau đúng vị trí tương đối được gom nhóm (PieceGroups) ngay
+ * khi board thay đổi; nhóm có thể di chuyển như một khối bằng moveBlock.
+ *
+ * Nếu bật xoay (INSANE), mỗi piece có thêm số lần xoay 90° theo chiều kim đồng hồ (0..3) đi theo piece
+ * khi nó di chuyển; piece chỉ đúng khi vừa đúng cell vừa không bị xoay.
+ *
+ * Mọi thay đổi đi qua 3 thao tác nguyên tử (swap, khoá, xoay) và được ghi vào MoveJournal, nên mỗi
+ * nước đi / power-up undo / redo được với chi phí bằng chính nó.
+ */
+public class PuzzleBoard {
+    private final int gridSize;
+    private final int cellCount;
+    private final int[] cells;
+    // Nghịch đảo của cells: positions[piece] = cell hiện tại của piece
+    private final int[] positions;
+    private final BitSet locked;
+    private final boolean autoLockCorrectPieces;
+    private final boolean autoConnectCorrectPieces;
+    private final PieceGroups groups;
+    private final boolean rotationEnabled;
+    // Số lần xoay 90° theo piece index
+    private final byte[] rotations;
+    private final MoveJournal journal;
+    // Độ khó của shuffle(seed); mặc định derangement, chu trình dài trung bình 8
+    private ShuffleGenerator shuffleGenerator;
+    // Đang undo / redo / dựng lại: không ghi journal và không có tác dụng phụ (bỏ khoá)
+    private boolean replaying;
+
+    private int correctCount;
+    private int lockedCount;
+
+    // Cell đổi piece từ lần lockCorrectPieces trước (không trùng nhờ touchedFlags)
+    private final int[] touchedCells;
+    private final BitSet touchedFlags;
+    private int touchedCount;
+
+    // Scratch cho moveBlock / regroup
+    private final BitSet blockFlags;
+    private final BitSet targetFlags;
+    private final BitSet regroupFlags;
+    private final int[] scratchCells;
+    private final int[] scratchPieces;
+    private final int[] scratchRoots;
+
+    public PuzzleBoard(int gridSize, boolean autoLockCorrectPieces, boolean autoConnectCorrectPieces) {
+        this(gridSize, autoLockCorrectPieces, autoConnectCorrectPieces, false);
+    }
+
+    public PuzzleBoard(int gridSize, boolean autoLockCorrectPieces, boolean autoConnectCorrectPieces,
+                       boolean rotationEnabled) {
+        this.gridSize = gridSize;
+        this.cellCount = gridSize * gridSize;
+        this.cells = new int[cellCount];
+        this.positions = new int[cellCount];
+        this.locked = new BitSet(cellCount);
+        this.autoLockCorrectPieces = autoLockCorrectPieces;
+        this.autoConnectCorrectPieces = autoConnectCorrectPieces;
+        this.rotationEnabled = rotationEnabled;
+        this.rotations = new byte[cellCount];
+        this.journal = new MoveJournal(gridSize);
+        this.shuffleGenerator = ShuffleGenerator.forDifficulty(gridSize, rotationEnabled, 0f, 0.25f);
+        this.groups = new PieceGroups(gridSize);
+        this.blockFlags = new BitSet(cellCount);
+        this.targetFlags = new BitSet(cellCount);
+        this.regroupFlags = new BitSet(cellCount);
+        this.scratchCells = new int[cellCount * 2];
+        this.scratchPieces = new int[cellCount * 2];
+        this.scratchRoots = new int[cellCount];
+        this.touchedCells = new int[cellCount];
+        this.touchedFlags = new BitSet(cellCount);
+
+        for (int i = 0; i < cellCount; i++) {
+            cells[i] = i;
+            positions[i] = i;
+        }
+        correctCount = cellCount;
+        connectAll();
+        journal.reset(cells, rotations, locked);
+    }
+
+    public int getGridSize() {
+        return gridSize;
+    }
+
+    public int getCellCount() {
+        return cellCount;
+    }
+
+    public int cellIndex(int row, int col) {
+        return row * gridSize + col;
+    }
+
+    public int pieceAt(int cell) {
+        return cells[cell];
+    }
+
+    public int pieceAt(int row, int col) {
+        return cells[row * gridSize + col];
+    }
+
+    public int cellOf(int piece) {
+        return positions[piece];
+    }
+
+    public boolean isLocked(int cell) {
+        return locked.get(cell);
+    }
+
+    public boolean isPieceLocked(int piece) {
+        return locked.get(positions[piece]);
+    }
+
+    public boolean isCorrect(int cell) {
+        return isCorrectPlacement(cells[cell], cell);
+    }
+
+    private boolean isCorrectPlacement(int piece, int cell) {
+        return piece == cell && rotations[piece] == 0;
+    }
+
+    public boolean isRotationEnabled() {
+        return rotationEnabled;
+    }
+
+    public boolean isAutoLockEnabled() {
+        return autoLockCorrectPieces;
+    }
+
+    public boolean isAutoConnectEnabled() {
+        return autoConnectCorrectPieces;
+    }
+
+    /**
+     * Số lần piece đang bị xoay 90° theo chiều kim đồng hồ (0..3).
+     */
+    public int getRotation(int piece) {
+        return rotations[piece];
+    }
+
+    public int groupSize(int piece) {
+        return groups.groupSize(piece);
+    }
+
+    public boolean sameGroup(int pieceA, int pieceB) {
+        return groups.sameGroup(pieceA, pieceB);
+    }
+
+    /**
+     * Ghi cell của mọi piece cùng nhóm với piece vào out, cell của chính piece đứng đầu.
+     *
+     * @return số cell đã ghi
+     */
+    public int collectGroupCells(int piece, int[] out) {
+        return groups.collectCells(this, piece, out);
+    }
+
+    // ===== Thay đổi state =====
+
+    /**
+     * Độ khó cho các lần shuffle sau; phải cùng grid size và chế độ xoay với board.
+     */
+    public void setShuffleGenerator(ShuffleGenerator generator) {
+        if (generator.getGridSize() != gridSize || generator.isRotationEnabled() != rotationEnabled) {
+            throw new IllegalArgumentException("Generator does not match board " + gridSize + "x" + gridSize);
+        }
+        shuffleGenerator = generator;
+    }
+
+    public ShuffleGenerator getShuffleGenerator() {
+        return shuffleGenerator;
+    }
+
+    /**
+     * Xáo toàn bộ board với seed ngẫu nhiên và bỏ mọi khoá.
+     */
+    public void shuffle(Random random) {
+        shuffle(random.nextLong());
+    }
+
+    /**
+     * Xáo toàn bộ board từ seed theo ShuffleGenerator hiện tại (cùng seed cho cùng board) và bắt đầu
+     * journal mới từ đó.
+     */
+    public void shuffle(long seed) {
+        shuffleGenerator.generate(seed, cells, rotations);
+        locked.clear();
+        onStateReplaced();
+        journal.reset(seed, shuffleGenerator);
+    }
+
+    /**
+     * Dựng lại board từ gốc của journal (seed hoặc checkpoint) rồi áp dụng lại các bước tới cursor.
+     */
+    public void rebuildFromJournal() {
+        journal.copyBase(cells, rotations, locked);
+        replaying = true;
+        for (int i = 0; i < journal.getCursor(); i++) {
+            apply(journal.entryAt(i), true);
+        }
+        replaying = false;
+        onStateReplaced();
+    }
+
+    /**
+     * cells / rotations / locked vừa bị ghi đè toàn bộ: tính lại positions, counters, nhóm.
+     */
+    private void onStateReplaced() {
+        correctCount = 0;
+        for (int cell = 0; cell < cellCount; cell++) {
+            positions[cells[cell]] = cell;
+            if (isCorrectPlacement(cells[cell], cell)) {
+                correctCount++;
+            }
+        }
+        lockedCount = locked.cardinality();
+        touchedFlags.clear();
+        touchedCount = 0;
+        for (int cell = 0; cell < cellCount; cell++) {
+            touch(cell);
+        }
+        groups.reset();
+        connectAll();
+    }
+
+    /**
+     * Xáo các piece giữa những cell cho trước (ví dụ cell chưa đúng, chưa khoá).
+     */
+    public void shuffleCells(int[] subset, Random random) {
+        journal.beginStep();
+        for (int i = subset.length - 1; i > 0; i--) {
+            exchange(subset[i], subset[random.nextInt(i + 1)]);
+        }
+        if (rotationEnabled) {
+            for (int cell : subset) {
+                if (!locked.get(cell)) {
+                    setRotation(cell, random.nextInt(4));
+                }
+            }
+        }
+        regroup(subset, subset.length);
+    }
+
+    /**
+     * Đổi chỗ 2 cell, không kiểm tra luật (dùng cho solve / animation đã được lên kế hoạch).
+     */
+    public void swapCells(int a, int b) {
+        if (a == b) {
+            return;
+        }
+        journal.beginStep();
+        exchange(a, b);
+        scratchCells[0] = a;
+        scratchCells[1] = b;
+        regroup(scratchCells, 2);
+    }
+
+    /**
+     * Đổi chỗ 2 cell và cập nhật counters, chưa cập nhật nhóm (caller gọi regroup sau cả loạt).
+     */
+    private void exchange(int a, int b) {
+        if (a == b) {
+            return;
+        }
+        swapRaw(a, b);
+
+        // Cell khoá luôn chứa piece đúng; swap cưỡng bức ra khỏi cell khoá thì bỏ khoá
+        if (locked.get(a)) {
+            setLocked(a, false);
+        }
+        if (locked.get(b)) {
+            setLocked(b, false);
+        }
+    }
+
+    /**
+     * Swap nguyên tử: counters, touched, journal; không đụng tới khoá.
+     */
+    private void swapRaw(int a, int b) {
+        int pieceA = cells[a];
+        int pieceB = cells[b];
+        // Trừ trạng thái cũ, cộng trạng thái mới của 2 cell
+        correctCount -= (isCorrectPlacement(pieceA, a) ? 1 : 0) + (isCorrectPlacement(pieceB, b) ? 1 : 0);
+        cells[a] = pieceB;
+        cells[b] = pieceA;
+        positions[pieceB] = a;
+        positions[pieceA] = b;
+        correctCount += (isCorrectPlacement(pieceB, a) ? 1 : 0) + (isCorrectPlacement(pieceA, b) ? 1 : 0);
+        touch(a);
+        touch(b);
+        if (!replaying) {
+            journal.recordSwap(a, b);
+        }
+    }
+
+    /**
+     * Dịch cả khối cell (một nhóm) đi (dRow, dCol). Piece đang chiếm chỗ đích được đẩy vào các
+     * cell khối vừa bỏ trống, giữ nguyên thứ tự theo hướng di chuyển.
+     *
+     * @return false nếu khối ra ngoài board hoặc chạm cell đã khoá (board không đổi)
+     */
+    public boolean moveBlock(int[] blockCells, int count, int dRow, int dCol) {
+        if (count == 0 || (dRow == 0 && dCol == 0)) {
+            return false;
+        }
+
+        int delta = dRow * gridSize + dCol;
+        for (int i = 0; i < count; i++) {
+            int cell = blockCells[i];
+            int row = cell / gridSize + dRow;
+            int col = cell % gridSize + dCol;
+            if (row < 0 || row >= gridSize || col < 0 || col >= gridSize
+                    || locked.get(cell) || locked.get(cell + delta)) {
+                return false;
+            }
+        }
+
+        blockFlags.clear();
+        targetFlags.clear();
+        for (int i = 0; i < count; i++) {
+            blockFlags.set(blockCells[i]);
+            targetFlags.set(blockCells[i] + delta);
+        }
+
+        // Lên danh sách (cell, piece mới) trước khi ghi để không đọc phải state đã sửa
+        int assignments = 0;
+        for (int i = 0; i < count; i++) {
+            int cell = blockCells[i];
+            scratchCells[assignments] = cell + delta;
+            scratchPieces[assignments++] = cells[cell];
+        }
+        for (int i = 0; i < count; i++) {
+            int target = blockCells[i] + delta;
+            if (blockFlags.get(target)) {
+                continue;
+            }
+            // Lùi theo hướng ngược lại tới cell đầu tiên khối không chiếm nữa
+            int vacated = target - delta;
+            while (targetFlags.get(vacated)) {
+                vacated -= delta;
+            }
+            scratchCells[assignments] = vacated;
+            scratchPieces[assignments++] = cells[target];
+        }
+
+        // Thực hiện bằng chuỗi swap (ghi được vào journal): mỗi swap đưa đúng piece vào một cell và
+        // không đụng tới cell đã xong; mọi cell liên quan đều không khoá nên exchange không bỏ khoá gì
+        journal.beginStep();
+        for (int i = 0; i < assignments; i++) {
+            int cell = scratchCells[i];
+            int piece = scratchPieces[i];
+            if (cells[cell] != piece) {
+                exchange(cell, positions[piece]);
+            }
+        }
+        regroup(scratchCells, assignments);
+        return true;
+    }
+
+    /**
+     * Cập nhật nhóm sau khi các cell cho trước đổi piece: nhóm cũ của piece bị di chuyển được dựng
+     * lại (tách nếu cần), rồi nối với hàng xóm mới. O(số cell + kích thước các nhóm liên quan).
+     */
+    private void regroup(int[] changedCells, int count) {
+        if (!autoConnectCorrectPieces) {
+            return;
+        }
+
+        int roots = 0;
+        for (int i = 0; i < count; i++) {
+            int root = groups.find(cells[changedCells[i]]);
+            if (groups.groupSize(root) > 1 && !regroupFlags.get(root)) {
+                regroupFlags.set(root);
+                scratchRoots[roots++] = root;
+            }
+        }
+        for (int i = 0; i < roots; i++) {
+            regroupFlags.clear(scratchRoots[i]);
+            groups.rebuildGroup(this, scratchRoots[i]);
+        }
+        for (int i = 0; i < count; i++) {
+            groups.connectAround(this, changedCells[i]);
+        }
+    }
+
+    private void connectAll() {
+        if (!autoConnectCorrectPieces) {
+            return;
+        }
+        for (int cell = 0; cell < cellCount; cell++) {
+            groups.connectAround(this, cell);
+        }
+    }
+
+    /**
+     * Đổi số lần xoay của piece tại cell, cập nhật counter; chưa cập nhật nhóm.
+     */
+    private void setRotation(int cell, int rotation) {
+        int piece = cells[cell];
+        boolean wasCorrect = isCorrectPlacement(piece, cell);
+        if (!replaying) {
+            journal.recordRotation(cell, rotations[piece], rotation & 3);
+        }
+        rotations[piece] = (byte) (rotation & 3);
+        boolean nowCorrect = isCorrectPlacement(piece, cell);
+        if (wasCorrect != nowCorrect) {
+            correctCount += nowCorrect ? 1 : -1;
+        }
+        touch(cell);
+    }
+
+    /**
+     * Người chơi xoay piece tại cell thêm 90° theo chiều kim đồng hồ. Piece rời khỏi nhóm của nó
+     * (nhóm chỉ gồm piece không xoay).
+     *
+     * @return false nếu không bật xoay hoặc cell đã khoá
+     */
+    public boolean rotate(int cell) {
+        if (!rotationEnabled || locked.get(cell)) {
+            return false;
+        }
+        journal.beginStep();
+        setRotation(cell, rotations[cells[cell]] + 1);
+        scratchCells[0] = cell;
+        regroup(scratchCells, 1);
+        return true;
+    }
+
+    /**
+     * Thực hiện kế hoạch của SwapPlanner như một bước journal (undo một lần là hoàn tác cả power-up):
+     * mỗi cặp {from, to} đưa piece ở from về đúng cell to của nó và dựng thẳng lại.
+     */
+    public void applySwapPlan(int[] plan, int swapCount) {
+        if (swapCount == 0) {
+            return;
+        }
+        journal.beginStep();
+        int changed = 0;
+        blockFlags.clear();
+        for (int i = 0; i < swapCount; i++) {
+            int from = plan[i * 2];
+            int to = plan[i * 2 + 1];
+            exchange(from, to);
+            if (rotations[cells[to]] != 0) {
+                setRotation(to, 0);
+            }
+            changed = noteChanged(from, changed);
+            changed = noteChanged(to, changed);
+        }
+        regroup(scratchCells, changed);
+    }
+
+    // ===== Undo / redo =====
+
+    public boolean canUndo() {
+        return journal.canUndo();
+    }
+
+    public boolean canRedo() {
+        return journal.canRedo();
+    }
+
+    /**
+     * Đảo ngược bước gần nhất (nước đi kèm các khoá nó gây ra). O(số entry của bước).
+     */
+    public boolean undo() {
+        int length = journal.undoLength();
+        if (length == 0) {
+            return false;
+        }
+        int cursor = journal.getCursor();
+        replayEntries(cursor - 1, -1, length, false);
+        journal.moveCursor(-length);
+        return true;
+    }
+
+    public boolean redo() {
+        int length = journal.redoLength();
+        if (length == 0) {
+            return false;
+        }
+        replayEntries(journal.getCursor(), 1, length, true);
+        journal.moveCursor(length);
+        return true;
+    }
+
+    /**
+     * Bắt đầu journal mới từ trạng thái hiện tại (sau khi load game đã lưu).
+     */
+    public void resetJournal() {
+        journal.reset(cells, rotations, locked);
+    }
+
+    public MoveJournal getJournal() {
+        return journal;
+    }
+
+    private void replayEntries(int first, int step, int length, boolean forward) {
+        replaying = true;
+        int changed = 0;
+        blockFlags.clear();
+        for (int i = 0; i < length; i++) {
+            int entry = journal.entryAt(first + i * step);
+            apply(entry, forward);
+            if (MoveJournal.op(entry) == MoveJournal.OP_SWAP) {
+                changed = noteChanged(MoveJournal.a(entry), changed);
+                changed = noteChanged(MoveJournal.b(entry), changed);
+            } else if (MoveJournal.op(entry) == MoveJournal.OP_ROTATE) {
+                changed = noteChanged(MoveJournal.a(entry), changed);
+            }
+        }
+        replaying = false;
+        regroup(scratchCells, changed);
+    }
+
+    private int noteChanged(int cell, int count) {
+        if (!blockFlags.get(cell)) {
+            blockFlags.set(cell);
+            scratchCells[count++] = cell;
+        }
+        return count;
+    }
+
+    /**
+     * Áp dụng (forward) hoặc đảo ngược một entry bằng thao tác nguyên tử, không tác dụng phụ.
+     */
+    private void apply(int entry, boolean forward) {
+        int cell = MoveJournal.a(entry);
+        switch (MoveJournal.op(entry)) {
+            case MoveJournal.OP_SWAP:
+                swapRaw(cell, MoveJournal.b(entry));
+                break;
+            case MoveJournal.OP_LOCK:
+                setLocked(cell, forward);
+                break;
+            case MoveJournal.OP_UNLOCK:
+                setLocked(cell, !forward);
+                break;
+            default:
+                int value = MoveJournal.b(entry);
+                setRotation(cell, forward ? value & 3 : value >> 2);
+                break;
+        }
+    }
+
+    private void touch(int cell) {
+        if (!touchedFlags.get(cell)) {
+            touchedFlags.set(cell);
+            touchedCells[touchedCount++] = cell;
+        }
+    }
+
+    private void setLocked(int cell, boolean value) {
+        if (locked.get(cell) != value) {
+            locked.set(cell, value);
+            lockedCount += value ? 1 : -1;
+            if (!replaying) {
+                journal.recordLock(cell, value);
+            }
+        }
+    }
+
+    public boolean canMove(int fromCell, int toCell) {
+        return fromCell != toCell && !locked.get(fromCell) && !locked.get(toCell);
+    }
+
+    /**
+     * Người chơi kéo / chọn piece từ fromCell sang toCell (đổi chỗ với piece ở đó).
+     *
+     * @return true nếu board thay đổi
+     */
+    public boolean move(int fromCell, int toCell) {
+        if (!canMove(fromCell, toCell)) {
+            return false;
+        }
+        swapCells(fromCell, toCell);
+        return true;
+    }
+
+    /**
+     * Đặt piece vào cell (đổi chỗ với piece đang ở đó), dùng khi khôi phục game đã lưu.
+     */
+    public void placePiece(int piece, int cell, boolean isLocked) {
+        swapCells(positions[piece], cell);
+        setLocked(cell, isLocked && isCorrect(cell));
+    }
+
+    /**
+     * Khôi phục số lần xoay của piece từ game đã lưu (bỏ qua nếu không bật xoay).
+     */
+    public void restoreRotation(int piece, int rotation) {
+        if (!rotationEnabled) {
+            return;
+        }
+        int cell = positions[piece];
+        setRotation(cell, rotation);
+        if (!isCorrect(cell)) {
+            setLocked(cell, false);
+        }
+        scratchCells[0] = cell;
+        regroup(scratchCells, 1);
+    }
+
+    /**
+     * Khoá các piece vừa vào đúng chỗ (nếu config bật auto lock). Chỉ xét cell đã thay đổi
+     * từ lần gọi trước: 2 cell sau một nước đi, tập cell được xáo sau shuffle.
+     *
+     * @return số piece vừa được khoá
+     */
+    public int lockCorrectPieces() {
+        int newlyLocked = 0;
+        for (int i = 0; i < touchedCount; i++) {
+            int cell = touchedCells[i];
+            touchedFlags.clear(cell);
+            if (autoLockCorrectPieces && isCorrect(cell) && !locked.get(cell)) {
+                setLocked(cell, true);
+                newlyLocked++;
+            }
+        }
+        touchedCount = 0;
+        return newlyLocked;
+    }
+
+    /**
+     * Khoá cell nếu piece ở đó đúng chỗ (bất kể auto lock), dùng sau solve corners / edges.
+     */
+    public boolean lockIfCorrect(int cell) {
+        if (isCorrect(cell)) {
+            setLocked(cell, true);
+            return true;
+        }
+        return false;
+    }
+
+    // ===== Truy vấn =====
+
+    public boolean isComplete() {
+        return correctCount == cellCount;
+    }
+
+    public int getCorrectCount() {
+        return correctCount;
+    }
+
+    public int getLockedCount() {
+        return lockedCount;
+    }
+
+    public int getRemainingCount() {
+        return cellCount - correctCount;
+    }
+
+    /**
+     * Còn piece sai chỗ (piece sai chỗ không bao giờ bị khoá).
+     */
+    public boolean canAutoSolve() {
+        return correctCount < cellCount;
+    }
+
+    public boolean canShuffle() {
+        return cellCount - lockedCount >= 2;
+    }
+
+    /**
+     * Các cell chưa khoá đang chứa piece sai chỗ (theo thứ tự hàng).
+     */
+    public int[] collectMisplacedCells() {
+        int count = 0;
+        int[] result = new int[cellCount];
+        for (int cell = 0; cell < cellCount; cell++) {
+            if (!locked.get(cell) && !isCorrect(cell)) {
+                result[count++] = cell;
+            }
+        }
+        int[] trimmed = new int[count];
+        System.arraycopy(result, 0, trimmed, 0, count);
+        return trimmed;
+    }
+
+    // ===== Corners / edges =====
+
+    public int[] cornerCells() {
+        int last = gridSize - 1;
+        return new int[]{cellIndex(0, 0), cellIndex(0, last), cellIndex(last, 0), cellIndex(last, last)};
+    }
+
+    /**
+     * Cell cạnh (không gồm góc) theo thứ tự: cạnh trên, dưới, trái, phải.
+     */
+    public int[] edgeCells() {
+        int last = gridSize - 1;
+        int inner = Math.max(0, gridSize - 2);
+        int[] result = new int[inner * 4];
+        int i = 0;
+        for (int col = 1; col < last; col++) result[i++] = cellIndex(0, col);
+        for (int col = 1; col < last; col++) result[i++] = cellIndex(last, col);
+        for (int row = 1; row < last; row++) result[i++] = cellIndex(row, 0);
+        for (int row = 1; row < last; row++) result[i++] = cellIndex(row, last);
+        return result;
+    }
+
+    public boolean hasIncorrectCell(int[] targets) {
+        for (int cell : targets) {
+            if (!isCorrect(cell)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Khoá các cell đích đã đúng chỗ.
+     *
+     * @return số cell được khoá
+     */
+    public int lockCorrectCells(int[] targets) {
+        int count = 0;
+        for (int cell : targets) {
+            if (lockIfCorrect(cell)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // ===== Save / load =====
+
+    public int[] copyCells() {
+        return cells.clone();
+    }
+
+    public BitSet copyLocked() {
+        return (BitSet) locked.clone();
+    }
+
+    public byte[] copyRotations() {
+        return rotations.clone();
+    }
+
+    /**
+     * Như copyCells nhưng ghi vào mảng có sẵn (snapshot cho render thread, không cấp phát).
+     */
+    public void copyCellsInto(int[] out) {
+        System.arraycopy(cells, 0, out, 0, cells.length);
+    }
+
+    public void copyRotationsInto(byte[] out) {
+        System.arraycopy(rotations, 0, out, 0, rotations.length);
+    }
+}
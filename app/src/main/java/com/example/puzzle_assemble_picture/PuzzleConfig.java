@@ -7,6 +7,17 @@ public class PuzzleConfig {
     public boolean canSeparateConnectedPieces;
     public boolean autoConnectCorrectPieces;
     public boolean dimLockedPieces;
+    // Piece nằm tự do quanh board thay vì trong cell (Settings)
+    public boolean freePlacement = false;
+    // Piece hình jigsaw (tab / blank) sinh từ shapeSeed, cùng seed thì cùng hình (Settings)
+    public boolean shapedPieces = false;
+    public long shapeSeed = 0;
+    // Board ban đầu xáo từ shuffleSeed (ShuffleGenerator): cùng seed + độ khó thì cùng board.
+    // initialCorrectFraction: phần piece nằm sẵn đúng chỗ (0 = không piece nào);
+    // shuffleCycleDensity: 1 = toàn cặp đổi chỗ (dễ), 0 = một chu trình dài (khó)
+    public long shuffleSeed = 0;
+    public float initialCorrectFraction = 0f;
+    public float shuffleCycleDensity = 0.25f;
 
     // ✅ THÊM: Insane mode features
     public boolean enableRotation = false;
@@ -0,0 +1,843 @@
+package com.example.puzzle_assemble_picture;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.AssetManager;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.ImageDecoder;
+import android.graphics.Point;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.RequiresApi;
+
+import com.google.android.play.core.assetpacks.AssetPackLocation;
+import com.google.android.play.core.assetpacks.AssetPackManager;
+import com.google.android.play.core.assetpacks.AssetPackManagerFactory;
+import com.google.android.play.core.assetpacks.AssetPackState;
+import com.google.android.play.core.assetpacks.AssetPackStateUpdateListener;
+import com.google.android.play.core.assetpacks.model.AssetPackStatus;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Nguồn ảnh puzzle duy nhất của app (một instance theo application), load từ:
+ * 1. Bundled assets (Level 1-10): app/src/main/assets/puzzles_bundled/
+ * 2. On-demand asset packs (Level 11+): puzzlepack_xxx/src/main/assets/puzzles/
+ *
+ * Mọi decode chạy trên một pool cố định theo số CPU thay vì mỗi request một thread. Các request
+ * đồng thời cho cùng level được gộp: chỉ decode một lần và cùng Bitmap được trả cho mọi callback.
+ * Ảnh đã decode nằm trong BitmapCache (LRU theo byte); level có sẵn trong cache được trả ngay, đồng
+ * bộ trên main thread. Mỗi Bitmap nhận qua onSuccess phải được trả lại bằng release() thay vì
+ * recycle(). Ảnh board đã scale theo kích thước view còn được lưu trên đĩa (BoardImageDiskCache) để
+ * lần mở level sau khỏi decode. Gọi load / cancel / release trên main thread; callback luôn chạy trên
+ * main thread.
+ */
+public class PuzzleImageRepository {
+    private static final String TAG = "PuzzleImageRepository";
+
+    // Cấu hình
+    private static final int BUNDLED_LEVELS = 10; // Level 1-10 trong APK
+    private static final int LEVELS_PER_PACK = 20; // Mỗi pack chứa 20 level
+    private static final int MAX_IMAGE_SIZE = 1200; // Max size cho ảnh dùng chung (gallery, fallback); ảnh board decode đúng kích thước
+    private static final long BOARD_DISK_CACHE_BYTES = 64L * 1024 * 1024;
+    private static final String BUNDLED_PATH = "puzzles_bundled";
+    private static final String PACK_PREFIX = "puzzlepack_";
+    private static final String PACK_ASSET_PATH = "puzzles";
+
+    private static volatile PuzzleImageRepository instance;
+
+    private final Context context;
+    private final AssetPackManager assetPackManager;
+    private final Handler mainHandler;
+    // Chừa một core cho UI thread
+    private static final int DECODE_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    private final ExecutorService decodePool = Executors.newFixedThreadPool(DECODE_THREADS);
+
+    // Request đang chạy theo level (chỉ truy cập trên main thread)
+    private final Map<Integer, PendingLoad> pendingLoads = new HashMap<>();
+    private final BitmapCache bitmapCache;
+    private final BoardImageDiskCache boardDiskCache;
+    // Lần đọc ảnh board từ đĩa đang chạy theo callback (chỉ truy cập trên main thread)
+    private final Map<ImageLoadCallback, Future<?>> boardLoads = new HashMap<>();
+    // Caller của ensureLevelDownloaded đang chờ, và listener download đã đăng ký theo người chờ
+    // (chỉ truy cập trên main thread)
+    private final Map<PackDownloadCallback, PackWait> packWaits = new HashMap<>();
+    private final Map<PackWaiter, AssetPackStateUpdateListener> packListeners = new HashMap<>();
+
+    public interface ImageLoadCallback {
+        void onSuccess(Bitmap bitmap);
+        void onError(String error);
+        void onDownloadProgress(int progress);
+    }
+
+    public interface RegionDecoderCallback {
+        void onReady(BitmapRegionDecoder decoder);
+        void onError(String error);
+    }
+
+    public interface PackDownloadCallback {
+        void onReady();
+        void onError(String error);
+        void onDownloadProgress(int progress);
+    }
+
+    /**
+     * Người chờ một asset pack; isWaiting() false khi mọi caller đã huỷ (bỏ kết quả, không đăng ký listener).
+     */
+    private interface PackWaiter extends PackDownloadCallback {
+        boolean isWaiting();
+    }
+
+    /**
+     * Các callback đang chờ cùng một level; kết quả được phát cho tất cả rồi request bị xoá.
+     */
+    private final class PendingLoad implements ImageLoadCallback, PackWaiter {
+        final int levelNumber;
+        final int decodeSize;
+        final List<ImageLoadCallback> callbacks = new ArrayList<>(2);
+        Future<?> decodeTask;
+
+        PendingLoad(int levelNumber, int decodeSize) {
+            this.levelNumber = levelNumber;
+            this.decodeSize = decodeSize;
+        }
+
+        private boolean isCurrent() {
+            return pendingLoads.get(levelNumber) == this;
+        }
+
+        @Override
+        public boolean isWaiting() {
+            return isCurrent();
+        }
+
+        @Override
+        public void onReady() {
+            loadImageFromDownloadedPack(getPackNameForLevel(levelNumber), levelNumber, decodeSize, this);
+        }
+
+        @Override
+        public void onSuccess(Bitmap bitmap) {
+            if (!isCurrent()) {
+                // Không còn ai chờ (đã cancel hết): vẫn giữ trong cache cho lần mở sau
+                bitmapCache.put(BitmapCache.key(levelNumber, decodeSize), bitmap, 0);
+                return;
+            }
+            pendingLoads.remove(levelNumber);
+            // Mỗi callback giữ một tham chiếu
+            bitmapCache.put(BitmapCache.key(levelNumber, decodeSize), bitmap, callbacks.size());
+            for (ImageLoadCallback callback : callbacks) {
+                callback.onSuccess(bitmap);
+            }
+        }
+
+        @Override
+        public void onError(String error) {
+            if (isCurrent()) {
+                pendingLoads.remove(levelNumber);
+                for (ImageLoadCallback callback : callbacks) {
+                    callback.onError(error);
+                }
+            }
+        }
+
+        @Override
+        public void onDownloadProgress(int progress) {
+            if (isCurrent()) {
+                for (ImageLoadCallback callback : callbacks) {
+                    callback.onDownloadProgress(progress);
+                }
+            }
+        }
+    }
+
+    /**
+     * Một caller của ensureLevelDownloaded; sau cancelDownload không chuyển kết quả nữa.
+     */
+    private final class PackWait implements PackWaiter {
+        final PackDownloadCallback target;
+
+        PackWait(PackDownloadCallback target) {
+            this.target = target;
+        }
+
+        @Override
+        public boolean isWaiting() {
+            return packWaits.get(target) == this;
+        }
+
+        @Override
+        public void onReady() {
+            if (isWaiting()) {
+                packWaits.remove(target);
+                target.onReady();
+            }
+        }
+
+        @Override
+        public void onError(String error) {
+            if (isWaiting()) {
+                packWaits.remove(target);
+                target.onError(error);
+            }
+        }
+
+        @Override
+        public void onDownloadProgress(int progress) {
+            if (isWaiting()) {
+                target.onDownloadProgress(progress);
+            }
+        }
+    }
+
+    private PuzzleImageRepository(Context context) {
+        this.context = context.getApplicationContext();
+        this.assetPackManager = AssetPackManagerFactory.getInstance(this.context);
+        this.mainHandler = new Handler(Looper.getMainLooper());
+
+        // 1/8 heap của app (memory class, MB) cho ảnh level đã decode
+        ActivityManager activityManager = (ActivityManager) this.context.getSystemService(Context.ACTIVITY_SERVICE);
+        int memoryClassMb = activityManager != null ? activityManager.getMemoryClass() : 64;
+        this.bitmapCache = new BitmapCache(memoryClassMb * 1024L * 1024L / 8);
+        this.boardDiskCache = new BoardImageDiskCache(new File(this.context.getCacheDir(), "board_images"),
+                BOARD_DISK_CACHE_BYTES);
+        this.context.registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                if (level >= TRIM_MEMORY_BACKGROUND) {
+                    bitmapCache.trimTo(0);
+                } else if (level >= TRIM_MEMORY_UI_HIDDEN) {
+                    bitmapCache.trimTo(bitmapCache.getMaxBytes() / 2);
+                }
+            }
+
+            @Override
+            public void onConfigurationChanged(Configuration newConfig) {
+            }
+
+            @Override
+            public void onLowMemory() {
+                bitmapCache.trimTo(0);
+            }
+        });
+        Log.d(TAG, "Bitmap cache budget " + bitmapCache.getMaxBytes() / 1024 + " KB");
+    }
+
+    public static PuzzleImageRepository getInstance(Context context) {
+        if (instance == null) {
+            synchronized (PuzzleImageRepository.class) {
+                if (instance == null) {
+                    instance = new PuzzleImageRepository(context);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Load puzzle image theo level number; gộp với request đang chạy cho cùng level nếu có.
+     */
+    public void loadLevelImage(int levelNumber, ImageLoadCallback callback) {
+        Bitmap cached = bitmapCache.acquire(BitmapCache.key(levelNumber, MAX_IMAGE_SIZE));
+        if (cached != null) {
+            callback.onSuccess(cached);
+            return;
+        }
+
+        PendingLoad pending = pendingLoads.get(levelNumber);
+        if (pending != null) {
+            pending.callbacks.add(callback);
+            Log.d(TAG, "Coalesced request for level " + levelNumber + " (" + pending.callbacks.size() + " callers)");
+            return;
+        }
+
+        pending = new PendingLoad(levelNumber, MAX_IMAGE_SIZE);
+        pending.callbacks.add(callback);
+        pendingLoads.put(levelNumber, pending);
+        if (levelNumber <= BUNDLED_LEVELS) {
+            loadFromBundledAssets(levelNumber, MAX_IMAGE_SIZE, pending);
+        } else {
+            loadFromAssetPack(levelNumber, pending);
+        }
+    }
+
+    /**
+     * Ảnh board đúng kích thước PuzzleView.measureBoard cho level và kích thước view: từ cache đĩa nếu
+     * có, không thì decode thẳng ra kích thước đó (một Bitmap, không createScaledBitmap). Với
+     * regionDecode, lần đầu ảnh board được decode từng piece từ file (PieceRegionDecoder). Chỉ khi file
+     * chưa có (pack chưa download) mới quay về loadLevelImage. Bitmap ảnh board không nằm trong
+     * BitmapCache: caller sở hữu nó (release() sẽ recycle).
+     */
+    public void loadBoardImage(int levelNumber, int viewWidth, int viewHeight, int gridSize, boolean regionDecode,
+                               ImageLoadCallback callback) {
+        String key = BoardImageDiskCache.key(levelNumber, viewWidth, viewHeight);
+        boardLoads.put(callback, decodePool.submit(() -> {
+            long start = System.nanoTime();
+            Bitmap board = boardDiskCache.read(key);
+            if (board != null) {
+                Log.d(TAG, "Board image " + key + " from disk in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            } else {
+                if (regionDecode) {
+                    board = decodeBoardFromRegions(levelNumber, viewWidth, viewHeight, gridSize);
+                }
+                if (board == null) {
+                    board = decodeBoardToSize(levelNumber, viewWidth, viewHeight);
+                }
+                if (board != null) {
+                    storeBoardPixels(key, board);
+                }
+            }
+            Bitmap result = board;
+            postOnMain(() -> {
+                if (boardLoads.remove(callback) == null) {
+                    // Đã cancel trong lúc đọc
+                    if (result != null) {
+                        result.recycle();
+                    }
+                } else if (result != null) {
+                    callback.onSuccess(result);
+                } else {
+                    loadLevelImage(levelNumber, callback);
+                }
+            });
+        }));
+    }
+
+    /**
+     * Lưu ảnh board (atlas vừa scale) cho level và kích thước view. Pixel được copy ngay trên main
+     * thread nên caller có thể recycle bitmap sau khi gọi; ghi file chạy nền.
+     */
+    public void storeBoardImage(int levelNumber, int viewWidth, int viewHeight, Bitmap board) {
+        if (!isStorable(board)) {
+            return;
+        }
+        ByteBuffer pixels = ByteBuffer.allocate(board.getByteCount());
+        board.copyPixelsToBuffer(pixels);
+        String key = BoardImageDiskCache.key(levelNumber, viewWidth, viewHeight);
+        int width = board.getWidth();
+        int height = board.getHeight();
+        Bitmap.Config config = board.getConfig();
+        decodePool.execute(() -> boardDiskCache.write(key, width, height, config, pixels));
+    }
+
+    private void storeBoardPixels(String key, Bitmap board) {
+        if (!isStorable(board)) {
+            return;
+        }
+        ByteBuffer pixels = ByteBuffer.allocate(board.getByteCount());
+        board.copyPixelsToBuffer(pixels);
+        boardDiskCache.write(key, board.getWidth(), board.getHeight(), board.getConfig(), pixels);
+    }
+
+    // BoardImageDiskCache chỉ lưu hai định dạng pixel này
+    private static boolean isStorable(Bitmap board) {
+        return board != null && !board.isRecycled()
+                && (board.getConfig() == Bitmap.Config.ARGB_8888 || board.getConfig() == Bitmap.Config.RGB_565);
+    }
+
+    /**
+     * Decode ảnh board từng piece từ file của level (chạy trên pool). null nếu file chưa có (pack chưa
+     * download) hoặc lỗi - caller quay về decode cả ảnh.
+     */
+    private Bitmap decodeBoardFromRegions(int levelNumber, int viewWidth, int viewHeight, int gridSize) {
+        if (!isLevelFileAvailable(levelNumber)) {
+            return null;
+        }
+        try {
+            return PieceRegionDecoder.decodeBoard(() -> openLevelStream(levelNumber), viewWidth, viewHeight,
+                    gridSize, decodePool, DECODE_THREADS);
+        } catch (Exception | OutOfMemoryError e) {
+            Log.w(TAG, "Region decode failed for level " + levelNumber + ", falling back to full decode", e);
+            return null;
+        }
+    }
+
+    /**
+     * Trả lại Bitmap nhận từ loadLevelImage / loadBoardImage. Bitmap chỉ bị recycle khi không còn màn hình nào giữ
+     * và cache cần chỗ.
+     */
+    public void release(Bitmap bitmap) {
+        if (bitmap != null && !bitmapCache.release(bitmap) && !bitmap.isRecycled()) {
+            // Không do cache quản lý (ảnh board đọc từ đĩa): caller là chủ duy nhất
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * Bỏ callback khỏi request của level (vd. view đã được tái sử dụng). Nếu không còn ai chờ và
+     * decode chưa bắt đầu thì huỷ luôn decode.
+     */
+    public void cancel(int levelNumber, ImageLoadCallback callback) {
+        Future<?> boardLoad = boardLoads.remove(callback);
+        if (boardLoad != null) {
+            boardLoad.cancel(false);
+            return;
+        }
+
+        PendingLoad pending = pendingLoads.get(levelNumber);
+        if (pending == null || !pending.callbacks.remove(callback) || !pending.callbacks.isEmpty()) {
+            return;
+        }
+        pendingLoads.remove(levelNumber);
+        unregisterPackListener(pending);
+        if (pending.decodeTask != null) {
+            pending.decodeTask.cancel(false);
+        }
+    }
+
+    /**
+     * Chỉ đảm bảo file ảnh của level đã có trên máy (download pack nếu cần, báo tiến trình), không
+     * decode: màn hình chọn level gọi trước khi mở GameActivity, nơi ảnh board được decode một lần.
+     * Level bundled gọi onReady ngay.
+     */
+    public void ensureLevelDownloaded(int levelNumber, PackDownloadCallback callback) {
+        if (!needsDownload(levelNumber)) {
+            callback.onReady();
+            return;
+        }
+        cancelDownload(callback);
+        PackWait wait = new PackWait(callback);
+        packWaits.put(callback, wait);
+        ensurePack(getPackNameForLevel(levelNumber), wait);
+    }
+
+    /**
+     * Ngừng chờ ensureLevelDownloaded (vd. activity bị huỷ); bản thân download của pack vẫn tiếp tục.
+     */
+    public void cancelDownload(PackDownloadCallback callback) {
+        PackWait wait = packWaits.remove(callback);
+        if (wait != null) {
+            unregisterPackListener(wait);
+        }
+    }
+
+    /**
+     * Load từ assets có sẵn trong APK (Level 1-10)
+     */
+    private void loadFromBundledAssets(int levelNumber, int maxSize, PendingLoad callback) {
+        callback.decodeTask = decodePool.submit(() -> {
+            try {
+                AssetManager assetManager = context.getAssets();
+                String fileName = String.format("level_%d.webp", levelNumber);
+                String fullPath = BUNDLED_PATH + "/" + fileName;
+
+                Log.d(TAG, "Loading bundled asset: " + fullPath);
+
+                InputStream inputStream = assetManager.open(fullPath);
+
+                // Decode với size optimization
+                Bitmap bitmap = decodeBitmapOptimized(inputStream, maxSize);
+                inputStream.close();
+
+                if (bitmap != null) {
+                    postOnMain(() -> callback.onSuccess(bitmap));
+                } else {
+                    postOnMain(() -> callback.onError("Failed to decode bitmap from: " + fullPath));
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Error loading bundled asset for level " + levelNumber, e);
+                postOnMain(() -> callback.onError("Cannot find image for level " + levelNumber + ": " + e.getMessage()));
+            }
+        });
+    }
+
+    /**
+     * Load từ asset pack (Level 11+): download pack nếu cần, decode khi pack sẵn sàng (PendingLoad.onReady)
+     */
+    private void loadFromAssetPack(int levelNumber, PendingLoad callback) {
+        String packName = getPackNameForLevel(levelNumber);
+
+        Log.d(TAG, "Loading from pack: " + packName + " for level " + levelNumber);
+
+        ensurePack(packName, callback);
+    }
+
+    /**
+     * Tính tên pack dựa trên level number
+     */
+    private String getPackNameForLevel(int levelNumber) {
+        int packNumber = ((levelNumber - BUNDLED_LEVELS - 1) / LEVELS_PER_PACK) + 1;
+        return String.format("%s%03d", PACK_PREFIX, packNumber);
+    }
+
+    /**
+     * Gọi onReady khi pack đã có trên máy; chưa có thì download và báo tiến trình.
+     */
+    private void ensurePack(String packName, PackWaiter callback) {
+        assetPackManager.getPackStates(Collections.singletonList(packName))
+                .addOnSuccessListener(assetPackStates -> {
+                    if (!callback.isWaiting()) {
+                        return;
+                    }
+                    AssetPackState state = assetPackStates.packStates().get(packName);
+
+                    if (state == null) {
+                        callback.onError("Asset pack " + packName + " not found");
+                        return;
+                    }
+
+                    int status = state.status();
+
+                    switch (status) {
+                        case AssetPackStatus.COMPLETED:
+                            callback.onReady();
+                            break;
+
+                        case AssetPackStatus.DOWNLOADING:
+                        case AssetPackStatus.TRANSFERRING:
+                            listenForPackDownload(packName, callback);
+                            break;
+
+                        default:
+                            downloadPack(packName, callback);
+                            break;
+                    }
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Failed to get pack states", e);
+                    callback.onError("Failed to check asset pack: " + e.getMessage());
+                });
+    }
+
+    /**
+     * Download asset pack
+     */
+    private void downloadPack(String packName, PackWaiter callback) {
+        Log.d(TAG, "Requesting download for: " + packName);
+
+        assetPackManager.fetch(Collections.singletonList(packName))
+                .addOnSuccessListener(aVoid -> {
+                    Log.d(TAG, "Download request successful for: " + packName);
+                    if (callback.isWaiting()) {
+                        listenForPackDownload(packName, callback);
+                    }
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Failed to request download", e);
+                    callback.onError("Failed to download asset pack: " + e.getMessage());
+                });
+    }
+
+    /**
+     * Lắng nghe tiến trình download; listener được huỷ đăng ký khi xong / lỗi hoặc khi caller huỷ
+     * (unregisterPackListener).
+     */
+    private void listenForPackDownload(String packName, PackWaiter callback) {
+        AssetPackStateUpdateListener listener = new AssetPackStateUpdateListener() {
+            @Override
+            public void onStateUpdate(AssetPackState state) {
+                if (!state.name().equals(packName)) return;
+
+                int status = state.status();
+                long downloaded = state.bytesDownloaded();
+                long total = state.totalBytesToDownload();
+
+                switch (status) {
+                    case AssetPackStatus.DOWNLOADING:
+                    case AssetPackStatus.TRANSFERRING:
+                        int progress = total > 0 ? (int) ((downloaded * 100) / total) : 0;
+                        callback.onDownloadProgress(progress);
+                        Log.d(TAG, "Download progress: " + progress + "%");
+                        break;
+
+                    case AssetPackStatus.COMPLETED:
+                        unregisterPackListener(callback);
+                        callback.onReady();
+                        break;
+
+                    case AssetPackStatus.FAILED:
+                        unregisterPackListener(callback);
+                        callback.onError("Download failed for pack: " + packName);
+                        break;
+
+                    case AssetPackStatus.CANCELED:
+                        unregisterPackListener(callback);
+                        callback.onError("Download canceled");
+                        break;
+                }
+            }
+        };
+
+        packListeners.put(callback, listener);
+        assetPackManager.registerListener(listener);
+    }
+
+    private void unregisterPackListener(PackWaiter callback) {
+        AssetPackStateUpdateListener listener = packListeners.remove(callback);
+        if (listener != null) {
+            assetPackManager.unregisterListener(listener);
+        }
+    }
+
+    /**
+     * Load ảnh từ pack đã download
+     */
+    private void loadImageFromDownloadedPack(String packName, int levelNumber, int maxSize, PendingLoad callback) {
+        if (!callback.isCurrent()) {
+            // Mọi caller đã huỷ trong lúc chờ download
+            return;
+        }
+        callback.decodeTask = decodePool.submit(() -> {
+            try {
+                AssetPackLocation location = assetPackManager.getPackLocation(packName);
+
+                if (location == null) {
+                    postOnMain(() -> callback.onError("Pack location not found: " + packName));
+                    return;
+                }
+
+                String fileName = String.format("level_%d.webp", levelNumber);
+                String assetPath = PACK_ASSET_PATH + "/" + fileName;
+                String fullPath = location.assetsPath() + "/" + assetPath;
+                File imageFile = new File(fullPath);
+
+                Log.d(TAG, "Loading from path: " + fullPath);
+
+                if (!imageFile.exists()) {
+                    postOnMain(() -> callback.onError("Image file not found: " + fullPath));
+                    return;
+                }
+
+                FileInputStream fis = new FileInputStream(imageFile);
+                Bitmap bitmap = decodeBitmapOptimized(fis, maxSize);
+                fis.close();
+
+                if (bitmap != null) {
+                    postOnMain(() -> callback.onSuccess(bitmap));
+                } else {
+                    postOnMain(() -> callback.onError("Failed to decode bitmap from pack"));
+                }
+
+            } catch (Exception e) {
+                Log.e(TAG, "Error loading from asset pack", e);
+                postOnMain(() -> callback.onError("Error loading image: " + e.getMessage()));
+            }
+        });
+    }
+
+    /**
+     * Mở BitmapRegionDecoder trên ảnh gốc của level (không scale) cho tile pyramid khi zoom sâu.
+     * Pack phải đã được download (gọi sau khi loadLevelImage / ensureLevelDownloaded thành công).
+     */
+    public void openRegionDecoder(int levelNumber, RegionDecoderCallback callback) {
+        decodePool.execute(() -> {
+            InputStream inputStream = null;
+            try {
+                if (!isLevelFileAvailable(levelNumber)) {
+                    postOnMain(() -> callback.onError("Pack not downloaded for level " + levelNumber));
+                    return;
+                }
+                inputStream = openLevelStream(levelNumber);
+
+                BitmapRegionDecoder decoder = BitmapRegionDecoder.newInstance(inputStream, false);
+                if (decoder != null) {
+                    Log.d(TAG, "Region decoder ready for level " + levelNumber + ": "
+                            + decoder.getWidth() + "x" + decoder.getHeight());
+                    postOnMain(() -> callback.onReady(decoder));
+                } else {
+                    postOnMain(() -> callback.onError("Failed to open region decoder for level " + levelNumber));
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Error opening region decoder for level " + levelNumber, e);
+                postOnMain(() -> callback.onError("Cannot open region decoder: " + e.getMessage()));
+            } finally {
+                if (inputStream != null) {
+                    try {
+                        inputStream.close();
+                    } catch (Exception ignored) {
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Decode cả ảnh level thẳng ra kích thước board (chạy trên pool). API 28+ dùng
+     * ImageDecoder.setTargetSize; thấp hơn thì inSampleSize lũy thừa 2 gần nhất rồi inDensity /
+     * inTargetDensity để BitmapFactory scale nốt trong lúc decode (có thể lệch 1px chiều cao, initPuzzle
+     * chấp nhận). null nếu file chưa có hoặc lỗi.
+     */
+    private Bitmap decodeBoardToSize(int levelNumber, int viewWidth, int viewHeight) {
+        if (!isLevelFileAvailable(levelNumber)) {
+            return null;
+        }
+        long start = System.nanoTime();
+        try {
+            Bitmap board = Build.VERSION.SDK_INT >= Build.VERSION_CODES.P
+                    ? decodeWithImageDecoder(levelNumber, viewWidth, viewHeight)
+                    : decodeWithDensityScaling(levelNumber, viewWidth, viewHeight);
+            if (board != null) {
+                Log.d(TAG, "Decoded level " + levelNumber + " to board size " + board.getWidth() + "x"
+                        + board.getHeight() + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            }
+            return board;
+        } catch (Exception | OutOfMemoryError e) {
+            Log.w(TAG, "Board-size decode failed for level " + levelNumber, e);
+            return null;
+        }
+    }
+
+    @RequiresApi(Build.VERSION_CODES.P)
+    private Bitmap decodeWithImageDecoder(int levelNumber, int viewWidth, int viewHeight) throws IOException {
+        String fileName = String.format("level_%d.webp", levelNumber);
+        ImageDecoder.Source source;
+        if (levelNumber <= BUNDLED_LEVELS) {
+            source = ImageDecoder.createSource(context.getAssets(), BUNDLED_PATH + "/" + fileName);
+        } else {
+            AssetPackLocation location = assetPackManager.getPackLocation(getPackNameForLevel(levelNumber));
+            if (location == null) {
+                return null;
+            }
+            source = ImageDecoder.createSource(
+                    new File(location.assetsPath() + "/" + PACK_ASSET_PATH + "/" + fileName));
+        }
+
+        return ImageDecoder.decodeBitmap(source, (decoder, info, src) -> {
+            Point boardSize = PuzzleView.measureBoard(viewWidth, viewHeight,
+                    info.getSize().getWidth(), info.getSize().getHeight());
+            decoder.setTargetSize(boardSize.x, boardSize.y);
+            // Atlas được vẽ qua Canvas / BitmapShader và copy pixel xuống cache đĩa: cần bitmap software
+            decoder.setAllocator(ImageDecoder.ALLOCATOR_SOFTWARE);
+            // Như decodeBitmapOptimized: RGB_565 cho ảnh không trong suốt
+            decoder.setMemorySizePolicy(ImageDecoder.MEMORY_POLICY_LOW_RAM);
+        });
+    }
+
+    private Bitmap decodeWithDensityScaling(int levelNumber, int viewWidth, int viewHeight) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        try (InputStream inputStream = openLevelStream(levelNumber)) {
+            BitmapFactory.decodeStream(inputStream, null, options);
+        }
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        Point boardSize = PuzzleView.measureBoard(viewWidth, viewHeight, options.outWidth, options.outHeight);
+
+        // inSampleSize lớn nhất mà vẫn không nhỏ hơn board, phần còn lại scale theo density
+        int sampleSize = 1;
+        while (options.outWidth / (sampleSize * 2) >= boardSize.x
+                && options.outHeight / (sampleSize * 2) >= boardSize.y) {
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        options.inPreferredConfig = Bitmap.Config.RGB_565;
+        options.inScaled = true;
+        options.inDensity = options.outWidth / sampleSize;
+        options.inTargetDensity = boardSize.x;
+        try (InputStream inputStream = openLevelStream(levelNumber)) {
+            Bitmap bitmap = BitmapFactory.decodeStream(inputStream, null, options);
+            if (bitmap != null) {
+                // Bitmap mang density giả (= chiều rộng board); đặt lại để không bị scale thêm khi vẽ
+                bitmap.setDensity(Bitmap.DENSITY_NONE);
+            }
+            return bitmap;
+        }
+    }
+
+    /**
+     * File ảnh của level đã có trên máy chưa (bundled luôn có; pack phải đã download).
+     */
+    private boolean isLevelFileAvailable(int levelNumber) {
+        return levelNumber <= BUNDLED_LEVELS || assetPackManager.getPackLocation(getPackNameForLevel(levelNumber)) != null;
+    }
+
+    /**
+     * Mở stream tới ảnh gốc của level, từ puzzles_bundled/ trong APK hoặc thư mục của pack đã download.
+     */
+    private InputStream openLevelStream(int levelNumber) throws IOException {
+        String fileName = String.format("level_%d.webp", levelNumber);
+        if (levelNumber <= BUNDLED_LEVELS) {
+            return context.getAssets().open(BUNDLED_PATH + "/" + fileName);
+        }
+        AssetPackLocation location = assetPackManager.getPackLocation(getPackNameForLevel(levelNumber));
+        if (location == null) {
+            throw new FileNotFoundException("Pack not downloaded for level " + levelNumber);
+        }
+        return new FileInputStream(location.assetsPath() + "/" + PACK_ASSET_PATH + "/" + fileName);
+    }
+
+    /**
+     * Decode bitmap với optimization (tương tự code cũ)
+     */
+    private Bitmap decodeBitmapOptimized(InputStream inputStream, int maxSize) throws Exception {
+        // First decode để lấy dimensions
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+
+        // Mark và reset stream
+        inputStream.mark(inputStream.available());
+        BitmapFactory.decodeStream(inputStream, null, options);
+        inputStream.reset();
+
+        int imageWidth = options.outWidth;
+        int imageHeight = options.outHeight;
+
+        Log.d(TAG, "Original image size: " + imageWidth + "x" + imageHeight);
+
+        // Calculate inSampleSize
+        if (imageWidth > maxSize || imageHeight > maxSize) {
+            options.inSampleSize = calculateInSampleSize(options, maxSize, maxSize);
+            Log.d(TAG, "Scaling down with inSampleSize: " + options.inSampleSize);
+        }
+
+        // Decode thật
+        options.inJustDecodeBounds = false;
+        options.inPreferredConfig = Bitmap.Config.RGB_565;
+
+        return BitmapFactory.decodeStream(inputStream, null, options);
+    }
+
+    private int calculateInSampleSize(BitmapFactory.Options options, int reqWidth, int reqHeight) {
+        final int height = options.outHeight;
+        final int width = options.outWidth;
+        int inSampleSize = 1;
+
+        if (height > reqHeight || width > reqWidth) {
+            final int halfHeight = height / 2;
+            final int halfWidth = width / 2;
+
+            while ((halfHeight / inSampleSize) >= reqHeight
+                    && (halfWidth / inSampleSize) >= reqWidth) {
+                inSampleSize *= 2;
+            }
+        }
+
+        return inSampleSize;
+    }
+
+    /**
+     * Post callback lên main thread
+     */
+    private void postOnMain(Runnable runnable) {
+        mainHandler.post(runnable);
+    }
+
+    /**
+     * Kiểm tra xem level có cần download không
+     */
+    public boolean needsDownload(int levelNumber) {
+        return levelNumber > BUNDLED_LEVELS;
+    }
+}
\ No newline at end of file
@@ -1,40 +1,25 @@
 package com.example.puzzle_assemble_picture;
 
 import android.graphics.Bitmap;
-import java.util.ArrayList;
-import java.util.List;
+import android.graphics.Rect;
 
 public class PuzzlePiece {
+    // Shared board atlas; every piece of a level points at the same bitmap
     private final Bitmap bitmap;
+    // Region of the atlas this piece is drawn from
+    private final Rect sourceRect;
     private final int correctRow;
     private final int correctCol;
     private final int width;
     private final int height;
-    private boolean isLocked;
-    private final List<PuzzlePiece> connectedPieces;
 
-    public PuzzlePiece(Bitmap bitmap, int correctRow, int correctCol, int width, int height) {
+    public PuzzlePiece(Bitmap bitmap, Rect sourceRect, int correctRow, int correctCol, int width, int height) {
         this.bitmap = bitmap;
+        this.sourceRect = sourceRect;
         this.correctRow = correctRow;
         this.correctCol = correctCol;
         this.width = width;
         this.height = height;
-        this.isLocked = false;
-        this.connectedPieces = new ArrayList<>();
-    }
-
-    public void addConnectedPiece(PuzzlePiece piece) {
-        if (!connectedPieces.contains(piece)) {
-            connectedPieces.add(piece);
-        }
-    }
-
-    public void removeConnectedPiece(PuzzlePiece piece) {
-        connectedPieces.remove(piece);
-    }
-
-    public List<PuzzlePiece> getConnectedPieces() {
-        return connectedPieces;
     }
 
     // Getters and setters
@@ -42,6 +27,10 @@ public class PuzzlePiece {
         return bitmap;
     }
 
+    public Rect getSourceRect() {
+        return sourceRect;
+    }
+
     public int getWidth() {
         return width;
     }
@@ -57,12 +46,4 @@ public class PuzzlePiece {
     public int getCorrectCol() {
         return correctCol;
     }
-
-    public boolean isLocked() {
-        return isLocked;
-    }
-
-    public void setLocked(boolean locked) {
-        this.isLocked = locked;
-    }
 }
\ No newline at end of file
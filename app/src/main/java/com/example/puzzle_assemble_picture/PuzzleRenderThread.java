@@ -0,0 +1,302 @@
+package com.example.puzzle_assemble_picture;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffColorFilter;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.SurfaceTexture;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.Log;
+import android.view.Choreographer;
+import android.view.Surface;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Thread vẽ board cho PuzzleTextureView, nhịp theo Choreographer của chính thread này.
+ * UI thread chỉ publish BoardSnapshot (lock-free qua AtomicReference); tweens được nội suy ở đây
+ * nên animation vẫn chạy khi UI thread bận (inflate dialog, layout banner ad...). Snapshot được trả
+ * lại cho pool của PuzzleView (inRender = false) ngay khi không còn cần: bị snapshot mới hơn thay thế
+ * trước khi vẽ, hoặc sau khi render thread đã chuyển sang snapshot mới hơn.
+ */
+class PuzzleRenderThread extends HandlerThread implements Choreographer.FrameCallback {
+    private static final String TAG = "PuzzleRenderThread";
+
+    private final AtomicReference<BoardSnapshot> latestSnapshot = new AtomicReference<>();
+    private final AtomicBoolean frameRequested = new AtomicBoolean(false);
+    private Handler handler;
+
+    // Chỉ truy cập trên render thread
+    private Choreographer choreographer;
+    private BoardSnapshot currentSnapshot;
+    private Surface surface;
+    private int surfaceWidth, surfaceHeight;
+
+    private final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint dimPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint gridPaint = new Paint();
+    private final Paint borderPaint = new Paint();
+    private final Paint selectedPaint = new Paint();
+    private final RectF destRect = new RectF();
+
+    private final Runnable scheduleFrame = () -> {
+        if (choreographer != null) {
+            choreographer.postFrameCallback(this);
+        }
+    };
+
+    PuzzleRenderThread() {
+        super(TAG, Process.THREAD_PRIORITY_DISPLAY);
+
+        // Cùng cấu hình với paints của PuzzleView
+        dimPaint.setAlpha(128);
+        dimPaint.setColorFilter(new PorterDuffColorFilter(Color.argb(100, 255, 255, 255), PorterDuff.Mode.SRC_ATOP));
+
+        gridPaint.setColor(Color.argb(100, 255, 255, 255));
+        gridPaint.setStyle(Paint.Style.STROKE);
+        gridPaint.setStrokeWidth(2);
+
+        borderPaint.setStyle(Paint.Style.STROKE);
+        borderPaint.setStrokeWidth(2);
+        borderPaint.setColor(Color.argb(100, 255, 255, 255));
+
+        selectedPaint.setStyle(Paint.Style.STROKE);
+        selectedPaint.setStrokeWidth(6);
+        selectedPaint.setColor(Color.rgb(255, 215, 0));
+    }
+
+    @Override
+    public synchronized void start() {
+        super.start();
+        handler = new Handler(getLooper());
+        handler.post(() -> choreographer = Choreographer.getInstance());
+    }
+
+    /**
+     * Gọi từ UI thread mỗi khi board thay đổi. Snapshot cũ chưa vẽ sẽ bị thay thế.
+     */
+    void publish(BoardSnapshot snapshot) {
+        snapshot.inRender.set(true);
+        BoardSnapshot skipped = latestSnapshot.getAndSet(snapshot);
+        if (skipped != null && skipped != snapshot) {
+            // Chưa kịp vẽ: trả lại ngay cho UI thread
+            skipped.inRender.set(false);
+        }
+        requestFrame();
+    }
+
+    private void requestFrame() {
+        if (handler != null && frameRequested.compareAndSet(false, true)) {
+            handler.post(scheduleFrame);
+        }
+    }
+
+    void setSurface(SurfaceTexture surfaceTexture, int width, int height) {
+        handler.post(() -> {
+            releaseSurfaceInternal();
+            surface = new Surface(surfaceTexture);
+            surfaceWidth = width;
+            surfaceHeight = height;
+        });
+        requestFrame();
+    }
+
+    void setSurfaceSize(int width, int height) {
+        handler.post(() -> {
+            surfaceWidth = width;
+            surfaceHeight = height;
+        });
+        requestFrame();
+    }
+
+    private void awaitRenderThread(Runnable task) {
+        CountDownLatch latch = new CountDownLatch(1);
+        handler.post(() -> {
+            task.run();
+            latch.countDown();
+        });
+        try {
+            latch.await(500, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Bỏ snapshot hiện tại và đợi frame đang vẽ (nếu có) xong, để UI thread có thể recycle atlas cũ.
+     */
+    void clearSnapshot() {
+        releasePending();
+        awaitRenderThread(this::releaseCurrent);
+    }
+
+    private void releasePending() {
+        BoardSnapshot pending = latestSnapshot.getAndSet(null);
+        if (pending != null) {
+            pending.inRender.set(false);
+        }
+    }
+
+    private void releaseCurrent() {
+        if (currentSnapshot != null) {
+            currentSnapshot.inRender.set(false);
+            currentSnapshot = null;
+        }
+    }
+
+    private void releaseSurfaceInternal() {
+        if (choreographer != null) {
+            choreographer.removeFrameCallback(this);
+        }
+        frameRequested.set(false);
+        if (surface != null) {
+            surface.release();
+            surface = null;
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        frameRequested.set(false);
+
+        BoardSnapshot newer = latestSnapshot.getAndSet(null);
+        if (newer != null) {
+            if (currentSnapshot != null && currentSnapshot != newer) {
+                currentSnapshot.inRender.set(false);
+            }
+            currentSnapshot = newer;
+        }
+
+        BoardSnapshot snapshot = currentSnapshot;
+        if (snapshot == null || surface == null || !surface.isValid()) {
+            return;
+        }
+
+        try {
+            Canvas canvas = surface.lockHardwareCanvas();
+            try {
+                drawBoard(canvas, snapshot, frameTimeNanos);
+            } finally {
+                surface.unlockCanvasAndPost(canvas);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error rendering frame", e);
+            return;
+        }
+
+        if (snapshot.hasRunningTweens(frameTimeNanos) && frameRequested.compareAndSet(false, true)) {
+            choreographer.postFrameCallback(this);
+        }
+    }
+
+    private void drawBoard(Canvas canvas, BoardSnapshot s, long frameTimeNanos) {
+        canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+        if (s.atlas == null || s.atlas.isRecycled()) {
+            return;
+        }
+
+        canvas.save();
+        canvas.translate(surfaceWidth / 2f + s.panX, surfaceHeight / 2f + s.panY);
+        canvas.scale(s.scaleFactor, s.scaleFactor);
+        canvas.translate(-surfaceWidth / 2f, -surfaceHeight / 2f);
+
+        canvas.drawRect(s.gridX, s.gridY, s.gridX + s.gridWidth, s.gridY + s.gridHeight, gridPaint);
+
+        for (int cell = 0; cell < s.cells.length; cell++) {
+            int value = s.cells[cell];
+            if (value == BoardSnapshot.EMPTY) {
+                continue;
+            }
+            int pieceIndex = value & BoardSnapshot.INDEX_MASK;
+            if (s.isMoving(pieceIndex)) {
+                continue;
+            }
+
+            float x = s.gridX + (cell % s.gridSize) * s.cellWidth;
+            float y = s.gridY + (cell / s.gridSize) * s.cellHeight;
+            // Cell ngoài viewport bị bỏ qua bởi quickReject
+            if (canvas.quickReject(x, y, x + s.cellWidth, y + s.cellHeight, Canvas.EdgeType.AA)) {
+                continue;
+            }
+            drawPiece(canvas, s, pieceIndex, (value & BoardSnapshot.LOCKED_BIT) != 0, x, y);
+        }
+
+        if (s.selectedCell >= 0) {
+            float x = s.gridX + (s.selectedCell % s.gridSize) * s.cellWidth;
+            float y = s.gridY + (s.selectedCell / s.gridSize) * s.cellHeight;
+            destRect.set(x, y, x + s.cellWidth, y + s.cellHeight);
+            canvas.drawRect(destRect, selectedPaint);
+        }
+
+        for (int i = 0; i < s.tweenCount; i++) {
+            BoardSnapshot.Tween tween = s.tweens[i];
+            float progress = tween.progress(frameTimeNanos);
+            drawPiece(canvas, s, tween.pieceIndex, false, tween.x(progress), tween.y(progress));
+        }
+
+        if (s.draggedCount > 0) {
+            int anchorRow = s.draggedCells[0] / s.gridSize;
+            int anchorCol = s.draggedCells[0] % s.gridSize;
+            for (int i = 0; i < s.draggedCount; i++) {
+                int cell = s.draggedCells[i];
+                int value = s.cells[cell];
+                if (value != BoardSnapshot.EMPTY) {
+                    drawPiece(canvas, s, value & BoardSnapshot.INDEX_MASK, false,
+                            s.draggedX + (cell % s.gridSize - anchorCol) * s.cellWidth,
+                            s.draggedY + (cell / s.gridSize - anchorRow) * s.cellHeight);
+                }
+            }
+        }
+
+        canvas.restore();
+    }
+
+    private void drawPiece(Canvas canvas, BoardSnapshot s, int pieceIndex, boolean locked, float x, float y) {
+        Rect source = s.sourceRects[pieceIndex];
+        if (source == null) {
+            return;
+        }
+
+        int rotation = s.rotations[pieceIndex];
+        if (rotation != 0) {
+            // Giống PuzzleView: xoay quanh tâm ô, co giãn khi ô không vuông
+            float centerX = x + s.cellWidth / 2f;
+            float centerY = y + s.cellHeight / 2f;
+            canvas.save();
+            canvas.rotate(rotation * 90f, centerX, centerY);
+            if ((rotation & 1) != 0 && s.cellWidth != s.cellHeight) {
+                canvas.scale((float) s.cellHeight / s.cellWidth, (float) s.cellWidth / s.cellHeight, centerX, centerY);
+            }
+        }
+
+        destRect.set(x, y, x + s.cellWidth, y + s.cellHeight);
+        canvas.drawBitmap(s.atlas, source, destRect, locked && s.dimLockedPieces ? dimPaint : paint);
+        if (!locked) {
+            canvas.drawRect(destRect, borderPaint);
+        }
+
+        if (rotation != 0) {
+            canvas.restore();
+        }
+    }
+
+    /**
+     * Dừng vẽ, nhả Surface và trả snapshot trước khi SurfaceTexture bị huỷ (block UI thread tối đa 500ms).
+     */
+    void shutdown() {
+        releasePending();
+        awaitRenderThread(() -> {
+            releaseSurfaceInternal();
+            releaseCurrent();
+        });
+        quitSafely();
+    }
+}
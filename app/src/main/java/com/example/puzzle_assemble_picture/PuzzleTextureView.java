@@ -0,0 +1,90 @@
+package com.example.puzzle_assemble_picture;
+
+import android.content.Context;
+import android.graphics.SurfaceTexture;
+import android.util.AttributeSet;
+import android.view.TextureView;
+
+/**
+ * Backend vẽ board trên render thread riêng. Đặt ngay dưới PuzzleView (cùng kích thước / vị trí):
+ * PuzzleView vẫn xử lý touch + vẽ overlay, còn board được vẽ ở đây từ BoardSnapshot. Khi surface
+ * (tạo lại) sẵn sàng, listener được gọi để PuzzleView publish snapshot mới.
+ */
+public class PuzzleTextureView extends TextureView implements TextureView.SurfaceTextureListener {
+
+    private PuzzleRenderThread renderThread;
+    private Runnable surfaceReadyListener;
+
+    public PuzzleTextureView(Context context) {
+        super(context);
+        init();
+    }
+
+    public PuzzleTextureView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        init();
+    }
+
+    public PuzzleTextureView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        init();
+    }
+
+    private void init() {
+        setOpaque(false);
+        setSurfaceTextureListener(this);
+    }
+
+    void setSurfaceReadyListener(Runnable listener) {
+        surfaceReadyListener = listener;
+    }
+
+    /**
+     * @return false nếu chưa có surface (snapshot không bị giữ, vẫn thuộc về caller)
+     */
+    boolean publish(BoardSnapshot snapshot) {
+        if (renderThread == null) {
+            return false;
+        }
+        renderThread.publish(snapshot);
+        return true;
+    }
+
+    void clearSnapshot() {
+        if (renderThread != null) {
+            renderThread.clearSnapshot();
+        }
+    }
+
+    @Override
+    public void onSurfaceTextureAvailable(SurfaceTexture surface, int width, int height) {
+        if (renderThread == null) {
+            renderThread = new PuzzleRenderThread();
+            renderThread.start();
+        }
+        renderThread.setSurface(surface, width, height);
+        if (surfaceReadyListener != null) {
+            surfaceReadyListener.run();
+        }
+    }
+
+    @Override
+    public void onSurfaceTextureSizeChanged(SurfaceTexture surface, int width, int height) {
+        if (renderThread != null) {
+            renderThread.setSurfaceSize(width, height);
+        }
+    }
+
+    @Override
+    public boolean onSurfaceTextureDestroyed(SurfaceTexture surface) {
+        if (renderThread != null) {
+            renderThread.shutdown();
+            renderThread = null;
+        }
+        return true;
+    }
+
+    @Override
+    public void onSurfaceTextureUpdated(SurfaceTexture surface) {
+    }
+}
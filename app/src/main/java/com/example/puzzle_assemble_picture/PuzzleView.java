@@ -2,17 +2,24 @@ package com.example.puzzle_assemble_picture;
 
 import android.animation.Animator;
 import android.animation.AnimatorListenerAdapter;
+import android.animation.TimeInterpolator;
 import android.animation.ValueAnimator;
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.BitmapShader;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
-import android.graphics.PointF;
+import android.graphics.Path;
+import android.graphics.Picture;
+import android.graphics.Point;
 import android.graphics.PorterDuff;
 import android.graphics.PorterDuffColorFilter;
+import android.graphics.Rect;
 import android.graphics.RectF;
-import android.os.Looper;
+import android.graphics.Shader;
+import android.os.Build;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.view.MotionEvent;
@@ -21,12 +28,10 @@ import android.view.animation.AccelerateDecelerateInterpolator;
 import android.view.animation.OvershootInterpolator;
 import android.widget.Scroller;
 import android.view.VelocityTracker;
-import android.os.Handler;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 import java.util.HashSet;
 
@@ -38,11 +43,31 @@ public class PuzzleView extends View {
 
     private static final String TAG = "PuzzleView";
 
-    private PuzzlePiece[][] grid;
+    // ✅ Luật chơi + state (hoán vị piece index); view chỉ vẽ và xử lý touch
+    private PuzzleBoard board;
+    private final Random random = new Random();
+    // Chế độ đặt tự do (config.freePlacement): thay board grid khi khác null
+    private FreePlacementLayout freeLayout;
+    private int[] freeDragGroup = new int[0];
+    // Power-up (auto solve / corners / edges): kế hoạch swap {from, to} tối thiểu + scratch cho animation
+    private SwapPlanner swapPlanner;
+    private int[] swapPlan = new int[0];
+    private int[] swapPieces = new int[0];
+    private int[] swapStartCells = new int[0];
+    // Nhật ký phiên chơi (chế độ cell) để chạy lại bằng ReplayPlayer; null khi không ghi
+    private ReplayRecorder replayRecorder;
+    private int freeDragCount;
+    private float freeDragLastX, freeDragLastY;
     private List<PuzzlePiece> allPieces;
     private PuzzleConfig config;
     private PuzzleListener listener;
     private Bitmap fullImage;
+    // Scaled board image shared by all pieces (texture atlas)
+    private Bitmap pieceAtlas;
+    // Hình jigsaw (config.shapedPieces); vẽ bằng shader của atlas, null khi tắt
+    private PieceShapes pieceShapes;
+    private Paint shapePaint;
+    private Paint dimShapePaint;
 
     private float gridX, gridY;
     private int gridWidth, gridHeight;
@@ -52,6 +77,9 @@ public class PuzzleView extends View {
     private int draggedFromRow, draggedFromCol;
     private float dragOffsetX, dragOffsetY;
     private float draggedPieceX, draggedPieceY;
+    // Cell của cả nhóm đang kéo (cell của draggedPiece đứng đầu); 1 nếu kéo piece lẻ
+    private int[] draggedCells = new int[0];
+    private int draggedCellCount;
     private boolean isDragging = false;
 
     // Selection mode for zoomed swap
@@ -66,14 +94,110 @@ public class PuzzleView extends View {
     private Paint selectedPaint;
     private Paint resetButtonPaint;
     private Paint resetIconPaint;
+    private Paint zoomTextPaint;
+    private Paint resetTextPaint;
+    private Paint swapModeTextPaint;
+    private Paint overlayBgPaint;
+    private Paint completionTextPaint;
+
+    // ✅ Reused mỗi frame để onDraw / touch không allocate
+    private final RectF pieceDestRect = new RectF();
+    private final RectF completionDestRect = new RectF();
+    private final float[] panBounds = new float[4];
+
+    // Kéo ít hơn ngưỡng này (px content) rồi thả tại chỗ = chạm để xoay piece
+    private static final float ROTATE_TAP_SLOP = 10f;
+    // Toạ độ local sau khi bỏ xoay, dùng cho hit-test piece có tab
+    private final float[] unrotatedPoint = new float[2];
+
+    // Cell được xét khi hit-test piece có tab: cell chứa điểm rồi 4 cell kề
+    private static final int[] HIT_ROW_STEPS = {0, -1, 1, 0, 0};
+    private static final int[] HIT_COL_STEPS = {0, 0, 0, -1, 1};
+
+    // Zoom labels cached theo từng bước 0.1x (1.0x .. MAX_ZOOM)
+    private static final String[] ZOOM_LABELS = buildZoomLabels();
+    private final float[] zoomLabelWidths = new float[ZOOM_LABELS.length];
+    private static final String RESET_TEXT = "Reset";
+    private static final String SWAP_MODE_TEXT = "Swap Mode";
+    private static final String TAP_TO_SWAP_TEXT = "Tap to swap";
+    private float resetTextWidth;
+    private float resetTextWidthAtZoomSize;
+    private float swapModeTextWidth;
+    private float tapToSwapTextWidth;
 
     private boolean isAnimating = false;
     private boolean showingCompletion = false;
 
-    private final Map<PuzzlePiece, PointF> animatedPositions = new HashMap<>();
+    // Trạng thái tương tác của frame gần nhất, cho FrameMetricsCollector (đọc từ thread khác)
+    public static final int STATE_IDLE = 0;
+    public static final int STATE_DRAGGING = 1;
+    public static final int STATE_SWAP_ANIMATION = 2;
+    public static final int STATE_SHUFFLE = 3;
+    public static final int STATE_COMPLETION = 4;
+    public static final int STATE_COUNT = 5;
+    private int animationState = STATE_SWAP_ANIMATION;
+    private volatile int interactionState = STATE_IDLE;
+
+    // ✅ Một animation engine cho mọi di chuyển piece (mảng primitive theo piece index)
+    private final PieceAnimator pieceAnimator = new PieceAnimator(new PieceAnimator.Host() {
+        @Override
+        public void onAnimationFrame() {
+            // Render thread tự nội suy tweens, không cần vẽ lại view
+            if (renderBackend == null) {
+                invalidate();
+            }
+        }
+
+        @Override
+        public void onActiveSetChanged() {
+            markBoardLayerDirty();
+            if (renderBackend != null) {
+                invalidate();
+            }
+        }
+    });
+    private PuzzlePiece[] piecesByIndex = new PuzzlePiece[0];
+    private static final long SWAP_DURATION_MS = 800;
+    private static final long SHUFFLE_DURATION_MS = 1000;
+    private static final TimeInterpolator SWAP_INTERPOLATOR = new OvershootInterpolator(0.8f);
+    private static final TimeInterpolator SHUFFLE_INTERPOLATOR = new AccelerateDecelerateInterpolator();
+
+    // Static board layer: các piece đứng yên + grid outline + dimming được record một lần,
+    // chỉ record lại khi board thay đổi. Khi kéo / animate chỉ vẽ các piece đang di chuyển lên trên.
+    private boolean staticLayerEnabled = true;
+    private final Picture boardLayer = new Picture();
+    private boolean boardLayerDirty = true;
+    private int layerRowStart, layerRowEnd, layerColStart, layerColEnd;
+
+    // Viewport culling: vùng content đang hiển thị + dải row/col giao với nó (end exclusive)
+    private final RectF visibleContentRect = new RectF();
+    private int visibleRowStart, visibleRowEnd, visibleColStart, visibleColEnd;
+    private int lastDrawnCellCount;
+    private int lastCulledCellCount;
+
+    // Deep zoom: tiles độ phân giải cao decode từ ảnh gốc, thay atlas khi scaleFactor lớn
+    private PieceTilePyramid tilePyramid;
+    private int tileLevel;
+    private int tileRowStart, tileRowEnd, tileColStart, tileColEnd;
+
+    // Render-thread backend: khi được gắn, board được vẽ bởi PuzzleTextureView từ BoardSnapshot,
+    // view này chỉ xử lý touch + vẽ overlay. Tweens mô tả animation theo thời gian cho render thread.
+    private PuzzleTextureView renderBackend;
+
+    // Batched rendering: mọi cell trong 1-2 drawVertices + 1 drawLines (hardware canvas hỗ trợ từ API 29)
+    private PieceBatchRenderer batchRenderer;
+    private boolean batchedRenderingEnabled = Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q;
+    // Thời gian CPU vẽ / record các cell theo path: [0] = từng piece, [1] = batched
+    private final long[] cellDrawNanos = new long[2];
+    private final int[] cellDrawSamples = new int[2];
+    private int lastCellDrawCalls;
+    private Rect[] snapshotSourceRects;
+    // Snapshot dùng lại cho render thread: 1 đang vẽ, 1 chờ vẽ, 1 UI thread đang ghi
+    private static final int SNAPSHOT_POOL_SIZE = 3;
+    private final BoardSnapshot[] snapshotPool = new BoardSnapshot[SNAPSHOT_POOL_SIZE];
 
     // Reset zoom button
-    private RectF resetZoomButtonRect;
+    private final RectF resetZoomButtonRect = new RectF();
     private static final float RESET_BUTTON_SIZE = 50f;
     private static final float RESET_BUTTON_WIDTH = 110f;
     private static final float RESET_BUTTON_MARGIN = 10f;
@@ -119,6 +243,7 @@ public class PuzzleView extends View {
         dimPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
         dimPaint.setAlpha(128);
         dimPaint.setColorFilter(new PorterDuffColorFilter(Color.argb(100, 255, 255, 255), PorterDuff.Mode.SRC_ATOP));
+        batchRenderer = new PieceBatchRenderer(dimPaint);
 
         gridPaint = new Paint();
         gridPaint.setColor(Color.argb(100, 255, 255, 255));
@@ -127,7 +252,8 @@ public class PuzzleView extends View {
 
         borderPaint = new Paint();
         borderPaint.setStyle(Paint.Style.STROKE);
-        borderPaint.setStrokeWidth(3);
+        borderPaint.setStrokeWidth(2);
+        borderPaint.setColor(Color.argb(100, 255, 255, 255));
 
         // Paint for selected piece highlight
         selectedPaint = new Paint();
@@ -145,6 +271,39 @@ public class PuzzleView extends View {
         resetIconPaint.setStrokeWidth(3);
         resetIconPaint.setStrokeCap(Paint.Cap.ROUND);
 
+        // Overlay paints (trước đây được tạo mới mỗi frame)
+        zoomTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        zoomTextPaint.setColor(0xAAFFFFFF);
+        zoomTextPaint.setTextSize(32);
+        zoomTextPaint.setTextAlign(Paint.Align.RIGHT);
+
+        resetTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        resetTextPaint.setColor(0xFFFFFFFF);
+        resetTextPaint.setTextSize(26);
+        resetTextPaint.setTextAlign(Paint.Align.CENTER);
+
+        swapModeTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        swapModeTextPaint.setColor(0xFFFFD700); // Gold
+        swapModeTextPaint.setTextSize(28);
+        swapModeTextPaint.setTextAlign(Paint.Align.LEFT);
+
+        overlayBgPaint = new Paint();
+        overlayBgPaint.setColor(0x88000000);
+
+        completionTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        completionTextPaint.setColor(0xFFFFD700);
+        completionTextPaint.setTextSize(48);
+        completionTextPaint.setTextAlign(Paint.Align.CENTER);
+        completionTextPaint.setFakeBoldText(true);
+
+        for (int i = 0; i < ZOOM_LABELS.length; i++) {
+            zoomLabelWidths[i] = zoomTextPaint.measureText(ZOOM_LABELS[i]);
+        }
+        resetTextWidth = resetTextPaint.measureText(RESET_TEXT);
+        resetTextWidthAtZoomSize = zoomTextPaint.measureText(RESET_TEXT);
+        swapModeTextWidth = swapModeTextPaint.measureText(SWAP_MODE_TEXT);
+        tapToSwapTextWidth = swapModeTextPaint.measureText(TAP_TO_SWAP_TEXT);
+
         allPieces = new ArrayList<>();
 
         scaleGestureDetector = new ScaleGestureDetector(getContext(), new ScaleListener());
@@ -153,6 +312,20 @@ public class PuzzleView extends View {
         setLayerType(View.LAYER_TYPE_HARDWARE, null);
     }
 
+    private static String[] buildZoomLabels() {
+        int steps = Math.round((MAX_ZOOM - MIN_ZOOM) * 10) + 1;
+        String[] labels = new String[steps];
+        for (int i = 0; i < steps; i++) {
+            labels[i] = String.format(java.util.Locale.US, "%.1fx", MIN_ZOOM + i / 10f);
+        }
+        return labels;
+    }
+
+    private static int zoomLabelIndex(float scale) {
+        int index = Math.round((scale - MIN_ZOOM) * 10);
+        return Math.max(0, Math.min(ZOOM_LABELS.length - 1, index));
+    }
+
     private class ScaleListener extends ScaleGestureDetector.SimpleOnScaleGestureListener {
         @Override
         public boolean onScale(ScaleGestureDetector detector) {
@@ -187,6 +360,7 @@ public class PuzzleView extends View {
             if (draggedPiece != null && isDragging) {
                 isDragging = false;
                 draggedPiece = null;
+                markBoardLayerDirty();
             }
             // Clear selection when starting to zoom
             clearSelection();
@@ -194,27 +368,55 @@ public class PuzzleView extends View {
         }
     }
 
+    /**
+     * Kích thước board (atlas) cho view và tỉ lệ ảnh: 95% chiều rộng trừ padding, giữ tỉ lệ và vừa
+     * chiều cao. Dùng chung với PieceRegionDecoder để decode thẳng ra đúng kích thước này.
+     */
+    static Point measureBoard(int viewWidth, int viewHeight, int imageWidth, int imageHeight) {
+        int padding = 20;
+        int availableWidth = viewWidth - (padding * 2);
+        int availableHeight = viewHeight - (padding * 2);
+
+        float imageAspectRatio = (float) imageHeight / imageWidth;
+
+        int width = (int) (availableWidth * 0.95f);
+        int height = (int) (width * imageAspectRatio);
+
+        if (height > availableHeight) {
+            height = availableHeight;
+            width = (int) (height / imageAspectRatio);
+        }
+        return new Point(width, height);
+    }
+
+    /**
+     * Atlas của level hiện tại: ảnh đã scale đúng kích thước board (chính là ảnh truyền vào nếu đã vừa).
+     */
+    public Bitmap getBoardImage() {
+        return pieceAtlas;
+    }
+
     public void initPuzzle(Bitmap image, PuzzleConfig config, PuzzleListener listener) {
         this.config = config;
         this.listener = listener;
+        releasePieceAtlas(image);
+        releaseTilePyramid();
         this.fullImage = image;
         allPieces.clear();
+        clearAnimatedPositions();
+        markBoardLayerDirty();
 
         int screenWidth = getWidth();
         int screenHeight = getHeight();
 
-        int padding = 20;
-        int availableWidth = screenWidth - (padding * 2);
-        int availableHeight = screenHeight - (padding * 2);
-
-        float imageAspectRatio = (float) image.getHeight() / image.getWidth();
+        Point boardSize = measureBoard(screenWidth, screenHeight, image.getWidth(), image.getHeight());
+        gridWidth = boardSize.x;
+        gridHeight = boardSize.y;
 
-        gridWidth = (int) (availableWidth * 0.95f);
-        gridHeight = (int) (gridWidth * imageAspectRatio);
-
-        if (gridHeight > availableHeight) {
-            gridHeight = availableHeight;
-            gridWidth = (int) (gridHeight / imageAspectRatio);
+        // Ảnh board đã scale sẵn (cache đĩa): lệch 1px do làm tròn tỉ lệ thì dùng đúng kích thước ảnh
+        if (Math.abs(image.getWidth() - gridWidth) <= 1 && Math.abs(image.getHeight() - gridHeight) <= 1) {
+            gridWidth = image.getWidth();
+            gridHeight = image.getHeight();
         }
 
         gridX = (screenWidth - gridWidth) / 2f;
@@ -223,8 +425,22 @@ public class PuzzleView extends View {
         cellWidth = gridWidth / config.gridSize;
         cellHeight = gridHeight / config.gridSize;
 
-        Bitmap scaledImage = Bitmap.createScaledBitmap(image, gridWidth, gridHeight, true);
-        grid = new PuzzlePiece[config.gridSize][config.gridSize];
+        // ✅ Một atlas duy nhất cho cả level: pieces chỉ giữ source rect vào bitmap này
+        Bitmap scaledImage = (image.getWidth() == gridWidth && image.getHeight() == gridHeight)
+                ? image
+                : Bitmap.createScaledBitmap(image, gridWidth, gridHeight, true);
+        pieceAtlas = scaledImage;
+        // Xoay chỉ áp dụng khi piece nằm trong cell (không có ở chế độ đặt tự do)
+        board = new PuzzleBoard(config.gridSize, config.autoLockCorrectPieces, config.autoConnectCorrectPieces,
+                config.enableRotation && !config.freePlacement);
+        draggedCells = new int[config.gridSize * config.gridSize];
+        draggedCellCount = 0;
+        int cellCount = config.gridSize * config.gridSize;
+        swapPlanner = new SwapPlanner(cellCount);
+        swapPlan = new int[cellCount * 2];
+        swapPieces = new int[cellCount];
+        swapStartCells = new int[cellCount];
+        Arrays.fill(swapStartCells, -1);
 
         // ✅ FIX: Tạo pieces CHÍNH XÁC không lặp lại
         for (int row = 0; row < config.gridSize; row++) {
@@ -243,8 +459,8 @@ public class PuzzleView extends View {
                 }
 
                 try {
-                    Bitmap pieceBitmap = Bitmap.createBitmap(scaledImage, x, y, width, height);
-                    PuzzlePiece piece = new PuzzlePiece(pieceBitmap, row, col, cellWidth, cellHeight);
+                    Rect sourceRect = new Rect(x, y, x + width, y + height);
+                    PuzzlePiece piece = new PuzzlePiece(scaledImage, sourceRect, row, col, cellWidth, cellHeight);
                     allPieces.add(piece);
 
                     Log.d(TAG, "Created piece [" + row + "," + col + "] at (" + x + "," + y + ") size: " + width + "x" + height);
@@ -262,27 +478,105 @@ public class PuzzleView extends View {
             Log.d(TAG, "✅ Created " + allPieces.size() + " pieces correctly");
         }
 
+        piecesByIndex = new PuzzlePiece[expectedPieces];
+        for (PuzzlePiece piece : allPieces) {
+            piecesByIndex[pieceIndex(piece)] = piece;
+        }
+        pieceAnimator.resize(expectedPieces);
+        batchRenderer.setAtlas(pieceAtlas, expectedPieces);
+
         shufflePieces();
+        if (config.freePlacement) {
+            // Rải piece khắp view (toạ độ content), board chỉ còn là đích để hút vào
+            freeLayout = new FreePlacementLayout(config.gridSize, gridX, gridY, cellWidth, cellHeight,
+                    0, 0, screenWidth, screenHeight);
+            freeLayout.scatter(random);
+            freeDragGroup = new int[expectedPieces];
+        } else {
+            freeLayout = null;
+        }
+        setupPieceShapes();
         invalidate();
     }
 
-    private void shufflePieces() {
-        List<PuzzlePiece> shuffled = new ArrayList<>(allPieces);
-        Collections.shuffle(shuffled);
+    /**
+     * Dựng (hoặc dùng lại nếu cùng board / seed / kích thước) hình jigsaw cho level hiện tại. Trong lúc
+     * pool nền đang dựng, piece vẫn được vẽ hình chữ nhật.
+     */
+    private void setupPieceShapes() {
+        shapePaint = null;
+        dimShapePaint = null;
+        if (!config.shapedPieces || cellWidth <= 0 || cellHeight <= 0) {
+            pieceShapes = null;
+            return;
+        }
 
-        int index = 0;
-        for (int row = 0; row < config.gridSize; row++) {
-            for (int col = 0; col < config.gridSize; col++) {
-                grid[row][col] = shuffled.get(index++);
+        shapePaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG);
+        shapePaint.setShader(new BitmapShader(pieceAtlas, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP));
+        dimShapePaint = new Paint(shapePaint);
+        dimShapePaint.setAlpha(dimPaint.getAlpha());
+        dimShapePaint.setColorFilter(dimPaint.getColorFilter());
+
+        if (pieceShapes != null && pieceShapes.matches(config.gridSize, config.shapeSeed, cellWidth, cellHeight)) {
+            if (pieceShapes.isReady()) {
+                onPieceShapesReady(pieceShapes);
+            }
+            return;
+        }
+
+        PieceShapes shapes = new PieceShapes(config.gridSize, config.shapeSeed, cellWidth, cellHeight);
+        pieceShapes = shapes;
+        shapes.buildAsync(() -> onPieceShapesReady(shapes));
+    }
+
+    private void onPieceShapesReady(PieceShapes shapes) {
+        if (shapes != pieceShapes || board == null) {
+            // Level đã đổi trong lúc dựng
+            return;
+        }
+
+        if (freeLayout != null) {
+            freeLayout.setHitMask(shapes::contains, shapes.getOverhang());
+        }
+        if (renderBackend != null) {
+            // Piece có tab do view tự vẽ, bỏ frame chữ nhật trên render thread
+            renderBackend.clearSnapshot();
+        }
+        markBoardLayerDirty();
+        invalidate();
+    }
+
+    private boolean shapesReady() {
+        return pieceShapes != null && shapePaint != null && pieceShapes.isReady();
+    }
+
+    private float shapeOverhang() {
+        return shapesReady() ? pieceShapes.getOverhang() : 0f;
+    }
+
+    private void shufflePieces() {
+        ShuffleGenerator generator = ShuffleGenerator.forDifficulty(config.gridSize, board.isRotationEnabled(),
+                config.initialCorrectFraction, config.shuffleCycleDensity);
+        board.setShuffleGenerator(generator);
+        board.shuffle(config.shuffleSeed);
+        if (replayRecorder != null) {
+            if (config.freePlacement) {
+                replayRecorder.close();
+            } else {
+                replayRecorder.beginSeeded(board, config.shuffleSeed);
             }
         }
+        Log.d(TAG, "Shuffled seed " + config.shuffleSeed + ": " + generator.getCorrectPieces() + " correct, "
+                + generator.getCycleCount() + " cycles, " + generator.getMinSwaps() + " swaps to solve");
+        markBoardLayerDirty();
     }
 
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
+        interactionState = computeInteractionState();
 
-        if (grid == null || allPieces == null || allPieces.isEmpty()) {
+        if (board == null || allPieces == null || allPieces.isEmpty()) {
             return;
         }
 
@@ -290,6 +584,9 @@ public class PuzzleView extends View {
         if (scroller.computeScrollOffset()) {
             panX = scroller.getCurrX();
             panY = scroller.getCurrY();
+            if (scroller.isFinished()) {
+                recordViewport();
+            }
             postInvalidateOnAnimation();
         }
 
@@ -307,29 +604,17 @@ public class PuzzleView extends View {
         canvas.scale(scaleFactor, scaleFactor);
         canvas.translate(-getWidth() / 2f, -getHeight() / 2f);
 
-        // Draw grid outline
-        canvas.drawRect(gridX, gridY, gridX + gridWidth, gridY + gridHeight, gridPaint);
-
-        // Draw all pieces in grid
-        for (int row = 0; row < config.gridSize; row++) {
-            for (int col = 0; col < config.gridSize; col++) {
-                PuzzlePiece piece = grid[row][col];
-                if (piece != null && piece != draggedPiece) {
-                    // Check if piece has animated position
-                    if (animatedPositions.containsKey(piece)) {
-                        PointF pos = animatedPositions.get(piece);
-                        drawPieceAtPosition(canvas, piece, pos.x, pos.y, false);
-                    } else {
-                        boolean isSelected = (piece == selectedPiece);
-                        drawPieceAt(canvas, piece, row, col, isSelected);
-                    }
-                }
-            }
-        }
+        updateVisibleCellRange();
+        updateTileLevel();
 
-        // Draw dragged piece on top
-        if (isDragging && draggedPiece != null) {
-            drawPieceAtPosition(canvas, draggedPiece, draggedPieceX, draggedPieceY, false);
+        if (freeLayout != null) {
+            drawFreePlacement(canvas);
+        } else if (renderBackend != null && !shapesReady()) {
+            publishSnapshot();
+        } else if (staticLayerEnabled) {
+            drawBoardWithStaticLayer(canvas);
+        } else {
+            drawBoardDirect(canvas);
         }
 
         // Restore canvas
@@ -345,43 +630,394 @@ public class PuzzleView extends View {
         }
     }
 
-    private void drawZoomIndicator(Canvas canvas) {
-        Paint textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-        textPaint.setColor(0xAAFFFFFF);
-        textPaint.setTextSize(32);
-        textPaint.setTextAlign(Paint.Align.RIGHT);
+    /**
+     * Static-layer path: phát lại layer đã record, rồi chỉ vẽ selection + các piece đang di chuyển.
+     */
+    private void drawBoardWithStaticLayer(Canvas canvas) {
+        if (visibleRowStart != layerRowStart || visibleRowEnd != layerRowEnd
+                || visibleColStart != layerColStart || visibleColEnd != layerColEnd) {
+            markBoardLayerDirty();
+        }
+        if (boardLayerDirty) {
+            recordBoardLayer();
+        }
+        canvas.drawPicture(boardLayer);
+
+        if (selectedPiece != null && selectedRow >= 0 && selectedCol >= 0
+                && !pieceAnimator.isActive(pieceIndex(selectedPiece))) {
+            drawSelectionOutline(canvas, selectedPiece,
+                    gridX + selectedCol * cellWidth, gridY + selectedRow * cellHeight);
+        }
+
+        drawAnimatingPieces(canvas);
+        drawDraggedPieces(canvas);
+    }
+
+    /**
+     * Record grid outline + các piece không di chuyển vào boardLayer (toạ độ content).
+     */
+    private void recordBoardLayer() {
+        Canvas layerCanvas = boardLayer.beginRecording(Math.max(1, getWidth()), Math.max(1, getHeight()));
+        layerCanvas.drawRect(gridX, gridY, gridX + gridWidth, gridY + gridHeight, gridPaint);
+
+        drawGridCells(layerCanvas, false);
+
+        boardLayer.endRecording();
+        boardLayerDirty = false;
+        layerRowStart = visibleRowStart;
+        layerRowEnd = visibleRowEnd;
+        layerColStart = visibleColStart;
+        layerColEnd = visibleColEnd;
+        updateCellCounters();
+    }
+
+    /**
+     * Tính vùng content đang hiển thị từ scaleFactor / panX / panY (nghịch đảo transform trong onDraw)
+     * và dải row/col giao với vùng đó.
+     */
+    private void updateVisibleCellRange() {
+        float centerX = getWidth() / 2f;
+        float centerY = getHeight() / 2f;
+
+        visibleContentRect.set(
+                (0 - centerX - panX) / scaleFactor + centerX,
+                (0 - centerY - panY) / scaleFactor + centerY,
+                (getWidth() - centerX - panX) / scaleFactor + centerX,
+                (getHeight() - centerY - panY) / scaleFactor + centerY
+        );
+
+        int gridSize = config.gridSize;
+        if (cellWidth <= 0 || cellHeight <= 0) {
+            visibleRowStart = visibleRowEnd = visibleColStart = visibleColEnd = 0;
+            return;
+        }
+
+        // Tab của piece lồi ra ngoài cell tối đa overhang nên cell ngay ngoài viewport vẫn có thể lộ tab
+        float overhang = shapeOverhang();
+        visibleColStart = clampCellIndex((int) Math.floor((visibleContentRect.left - overhang - gridX) / cellWidth), gridSize);
+        visibleColEnd = clampCellIndex((int) Math.floor((visibleContentRect.right + overhang - gridX) / cellWidth) + 1, gridSize);
+        visibleRowStart = clampCellIndex((int) Math.floor((visibleContentRect.top - overhang - gridY) / cellHeight), gridSize);
+        visibleRowEnd = clampCellIndex((int) Math.floor((visibleContentRect.bottom + overhang - gridY) / cellHeight) + 1, gridSize);
+    }
+
+    /**
+     * Gắn ảnh gốc (chưa scale) làm nguồn cho tile pyramid. Gọi sau initPuzzle; view sở hữu decoder từ đây.
+     */
+    public void attachHighResSource(BitmapRegionDecoder decoder) {
+        releaseTilePyramid();
+        // Piece có tab vẽ bằng shader của atlas nên không dùng tiles
+        if (decoder == null || board == null || freeLayout != null || pieceShapes != null
+                || cellWidth <= 0 || cellHeight <= 0) {
+            if (decoder != null) {
+                decoder.recycle();
+            }
+            return;
+        }
+
+        tilePyramid = new PieceTilePyramid(decoder, config.gridSize, gridWidth, gridHeight,
+                cellWidth, cellHeight, () -> {
+                    markBoardLayerDirty();
+                    invalidate();
+                });
+        tileLevel = 0;
+        tileRowStart = tileRowEnd = tileColStart = tileColEnd = 0;
+        invalidate();
+    }
+
+    /**
+     * Chọn level pyramid theo scaleFactor; khi level hoặc viewport đổi thì loại tiles không còn cần.
+     */
+    private void updateTileLevel() {
+        if (tilePyramid == null) {
+            return;
+        }
+
+        int level = PieceTilePyramid.levelForScale(scaleFactor);
+        if (level != tileLevel || visibleRowStart != tileRowStart || visibleRowEnd != tileRowEnd
+                || visibleColStart != tileColStart || visibleColEnd != tileColEnd) {
+            if (level != tileLevel) {
+                markBoardLayerDirty();
+            }
+            tileLevel = level;
+            tileRowStart = visibleRowStart;
+            tileRowEnd = visibleRowEnd;
+            tileColStart = visibleColStart;
+            tileColEnd = visibleColEnd;
+            tilePyramid.retainVisible(board, level, visibleRowStart, visibleRowEnd, visibleColStart, visibleColEnd);
+        }
+    }
+
+    PieceTilePyramid getTilePyramid() {
+        return tilePyramid;
+    }
+
+    /**
+     * Đặt zoom / pan trực tiếp, giới hạn như khi pinch (test vẽ ở mức zoom cố định).
+     */
+    void setViewport(float scale, float x, float y) {
+        scaleFactor = Math.max(MIN_ZOOM, Math.min(scale, MAX_ZOOM));
+        float[] bounds = getPanBounds();
+        panX = Math.max(bounds[0], Math.min(bounds[1], x));
+        panY = Math.max(bounds[2], Math.min(bounds[3], y));
+        invalidate();
+    }
+
+    private void releaseTilePyramid() {
+        if (tilePyramid != null) {
+            tilePyramid.release();
+            tilePyramid = null;
+        }
+        tileLevel = 0;
+    }
+
+    private static int clampCellIndex(int index, int gridSize) {
+        return Math.max(0, Math.min(gridSize, index));
+    }
+
+    private boolean isPieceVisible(float x, float y) {
+        float overhang = shapeOverhang();
+        return x - overhang < visibleContentRect.right && x + cellWidth + overhang > visibleContentRect.left
+                && y - overhang < visibleContentRect.bottom && y + cellHeight + overhang > visibleContentRect.top;
+    }
+
+    private void updateCellCounters() {
+        int totalCells = config.gridSize * config.gridSize;
+        lastDrawnCellCount = (visibleRowEnd - visibleRowStart) * (visibleColEnd - visibleColStart);
+        lastCulledCellCount = totalCells - lastDrawnCellCount;
+    }
+
+    /**
+     * Số cell nằm trong viewport ở lần vẽ / record gần nhất.
+     */
+    public int getLastDrawnCellCount() {
+        return lastDrawnCellCount;
+    }
+
+    /**
+     * Số cell bị bỏ qua (ngoài viewport) ở lần vẽ / record gần nhất.
+     */
+    public int getLastCulledCellCount() {
+        return lastCulledCellCount;
+    }
+
+    private void markBoardLayerDirty() {
+        boardLayerDirty = true;
+    }
+
+    /**
+     * Bật/tắt static board layer (tắt = vẽ lại toàn bộ gridSize² cells mỗi frame như trước).
+     */
+    public void setStaticLayerEnabled(boolean enabled) {
+        if (staticLayerEnabled != enabled) {
+            staticLayerEnabled = enabled;
+            markBoardLayerDirty();
+            invalidate();
+        }
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        markBoardLayerDirty();
+    }
+
+    private void drawBoardDirect(Canvas canvas) {
+        // Draw grid outline
+        canvas.drawRect(gridX, gridY, gridX + gridWidth, gridY + gridHeight, gridPaint);
+
+        // Draw visible pieces in grid
+        updateCellCounters();
+        drawGridCells(canvas, true);
+
+        drawAnimatingPieces(canvas);
+
+        // Draw dragged piece (group) on top
+        drawDraggedPieces(canvas);
+    }
+
+    /**
+     * Chế độ đặt tự do: outline board, piece đã đặt, rồi piece rời theo z-order (nhóm đang kéo ở trên cùng).
+     */
+    private void drawFreePlacement(Canvas canvas) {
+        canvas.drawRect(gridX, gridY, gridX + gridWidth, gridY + gridHeight, gridPaint);
+
+        int count = freeLayout.getPieceCount();
+        for (int pass = 0; pass < 2; pass++) {
+            boolean placedPass = pass == 0;
+            for (int i = 0; i < count; i++) {
+                int index = freeLayout.pieceAtDepth(i);
+                if (freeLayout.isPlaced(index) != placedPass || pieceAnimator.isActive(index)) {
+                    continue;
+                }
+                float x = freeLayout.getX(index);
+                float y = freeLayout.getY(index);
+                PuzzlePiece piece = piecesByIndex[index];
+                if (piece != null && isPieceVisible(x, y)) {
+                    drawPieceAtPosition(canvas, piece, x, y, false);
+                }
+            }
+        }
+
+        drawAnimatingPieces(canvas);
+    }
+
+    private void drawDraggedPieces(Canvas canvas) {
+        if (!isDragging || draggedPiece == null) {
+            return;
+        }
+
+        for (int i = 0; i < draggedCellCount; i++) {
+            int cell = draggedCells[i];
+            float x = draggedPieceX + (cell % config.gridSize - draggedFromCol) * cellWidth;
+            float y = draggedPieceY + (cell / config.gridSize - draggedFromRow) * cellHeight;
+            drawPieceAtPosition(canvas, pieceAt(cell / config.gridSize, cell % config.gridSize), x, y, false);
+        }
+    }
+
+    private boolean isDraggedPiece(int index) {
+        if (!isDragging || draggedPiece == null) {
+            return false;
+        }
+        int dragged = pieceIndex(draggedPiece);
+        return index == dragged || (draggedCellCount > 1 && board.sameGroup(index, dragged));
+    }
+
+    /**
+     * Vẽ các cell trong viewport (trừ nhóm đang kéo và piece đang animate - chúng được vẽ riêng
+     * vì cell của chúng có thể nằm ngoài viewport), batched hoặc từng piece.
+     */
+    private void drawGridCells(Canvas canvas, boolean withSelection) {
+        long start = System.nanoTime();
+        boolean batched = useBatchedRendering();
+        int calls = 0;
+        int selectedCellRow = -1;
+        int selectedCellCol = -1;
+
+        if (batched) {
+            batchRenderer.begin();
+        }
+
+        for (int row = visibleRowStart; row < visibleRowEnd; row++) {
+            for (int col = visibleColStart; col < visibleColEnd; col++) {
+                PuzzlePiece piece = pieceAt(row, col);
+                if (piece == null || isDraggedPiece(pieceIndex(piece)) || pieceAnimator.isActive(pieceIndex(piece))) {
+                    continue;
+                }
+
+                boolean isSelected = withSelection && piece == selectedPiece;
+                boolean locked = board.isLocked(board.cellIndex(row, col));
+                if (batched) {
+                    batchRenderer.addPiece(piece.getSourceRect(),
+                            gridX + col * cellWidth, gridY + row * cellHeight, cellWidth, cellHeight,
+                            board.getRotation(pieceIndex(piece)), locked && config.dimLockedPieces,
+                            !locked && !isSelected);
+                    if (isSelected) {
+                        selectedCellRow = row;
+                        selectedCellCol = col;
+                    }
+                } else {
+                    drawPieceAt(canvas, piece, row, col, isSelected);
+                    calls += locked && !isSelected ? 1 : 2;
+                }
+            }
+        }
+
+        if (batched) {
+            calls = batchRenderer.flush(canvas, borderPaint);
+            if (selectedCellRow >= 0) {
+                float x = gridX + selectedCellCol * cellWidth;
+                float y = gridY + selectedCellRow * cellHeight;
+                pieceDestRect.set(x, y, x + cellWidth, y + cellHeight);
+                canvas.drawRect(pieceDestRect, selectedPaint);
+                calls++;
+            }
+        }
+
+        recordCellDrawTiming(batched ? 1 : 0, System.nanoTime() - start, calls);
+    }
+
+    private boolean useBatchedRendering() {
+        // Tiles deep zoom không nằm trong atlas, piece có tab không phải quad: khi đó vẽ từng piece
+        return batchedRenderingEnabled && (tilePyramid == null || tileLevel == 0) && !shapesReady()
+                && batchRenderer.canBatch(config.gridSize * config.gridSize);
+    }
+
+    private void recordCellDrawTiming(int path, long nanos, int calls) {
+        cellDrawNanos[path] += nanos;
+        cellDrawSamples[path]++;
+        lastCellDrawCalls = calls;
+    }
+
+    /**
+     * Bật/tắt batched rendering (mặc định bật trên API 29+, nơi hardware canvas hỗ trợ drawVertices).
+     */
+    public void setBatchedRenderingEnabled(boolean enabled) {
+        if (batchedRenderingEnabled != enabled) {
+            batchedRenderingEnabled = enabled;
+            markBoardLayerDirty();
+            invalidate();
+        }
+    }
+
+    public boolean isBatchedRenderingEnabled() {
+        return batchedRenderingEnabled;
+    }
+
+    /**
+     * Thời gian CPU trung bình (µs) để vẽ / record các cell của board theo path, để so sánh 2 path.
+     */
+    public long getAverageCellDrawMicros(boolean batched) {
+        int path = batched ? 1 : 0;
+        return cellDrawSamples[path] == 0 ? 0 : cellDrawNanos[path] / cellDrawSamples[path] / 1000;
+    }
+
+    /**
+     * Số draw call cho các cell ở lần vẽ / record gần nhất.
+     */
+    public int getLastCellDrawCalls() {
+        return lastCellDrawCalls;
+    }
+
+    public void resetCellDrawStats() {
+        cellDrawNanos[0] = cellDrawNanos[1] = 0;
+        cellDrawSamples[0] = cellDrawSamples[1] = 0;
+    }
 
-        Paint bgPaint = new Paint();
-        bgPaint.setColor(0x88000000);
+    private void drawAnimatingPieces(Canvas canvas) {
+        for (int i = 0; i < pieceAnimator.getActiveCount(); i++) {
+            int index = pieceAnimator.getActivePiece(i);
+            PuzzlePiece piece = piecesByIndex[index];
+            if (piece != null && piece != draggedPiece) {
+                float x = pieceAnimator.getX(index);
+                float y = pieceAnimator.getY(index);
+                if (isPieceVisible(x, y)) {
+                    drawPieceAtPosition(canvas, piece, x, y, false);
+                }
+            }
+        }
+    }
 
-        String zoomText = String.format("%.1fx", scaleFactor);
-        float textWidth = textPaint.measureText(zoomText);
+    private void drawZoomIndicator(Canvas canvas) {
+        int labelIndex = zoomLabelIndex(scaleFactor);
+        String zoomText = ZOOM_LABELS[labelIndex];
+        float textWidth = zoomLabelWidths[labelIndex];
 
         // Calculate positions considering the reset button
-        float resetButtonEstimatedWidth = textPaint.measureText("Reset") + 30 + RESET_BUTTON_MARGIN * 2;
+        float resetButtonEstimatedWidth = resetTextWidthAtZoomSize + 30 + RESET_BUTTON_MARGIN * 2;
         float rightEdge = getWidth() - resetButtonEstimatedWidth - 10;
 
         canvas.drawRoundRect(
                 rightEdge - textWidth - 30, 10,
                 rightEdge, 60,
-                10, 10, bgPaint
+                10, 10, overlayBgPaint
         );
-        canvas.drawText(zoomText, rightEdge - 15, 45, textPaint);
+        canvas.drawText(zoomText, rightEdge - 15, 45, zoomTextPaint);
 
     }
 
     private void drawResetZoomButton(Canvas canvas) {
-        // Tạo paint cho text trước
-        Paint buttonTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-        buttonTextPaint.setColor(0xFFFFFFFF);
-        buttonTextPaint.setTextSize(26);
-        buttonTextPaint.setTextAlign(Paint.Align.CENTER);
-
-        String buttonText = "Reset";
-        float textWidth = buttonTextPaint.measureText(buttonText);
-
         // Tính button size dựa trên text width + padding
-        float buttonWidth = textWidth + 30; // 15px padding mỗi bên
+        float buttonWidth = resetTextWidth + 30; // 15px padding mỗi bên
         float buttonHeight = 50;
 
         // Button position
@@ -390,7 +1026,7 @@ public class PuzzleView extends View {
         float top = RESET_BUTTON_MARGIN;
         float bottom = top + buttonHeight;
 
-        resetZoomButtonRect = new RectF(left, top, right, bottom);
+        resetZoomButtonRect.set(left, top, right, bottom);
 
         // Draw button background
         canvas.drawRoundRect(resetZoomButtonRect, 10, 10, resetButtonPaint);
@@ -398,9 +1034,9 @@ public class PuzzleView extends View {
         // Draw text (XÓA toàn bộ code vẽ icon)
         float centerX = (left + right) / 2;
         float centerY = (top + bottom) / 2;
-        float textY = centerY - ((buttonTextPaint.descent() + buttonTextPaint.ascent()) / 2);
+        float textY = centerY - ((resetTextPaint.descent() + resetTextPaint.ascent()) / 2);
 
-        canvas.drawText(buttonText, centerX, textY, buttonTextPaint);
+        canvas.drawText(RESET_TEXT, centerX, textY, resetTextPaint);
     }
 
     private void drawCompletionImage(Canvas canvas) {
@@ -429,56 +1065,110 @@ public class PuzzleView extends View {
         float left = (getWidth() - displayWidth) / 2f;
         float top = (getHeight() - displayHeight) / 2f;
 
-        RectF destRect = new RectF(left, top, left + displayWidth, top + displayHeight);
+        completionDestRect.set(left, top, left + displayWidth, top + displayHeight);
 
         // Draw the full image (crystal clear, no dimming)
-        canvas.drawBitmap(fullImage, null, destRect, paint);
-
-        // Draw "Puzzle Completed!" text
-        Paint completionTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-        completionTextPaint.setColor(0xFFFFD700);
-        completionTextPaint.setTextSize(48);
-        completionTextPaint.setTextAlign(Paint.Align.CENTER);
-        completionTextPaint.setFakeBoldText(true);
-
+        canvas.drawBitmap(fullImage, null, completionDestRect, paint);
     }
 
     private void drawSwapModeIndicator(Canvas canvas) {
-        Paint textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-        textPaint.setColor(0xFFFFD700); // Gold
-        textPaint.setTextSize(28);
-        textPaint.setTextAlign(Paint.Align.LEFT);
-
-        Paint bgPaint = new Paint();
-        bgPaint.setColor(0x88000000);
-
-        String modeText = selectedPiece != null ? "Tap to swap" : "Swap Mode";
-        float textWidth = textPaint.measureText(modeText);
+        String modeText = selectedPiece != null ? TAP_TO_SWAP_TEXT : SWAP_MODE_TEXT;
+        float textWidth = selectedPiece != null ? tapToSwapTextWidth : swapModeTextWidth;
 
         canvas.drawRoundRect(
                 10, 10,
                 textWidth + 40, 55,
-                10, 10, bgPaint
+                10, 10, overlayBgPaint
         );
-        canvas.drawText(modeText, 25, 40, textPaint);
+        canvas.drawText(modeText, 25, 40, swapModeTextPaint);
     }
 
     private void drawPieceAtPosition(Canvas canvas, PuzzlePiece piece, float x, float y, boolean isSelected) {
-        RectF destRect = new RectF(x, y, x + cellWidth, y + cellHeight);
+        // Xoay bằng transform của canvas trên cùng source trong atlas, không tạo bitmap xoay
+        int rotation = board.getRotation(pieceIndex(piece));
+        if (rotation == 0) {
+            drawUprightPiece(canvas, piece, x, y, isSelected);
+            return;
+        }
 
-        Paint currentPaint = piece.isLocked() && config.dimLockedPieces ? dimPaint : paint;
-        canvas.drawBitmap(piece.getBitmap(), null, destRect, currentPaint);
+        canvas.save();
+        applyPieceRotation(canvas, rotation, x, y);
+        drawUprightPiece(canvas, piece, x, y, isSelected);
+        canvas.restore();
+    }
 
-        if (isSelected) {
+    /**
+     * Xoay canvas rotation * 90° quanh tâm ô tại (x, y); ô không vuông được co giãn để piece xoay
+     * vẫn lấp đúng ô.
+     */
+    private void applyPieceRotation(Canvas canvas, int rotation, float x, float y) {
+        float centerX = x + cellWidth / 2f;
+        float centerY = y + cellHeight / 2f;
+        canvas.rotate(rotation * 90f, centerX, centerY);
+        if ((rotation & 1) != 0 && cellWidth != cellHeight) {
+            canvas.scale((float) cellHeight / cellWidth, (float) cellWidth / cellHeight, centerX, centerY);
+        }
+    }
+
+    private void drawUprightPiece(Canvas canvas, PuzzlePiece piece, float x, float y, boolean isSelected) {
+        RectF destRect = pieceDestRect;
+        destRect.set(x, y, x + cellWidth, y + cellHeight);
+
+        boolean locked = isPieceLocked(piece);
+        if (shapesReady()) {
+            drawShapedPiece(canvas, pieceIndex(piece), x, y, locked, isSelected);
+            return;
+        }
+
+        Paint currentPaint = locked && config.dimLockedPieces ? dimPaint : paint;
+        Bitmap tile = tilePyramid != null
+                ? tilePyramid.getTile(tileLevel, pieceIndex(piece))
+                : null;
+        if (tile != null) {
+            // Tile chứa đúng một piece nên vẽ cả bitmap vào destRect
+            canvas.drawBitmap(tile, null, destRect, currentPaint);
+        } else {
+            canvas.drawBitmap(piece.getBitmap(), piece.getSourceRect(), destRect, currentPaint);
+        }
+
+        if (isSelected) {
             // Draw gold border for selected piece
             canvas.drawRect(destRect, selectedPaint);
-        } else if (!piece.isLocked()) {
-            borderPaint.setStrokeWidth(2);
-            borderPaint.setColor(Color.argb(100, 255, 255, 255));
+        } else if (!locked) {
             canvas.drawRect(destRect, borderPaint);
         }
     }
 
+    /**
+     * Piece có tab: atlas là shader cố định, chỉ dịch canvas để ô gốc của piece trong atlas nằm tại (x, y).
+     */
+    private void drawShapedPiece(Canvas canvas, int index, float x, float y, boolean locked, boolean isSelected) {
+        Path path = pieceShapes.getPath(index);
+        canvas.save();
+        canvas.translate(x - (index % config.gridSize) * cellWidth, y - (index / config.gridSize) * cellHeight);
+        canvas.drawPath(path, locked && config.dimLockedPieces ? dimShapePaint : shapePaint);
+        if (isSelected) {
+            canvas.drawPath(path, selectedPaint);
+        } else if (!locked) {
+            canvas.drawPath(path, borderPaint);
+        }
+        canvas.restore();
+    }
+
+    private void drawSelectionOutline(Canvas canvas, PuzzlePiece piece, float x, float y) {
+        if (shapesReady()) {
+            int index = pieceIndex(piece);
+            canvas.save();
+            applyPieceRotation(canvas, board.getRotation(index), x, y);
+            canvas.translate(x - (index % config.gridSize) * cellWidth, y - (index / config.gridSize) * cellHeight);
+            canvas.drawPath(pieceShapes.getPath(index), selectedPaint);
+            canvas.restore();
+        } else {
+            pieceDestRect.set(x, y, x + cellWidth, y + cellHeight);
+            canvas.drawRect(pieceDestRect, selectedPaint);
+        }
+    }
+
     private void drawPieceAt(Canvas canvas, PuzzlePiece piece, int row, int col, boolean isSelected) {
         float x = gridX + col * cellWidth;
         float y = gridY + row * cellHeight;
@@ -487,7 +1177,7 @@ public class PuzzleView extends View {
 
     @Override
     public boolean onTouchEvent(MotionEvent event) {
-        if (grid == null || allPieces == null || allPieces.isEmpty()) {
+        if (board == null || allPieces == null || allPieces.isEmpty()) {
             return super.onTouchEvent(event);
         }
 
@@ -507,7 +1197,7 @@ public class PuzzleView extends View {
                 lastTouchY = event.getY();
 
                 // Check if reset zoom button is clicked
-                if (scaleFactor > 1.1f && resetZoomButtonRect != null &&
+                if (scaleFactor > 1.1f &&
                         resetZoomButtonRect.contains(lastTouchX, lastTouchY)) {
                     animateResetZoom();
                     return true;
@@ -527,6 +1217,8 @@ public class PuzzleView extends View {
                 if (isDragging && draggedPiece != null) {
                     isDragging = false;
                     draggedPiece = null;
+                    markBoardLayerDirty();
+                    invalidate();
                 }
                 clearSelection();
                 isPanning = false;
@@ -586,6 +1278,7 @@ public class PuzzleView extends View {
                     velocityTracker.recycle();
                     velocityTracker = null;
                 }
+                recordViewport();
                 break;
 
             case MotionEvent.ACTION_POINTER_UP:
@@ -599,20 +1292,25 @@ public class PuzzleView extends View {
     }
 
     private void handleSwapModeTouch(float x, float y) {
+        if (freeLayout != null) {
+            // Đặt tự do không có swap mode, zoom lớn chỉ để pan
+            return;
+        }
+
         if (x < gridX || x >= gridX + gridWidth || y < gridY || y >= gridY + gridHeight) {
             clearSelection();
             return;
         }
 
-        int col = (int) Math.floor((x - gridX) / cellWidth);
-        int row = (int) Math.floor((y - gridY) / cellHeight);
-
-        if (row < 0 || row >= config.gridSize || col < 0 || col >= config.gridSize) {
+        int cell = hitTestCell(x, y);
+        if (cell < 0) {
             clearSelection();
             return;
         }
+        int row = cell / config.gridSize;
+        int col = cell % config.gridSize;
 
-        PuzzlePiece tappedPiece = grid[row][col];
+        PuzzlePiece tappedPiece = pieceAt(row, col);
         if (tappedPiece == null) {
             clearSelection();
             return;
@@ -621,7 +1319,7 @@ public class PuzzleView extends View {
         // If no piece selected yet, select this piece
         if (selectedPiece == null) {
             // Cannot select locked pieces
-            if (tappedPiece.isLocked()) {
+            if (board.isLocked(board.cellIndex(row, col))) {
                 return;
             }
 
@@ -633,12 +1331,43 @@ public class PuzzleView extends View {
         } else {
             // A piece is already selected
             if (tappedPiece == selectedPiece) {
-                // Tapped same piece, deselect
-                clearSelection();
+                if (board.isRotationEnabled() && !isGroupMove(row, col)) {
+                    // Chạm lại piece đang chọn thì xoay nó; chạm ngoài board để bỏ chọn
+                    rotatePiece(row, col);
+                    if (isPuzzleComplete()) {
+                        clearSelection();
+                        showCompletionImage();
+                    } else if (listener != null) {
+                        listener.onProgressChanged();
+                    }
+                } else {
+                    // Tapped same piece, deselect
+                    clearSelection();
+                }
             } else {
                 // Swap with selected piece
-                if (!tappedPiece.isLocked() && !selectedPiece.isLocked()) {
-                    swapPieces(selectedRow, selectedCol, row, col);
+                boolean moved;
+                if (isGroupMove(selectedRow, selectedCol)) {
+                    // Nhóm không tách được: dịch cả nhóm sao cho piece đã chọn tới cell vừa chạm
+                    int count = board.collectGroupCells(board.pieceAt(selectedRow, selectedCol), draggedCells);
+                    moved = board.moveBlock(draggedCells, count, row - selectedRow, col - selectedCol);
+                    if (moved) {
+                        if (isRecording()) {
+                            replayRecorder.recordMoveBlock(board.cellIndex(selectedRow, selectedCol),
+                                    row - selectedRow, col - selectedCol);
+                        }
+                        invalidate();
+                    }
+                } else {
+                    moved = board.move(board.cellIndex(selectedRow, selectedCol), board.cellIndex(row, col));
+                    if (moved && isRecording()) {
+                        replayRecorder.recordMove(board.cellIndex(selectedRow, selectedCol), board.cellIndex(row, col));
+                    }
+                    invalidate();
+                }
+
+                if (moved) {
+                    markBoardLayerDirty();
                     checkLocking();
 
                     if (listener != null) {
@@ -658,12 +1387,75 @@ public class PuzzleView extends View {
     }
 
     private void clearSelection() {
+        if (selectedPiece == null) {
+            return;
+        }
+
+        invalidate();
+
         selectedPiece = null;
         selectedRow = -1;
         selectedCol = -1;
-        invalidate();
     }
 
+    /**
+     * Cell có piece chứa điểm (x, y) (toạ độ content), hoặc -1. Với piece có tab thì xét hình thật:
+     * điểm trong blank thuộc tab của piece kề, điểm trên tab thuộc cell bên cạnh.
+     */
+    private int hitTestCell(float x, float y) {
+        int gridSize = config.gridSize;
+        int col = (int) Math.floor((x - gridX) / cellWidth);
+        int row = (int) Math.floor((y - gridY) / cellHeight);
+
+        if (!shapesReady()) {
+            return row >= 0 && row < gridSize && col >= 0 && col < gridSize ? board.cellIndex(row, col) : -1;
+        }
+
+        for (int i = 0; i < HIT_ROW_STEPS.length; i++) {
+            int r = row + HIT_ROW_STEPS[i];
+            int c = col + HIT_COL_STEPS[i];
+            if (r < 0 || r >= gridSize || c < 0 || c >= gridSize) {
+                continue;
+            }
+            int cell = board.cellIndex(r, c);
+            if (shapeContains(board.pieceAt(cell), x - (gridX + c * cellWidth), y - (gridY + r * cellHeight))) {
+                return cell;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Hit-test mask của piece với toạ độ tính từ góc ô; bỏ xoay (nghịch đảo applyPieceRotation) trước.
+     */
+    private boolean shapeContains(int piece, float localX, float localY) {
+        int rotation = board.getRotation(piece);
+        if (rotation == 0) {
+            return pieceShapes.contains(piece, localX, localY);
+        }
+
+        float halfWidth = cellWidth / 2f;
+        float halfHeight = cellHeight / 2f;
+        float dx = localX - halfWidth;
+        float dy = localY - halfHeight;
+        for (int i = 0; i < rotation; i++) {
+            // Xoay ngược 90°: (dx, dy) -> (dy, -dx)
+            float tmp = dx;
+            dx = dy;
+            dy = -tmp;
+        }
+        if ((rotation & 1) != 0) {
+            dx *= (float) cellWidth / cellHeight;
+            dy *= (float) cellHeight / cellWidth;
+        }
+        unrotatedPoint[0] = dx + halfWidth;
+        unrotatedPoint[1] = dy + halfHeight;
+        return pieceShapes.contains(piece, unrotatedPoint[0], unrotatedPoint[1]);
+    }
+
+    /**
+     * Pan limits {minX, maxX, minY, maxY}. Trả về mảng dùng chung - không giữ lại reference.
+     */
     private float[] getPanBounds() {
         float viewWidth = getWidth();
         float viewHeight = getHeight();
@@ -674,10 +1466,11 @@ public class PuzzleView extends View {
         float maxPanX = (scaledWidth - viewWidth) / 2f;
         float maxPanY = (scaledHeight - viewHeight) / 2f;
 
-        return new float[] {
-                -maxPanX, maxPanX,
-                -maxPanY, maxPanY
-        };
+        panBounds[0] = -maxPanX;
+        panBounds[1] = maxPanX;
+        panBounds[2] = -maxPanY;
+        panBounds[3] = maxPanY;
+        return panBounds;
     }
 
     private float getTouchX(float screenX) {
@@ -705,6 +1498,7 @@ public class PuzzleView extends View {
         scaleFactor = 1.0f;
         panX = 0f;
         panY = 0f;
+        recordViewport();
         clearSelection();
         invalidate();
     }
@@ -736,6 +1530,7 @@ public class PuzzleView extends View {
                 scaleFactor = 1.0f;
                 panX = 0f;
                 panY = 0f;
+                recordViewport();
                 clearSelection();
                 invalidate();
             }
@@ -746,19 +1541,23 @@ public class PuzzleView extends View {
     }
 
     private boolean handleTouchDown(float x, float y) {
+        if (freeLayout != null) {
+            return handleFreeTouchDown(x, y);
+        }
+
         if (x < gridX || x >= gridX + gridWidth || y < gridY || y >= gridY + gridHeight) {
             return false;
         }
 
-        int col = (int) Math.floor((x - gridX) / cellWidth);
-        int row = (int) Math.floor((y - gridY) / cellHeight);
-
-        if (row < 0 || row >= config.gridSize || col < 0 || col >= config.gridSize) {
+        int cell = hitTestCell(x, y);
+        if (cell < 0) {
             return false;
         }
+        int row = cell / config.gridSize;
+        int col = cell % config.gridSize;
 
-        PuzzlePiece piece = grid[row][col];
-        if (piece == null || piece.isLocked()) {
+        PuzzlePiece piece = pieceAt(row, col);
+        if (piece == null || board.isLocked(board.cellIndex(row, col))) {
             return false;
         }
 
@@ -773,16 +1572,73 @@ public class PuzzleView extends View {
         draggedPieceX = cellLeft;
         draggedPieceY = cellTop;
         isDragging = true;
+        collectDraggedCells(row, col);
+        markBoardLayerDirty();
+        invalidate();
+        return true;
+    }
+
+    private boolean handleFreeTouchDown(float x, float y) {
+        // O(1): chỉ xét các piece trong bucket của điểm chạm
+        int index = freeLayout.hitTest(x, y);
+        if (index < 0 || piecesByIndex[index] == null) {
+            return false;
+        }
 
+        freeDragCount = freeLayout.bringGroupToFront(index, freeDragGroup);
+        freeDragLastX = x;
+        freeDragLastY = y;
+        draggedPiece = piecesByIndex[index];
+        isDragging = true;
         invalidate();
         return true;
     }
 
+    private void dropFreeGroup() {
+        int result = freeLayout.drop(freeDragGroup, freeDragCount);
+        if (result == FreePlacementLayout.DROP_NONE) {
+            return;
+        }
+
+        if (result == FreePlacementLayout.DROP_PLACED) {
+            vibratePiece();
+        } else {
+            vibratePieceShort();
+        }
+        if (listener != null) {
+            listener.onPieceConnected();
+        }
+    }
+
+    /**
+     * Nhóm chỉ được kéo cả khối khi mode không cho tách; mode còn lại kéo piece lẻ ra khỏi nhóm.
+     */
+    private boolean isGroupMove(int row, int col) {
+        return !config.canSeparateConnectedPieces && board.groupSize(board.pieceAt(row, col)) > 1;
+    }
+
+    private void collectDraggedCells(int row, int col) {
+        if (isGroupMove(row, col)) {
+            draggedCellCount = board.collectGroupCells(board.pieceAt(row, col), draggedCells);
+        } else {
+            draggedCells[0] = board.cellIndex(row, col);
+            draggedCellCount = 1;
+        }
+    }
+
     private boolean handleTouchMove(float x, float y) {
         if (!isDragging || draggedPiece == null) {
             return false;
         }
 
+        if (freeLayout != null) {
+            freeLayout.translateGroup(freeDragGroup, freeDragCount, x - freeDragLastX, y - freeDragLastY);
+            freeDragLastX = x;
+            freeDragLastY = y;
+            invalidate();
+            return true;
+        }
+
         draggedPieceX = x - dragOffsetX;
         draggedPieceY = y - dragOffsetY;
         invalidate();
@@ -795,17 +1651,27 @@ public class PuzzleView extends View {
         }
 
         try {
-            float centerX = draggedPieceX + cellWidth / 2f;
-            float centerY = draggedPieceY + cellHeight / 2f;
+            if (freeLayout != null) {
+                dropFreeGroup();
+            } else {
+                float centerX = draggedPieceX + cellWidth / 2f;
+                float centerY = draggedPieceY + cellHeight / 2f;
 
-            int dropCol = (int) Math.floor((centerX - gridX) / cellWidth);
-            int dropRow = (int) Math.floor((centerY - gridY) / cellHeight);
+                int dropCol = (int) Math.floor((centerX - gridX) / cellWidth);
+                int dropRow = (int) Math.floor((centerY - gridY) / cellHeight);
 
-            dropCol = Math.max(0, Math.min(dropCol, config.gridSize - 1));
-            dropRow = Math.max(0, Math.min(dropRow, config.gridSize - 1));
+                dropCol = Math.max(0, Math.min(dropCol, config.gridSize - 1));
+                dropRow = Math.max(0, Math.min(dropRow, config.gridSize - 1));
 
-            if (dropRow != draggedFromRow || dropCol != draggedFromCol) {
-                movePiece(draggedFromRow, draggedFromCol, dropRow, dropCol);
+                if (dropRow != draggedFromRow || dropCol != draggedFromCol) {
+                    if (draggedCellCount > 1) {
+                        moveGroup(draggedFromRow, draggedFromCol, dropRow - draggedFromRow, dropCol - draggedFromCol);
+                    } else {
+                        movePiece(draggedFromRow, draggedFromCol, dropRow, dropCol);
+                    }
+                } else if (isRotateTap()) {
+                    rotatePiece(draggedFromRow, draggedFromCol);
+                }
             }
 
         } catch (Exception e) {
@@ -813,6 +1679,7 @@ public class PuzzleView extends View {
         } finally {
             draggedPiece = null;
             isDragging = false;
+            markBoardLayerDirty();
             invalidate();
         }
 
@@ -829,20 +1696,46 @@ public class PuzzleView extends View {
         return true;
     }
 
+    /**
+     * Piece được chạm rồi thả gần như tại chỗ (không phải kéo).
+     */
+    private boolean isRotateTap() {
+        return board.isRotationEnabled() && draggedCellCount == 1
+                && Math.abs(draggedPieceX - (gridX + draggedFromCol * cellWidth)) < ROTATE_TAP_SLOP
+                && Math.abs(draggedPieceY - (gridY + draggedFromRow * cellHeight)) < ROTATE_TAP_SLOP;
+    }
+
+    /**
+     * Xoay piece tại (row, col) thêm 90°; đúng chiều và đúng chỗ thì có thể được khoá như sau một nước đi.
+     */
+    private void rotatePiece(int row, int col) {
+        if (!board.rotate(board.cellIndex(row, col))) {
+            return;
+        }
+        if (isRecording()) {
+            replayRecorder.recordRotate(board.cellIndex(row, col));
+        }
+
+        markBoardLayerDirty();
+        invalidate();
+        vibratePieceShort();
+        checkLocking();
+
+        if (listener != null) {
+            listener.onPieceConnected();
+        }
+    }
+
     private void movePiece(int fromRow, int fromCol, int toRow, int toCol) {
         try {
-            PuzzlePiece movingPiece = grid[fromRow][fromCol];
-            PuzzlePiece targetPiece = grid[toRow][toCol];
-
-            if (movingPiece == null || movingPiece.isLocked()) {
+            if (!board.move(board.cellIndex(fromRow, fromCol), board.cellIndex(toRow, toCol))) {
                 return;
             }
-
-            if (targetPiece != null && targetPiece.isLocked()) {
-                return;
+            if (isRecording()) {
+                replayRecorder.recordMove(board.cellIndex(fromRow, fromCol), board.cellIndex(toRow, toCol));
             }
 
-            swapPieces(fromRow, fromCol, toRow, toCol);
+            markBoardLayerDirty();
             checkLocking();
 
             if (listener != null) {
@@ -854,55 +1747,89 @@ public class PuzzleView extends View {
         }
     }
 
-    private void swapPieces(int fromRow, int fromCol, int toRow, int toCol) {
-        PuzzlePiece temp = grid[fromRow][fromCol];
-        grid[fromRow][fromCol] = grid[toRow][toCol];
-        grid[toRow][toCol] = temp;
-    }
+    /**
+     * Dịch cả nhóm chứa piece tại (row, col); piece bị chiếm chỗ lấp vào cell nhóm vừa rời.
+     */
+    private void moveGroup(int row, int col, int dRow, int dCol) {
+        try {
+            int count = board.collectGroupCells(board.pieceAt(row, col), draggedCells);
+            if (!board.moveBlock(draggedCells, count, dRow, dCol)) {
+                return;
+            }
+            if (isRecording()) {
+                replayRecorder.recordMoveBlock(board.cellIndex(row, col), dRow, dCol);
+            }
 
-    private void checkLocking() {
-        if (!config.autoLockCorrectPieces) {
-            return;
-        }
+            markBoardLayerDirty();
+            invalidate();
+            checkLocking();
 
-        boolean anyLocked = false;
-        for (int row = 0; row < config.gridSize; row++) {
-            for (int col = 0; col < config.gridSize; col++) {
-                PuzzlePiece piece = grid[row][col];
-                if (piece != null && !piece.isLocked()) {
-                    if (piece.getCorrectRow() == row && piece.getCorrectCol() == col) {
-                        piece.setLocked(true);
-                        anyLocked = true;
-                    }
-                }
+            if (listener != null) {
+                listener.onPieceConnected();
             }
+
+        } catch (Exception e) {
+            Log.e(TAG, "Error in moveGroup", e);
         }
+    }
 
-        if (anyLocked) {
+    private void checkLocking() {
+        if (board.lockCorrectPieces() > 0) {
+            markBoardLayerDirty();
             vibratePiece();
             invalidate();
         }
     }
 
+    /**
+     * Gắn recorder cho nhật ký phiên chơi; phiên bắt đầu khi board được xáo hoặc load.
+     */
+    public void setReplayRecorder(ReplayRecorder recorder) {
+        replayRecorder = recorder;
+    }
+
+    private boolean isRecording() {
+        return replayRecorder != null && replayRecorder.isActive() && freeLayout == null;
+    }
+
+    private void recordAction(int eventType) {
+        if (isRecording()) {
+            replayRecorder.recordAction(eventType);
+        }
+    }
+
+    private void recordViewport() {
+        if (isRecording()) {
+            replayRecorder.recordViewport(scaleFactor, panX, panY);
+        }
+    }
+
     private boolean isPuzzleComplete() {
-        for (int row = 0; row < config.gridSize; row++) {
-            for (int col = 0; col < config.gridSize; col++) {
-                PuzzlePiece piece = grid[row][col];
-                if (piece == null || piece.getCorrectRow() != row || piece.getCorrectCol() != col) {
-                    return false;
-                }
-            }
+        return freeLayout != null ? freeLayout.isComplete() : board.isComplete();
+    }
+
+    private PuzzlePiece pieceAt(int row, int col) {
+        return piecesByIndex[board.pieceAt(row, col)];
+    }
+
+    public boolean isPieceLocked(PuzzlePiece piece) {
+        if (freeLayout != null) {
+            return freeLayout.isPlaced(pieceIndex(piece));
         }
-        return true;
+        return board != null && board.isPieceLocked(pieceIndex(piece));
     }
 
     public boolean isInitialized() {
-        return config != null && grid != null && allPieces != null && !allPieces.isEmpty();
+        return config != null && board != null && allPieces != null && !allPieces.isEmpty();
     }
 
     private void showCompletionImage() {
         showingCompletion = true;
         clearSelection();
+        if (renderBackend != null) {
+            // Ảnh hoàn thành do view này vẽ, board phía dưới không cần nữa
+            renderBackend.clearSnapshot();
+        }
 
         // Start completion zoom animation
         startCompletionAnimation();
@@ -946,34 +1873,20 @@ public class PuzzleView extends View {
         }
 
         try {
-            for (int row = 0; row < config.gridSize; row++) {
-                for (int col = 0; col < config.gridSize; col++) {
-                    PuzzlePiece piece = grid[row][col];
-
-                    if (piece != null && !piece.isLocked()) {
-                        int correctRow = piece.getCorrectRow();
-                        int correctCol = piece.getCorrectCol();
-
-                        if (correctRow != row || correctCol != col) {
-                            if (correctRow >= 0 && correctRow < config.gridSize &&
-                                    correctCol >= 0 && correctCol < config.gridSize) {
-
-                                PuzzlePiece pieceAtCorrectPos = grid[correctRow][correctCol];
-
-                                if (pieceAtCorrectPos != null && pieceAtCorrectPos.isLocked()) {
-                                    continue;
-                                }
+            if (freeLayout != null) {
+                return autoPlaceOneGroup();
+            }
 
-                                clearSelection();
-                                animateSwap(row, col, correctRow, correctCol);
-                                return true;
-                            }
-                        }
-                    }
-                }
+            // Ưu tiên swap đưa cả 2 piece về đúng chỗ
+            int swapCount = swapPlanner.planAutoSolve(board, swapPlan);
+            if (swapCount == 0) {
+                return false;
             }
 
-            return false;
+            clearSelection();
+            recordAction(ReplayRecorder.EVENT_AUTO_SOLVE);
+            animateSwapPlan(swapCount, null);
+            return true;
 
         } catch (Exception e) {
             Log.e(TAG, "Error in autoSolveOnePiece", e);
@@ -982,72 +1895,63 @@ public class PuzzleView extends View {
         }
     }
 
-    public boolean solveCorners() {
-        if (isAnimating || showingCompletion) {
+    /**
+     * Đặt tự do: bay nhóm của piece chưa đặt đầu tiên vào đúng chỗ.
+     */
+    private boolean autoPlaceOneGroup() {
+        int index = freeLayout.firstUnplaced();
+        if (index < 0) {
             return false;
         }
 
-        try {
-            List<int[]> swapsToMake = new ArrayList<>();
+        float offsetX = freeLayout.getX(index) - freeLayout.targetX(index);
+        float offsetY = freeLayout.getY(index) - freeLayout.targetY(index);
+        int count = freeLayout.placeGroupOf(index, freeDragGroup);
 
-            // Create temp grid to simulate swaps
-            PuzzlePiece[][] tempGrid = new PuzzlePiece[config.gridSize][config.gridSize];
-            for (int i = 0; i < config.gridSize; i++) {
-                System.arraycopy(grid[i], 0, tempGrid[i], 0, config.gridSize);
-            }
+        isAnimating = true;
+        animationState = STATE_SWAP_ANIMATION;
+        PieceAnimator.Batch batch = pieceAnimator.newBatch(() -> {
+            isAnimating = pieceAnimator.getActiveCount() > 0;
+            vibratePiece();
+            invalidate();
 
-            // Define 4 corners
-            int[][] corners = {
-                    {0, 0},
-                    {0, config.gridSize - 1},
-                    {config.gridSize - 1, 0},
-                    {config.gridSize - 1, config.gridSize - 1}
-            };
-
-            // Solve each corner
-            for (int[] corner : corners) {
-                int targetRow = corner[0];
-                int targetCol = corner[1];
-
-                PuzzlePiece currentPiece = tempGrid[targetRow][targetCol];
-
-                // Skip if already correct
-                if (currentPiece != null &&
-                        currentPiece.getCorrectRow() == targetRow &&
-                        currentPiece.getCorrectCol() == targetCol) {
-                    continue;
-                }
+            if (listener != null) {
+                listener.onPieceConnected();
+            }
 
-                // Find the piece that belongs to this corner
-                boolean found = false;
-                for (int row = 0; row < config.gridSize && !found; row++) {
-                    for (int col = 0; col < config.gridSize && !found; col++) {
-                        PuzzlePiece piece = tempGrid[row][col];
-                        if (piece != null && !piece.isLocked()) {
-                            if (piece.getCorrectRow() == targetRow &&
-                                    piece.getCorrectCol() == targetCol) {
-                                // Found the correct piece
-                                if (row != targetRow || col != targetCol) {
-                                    swapsToMake.add(new int[]{row, col, targetRow, targetCol});
-
-                                    // Swap in tempGrid
-                                    PuzzlePiece temp = tempGrid[targetRow][targetCol];
-                                    tempGrid[targetRow][targetCol] = tempGrid[row][col];
-                                    tempGrid[row][col] = temp;
-                                }
-                                found = true;
-                            }
-                        }
-                    }
-                }
+            if (isPuzzleComplete()) {
+                showCompletionImage();
+            } else if (listener != null) {
+                listener.onProgressChanged();
             }
+        });
+        for (int i = 0; i < count; i++) {
+            int member = freeDragGroup[i];
+            float toX = freeLayout.getX(member);
+            float toY = freeLayout.getY(member);
+            // Cả nhóm dịch cùng một offset nên vị trí cũ = vị trí mới + offset
+            pieceAnimator.animate(batch, member, toX + offsetX, toY + offsetY, toX, toY,
+                    SWAP_DURATION_MS, SWAP_INTERPOLATOR);
+        }
+        pieceAnimator.commit(batch);
+        return true;
+    }
+
+    public boolean solveCorners() {
+        if (isAnimating || showingCompletion) {
+            return false;
+        }
 
-            if (swapsToMake.isEmpty()) {
+        try {
+            int[] corners = board.cornerCells();
+            int swapCount = swapPlanner.planInto(board, corners, swapPlan);
+            if (swapCount == 0) {
                 return false;
             }
 
-            // Animate swaps (real grid will be updated during animation)
-            animateSolveCorners(swapsToMake);
+            clearSelection();
+            recordAction(ReplayRecorder.EVENT_SOLVE_CORNERS);
+            animateSwapPlan(swapCount, corners);
             return true;
 
         } catch (Exception e) {
@@ -1062,28 +1966,7 @@ public class PuzzleView extends View {
             return false;
         }
 
-        // Check all 4 corners
-        int[][] corners = {
-                {0, 0},
-                {0, config.gridSize - 1},
-                {config.gridSize - 1, 0},
-                {config.gridSize - 1, config.gridSize - 1}
-        };
-
-        for (int[] corner : corners) {
-            int row = corner[0];
-            int col = corner[1];
-            PuzzlePiece piece = grid[row][col];
-
-            // If any corner is not correct, we can solve
-            if (piece == null ||
-                    piece.getCorrectRow() != row ||
-                    piece.getCorrectCol() != col) {
-                return true;
-            }
-        }
-
-        return false; // All corners already solved
+        return freeLayout == null && board.hasIncorrectCell(board.cornerCells());
     }
 
     /**
@@ -1094,80 +1977,15 @@ public class PuzzleView extends View {
             return false;
         }
         try {
-            List<int[]> swapsToMake = new ArrayList<>();
-
-            // Create a temporary copy of grid to simulate swaps
-            PuzzlePiece[][] tempGrid = new PuzzlePiece[config.gridSize][config.gridSize];
-            for (int i = 0; i < config.gridSize; i++) {
-                System.arraycopy(grid[i], 0, tempGrid[i], 0, config.gridSize);
-            }
-
-            // Collect all edge positions (excluding corners)
-            List<int[]> edgePositions = new ArrayList<>();
-
-            // Top edge
-            for (int col = 1; col < config.gridSize - 1; col++) {
-                edgePositions.add(new int[]{0, col});
-            }
-            // Bottom edge
-            for (int col = 1; col < config.gridSize - 1; col++) {
-                edgePositions.add(new int[]{config.gridSize - 1, col});
-            }
-            // Left edge
-            for (int row = 1; row < config.gridSize - 1; row++) {
-                edgePositions.add(new int[]{row, 0});
-            }
-            // Right edge
-            for (int row = 1; row < config.gridSize - 1; row++) {
-                edgePositions.add(new int[]{row, config.gridSize - 1});
-            }
-
-            // For each edge position, find the correct piece and plan the swap
-            for (int[] edgePos : edgePositions) {
-                int targetRow = edgePos[0];
-                int targetCol = edgePos[1];
-
-                PuzzlePiece currentPiece = tempGrid[targetRow][targetCol];
-
-                // Skip if already correct
-                if (currentPiece != null &&
-                        currentPiece.getCorrectRow() == targetRow &&
-                        currentPiece.getCorrectCol() == targetCol) {
-                    continue;
-                }
-
-                // Find the piece that belongs here in tempGrid
-                boolean found = false;
-                for (int row = 0; row < config.gridSize && !found; row++) {
-                    for (int col = 0; col < config.gridSize && !found; col++) {
-                        PuzzlePiece piece = tempGrid[row][col];
-                        if (piece != null && !piece.isLocked()) {
-                            // Check if this piece belongs to this edge position
-                            if (piece.getCorrectRow() == targetRow &&
-                                    piece.getCorrectCol() == targetCol) {
-                                // Found it! Add swap if not already in position
-                                if (row != targetRow || col != targetCol) {
-                                    swapsToMake.add(new int[]{row, col, targetRow, targetCol});
-
-                                    // Update tempGrid (not real grid) for next iterations
-                                    PuzzlePiece temp = tempGrid[targetRow][targetCol];
-                                    tempGrid[targetRow][targetCol] = tempGrid[row][col];
-                                    tempGrid[row][col] = temp;
-
-                                    found = true;
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-
-            if (swapsToMake.isEmpty()) {
+            int[] edges = board.edgeCells();
+            int swapCount = swapPlanner.planInto(board, edges, swapPlan);
+            if (swapCount == 0) {
                 return false;
             }
 
-            // Real grid is NOT changed yet - will be changed during animation
-            animateSolveEdges(swapsToMake);
+            clearSelection();
+            recordAction(ReplayRecorder.EVENT_SOLVE_EDGES);
+            animateSwapPlan(swapCount, edges);
             return true;
 
         } catch (Exception e) {
@@ -1182,67 +2000,62 @@ public class PuzzleView extends View {
             return false;
         }
 
-        // Check all edge positions (excluding corners)
-        for (int col = 1; col < config.gridSize - 1; col++) {
-            // Top edge
-            PuzzlePiece piece = grid[0][col];
-            if (piece == null || piece.getCorrectRow() != 0 || piece.getCorrectCol() != col) {
-                return true;
-            }
-            // Bottom edge
-            piece = grid[config.gridSize - 1][col];
-            if (piece == null || piece.getCorrectRow() != config.gridSize - 1 || piece.getCorrectCol() != col) {
-                return true;
-            }
-        }
+        return freeLayout == null && board.hasIncorrectCell(board.edgeCells());
+    }
 
-        for (int row = 1; row < config.gridSize - 1; row++) {
-            // Left edge
-            PuzzlePiece piece = grid[row][0];
-            if (piece == null || piece.getCorrectRow() != row || piece.getCorrectCol() != 0) {
-                return true;
-            }
-            // Right edge
-            piece = grid[row][config.gridSize - 1];
-            if (piece == null || piece.getCorrectRow() != row || piece.getCorrectCol() != config.gridSize - 1) {
-                return true;
-            }
+    public boolean canAutoSolve() {
+        if (isAnimating || showingCompletion) {
+            return false;
         }
 
-        return false; // All edges already solved
+        return freeLayout != null ? !freeLayout.isComplete() : board.canAutoSolve();
     }
 
-    private void checkAndAddEdge(int row, int col, List<int[]> edgesToSolve) {
-        PuzzlePiece piece = grid[row][col];
+    /**
+     * Còn bước để undo (chế độ cell; đặt tự do không có journal).
+     */
+    public boolean canUndo() {
+        return !isAnimating && !showingCompletion && freeLayout == null && board != null && board.canUndo();
+    }
 
-        if (piece != null && !piece.isLocked()) {
-            int correctRow = piece.getCorrectRow();
-            int correctCol = piece.getCorrectCol();
+    public boolean canRedo() {
+        return !isAnimating && !showingCompletion && freeLayout == null && board != null && board.canRedo();
+    }
 
-            if (correctRow != row || correctCol != col) {
-                edgesToSolve.add(new int[]{row, col, correctRow, correctCol});
-            }
+    /**
+     * Đảo ngược nước đi / power-up gần nhất (kèm các khoá nó gây ra).
+     */
+    public boolean undoMove() {
+        if (!canUndo()) {
+            return false;
         }
+        clearSelection();
+        board.undo();
+        recordAction(ReplayRecorder.EVENT_UNDO);
+        onJournalStep();
+        return true;
     }
 
-    public boolean canAutoSolve() {
-        if (isAnimating || showingCompletion) {
+    public boolean redoMove() {
+        if (!canRedo()) {
             return false;
         }
+        clearSelection();
+        board.redo();
+        recordAction(ReplayRecorder.EVENT_REDO);
+        onJournalStep();
+        return true;
+    }
 
-        // Check if there are any unlocked pieces not in correct position
-        for (int row = 0; row < config.gridSize; row++) {
-            for (int col = 0; col < config.gridSize; col++) {
-                PuzzlePiece piece = grid[row][col];
-                if (piece != null && !piece.isLocked()) {
-                    if (piece.getCorrectRow() != row || piece.getCorrectCol() != col) {
-                        return true; // Found a piece that can be auto-solved
-                    }
-                }
-            }
-        }
+    private void onJournalStep() {
+        markBoardLayerDirty();
+        invalidate();
 
-        return false; // All pieces are already correct or locked
+        if (isPuzzleComplete()) {
+            showCompletionImage();
+        } else if (listener != null) {
+            listener.onProgressChanged();
+        }
     }
 
     public boolean canShuffle() {
@@ -1250,287 +2063,197 @@ public class PuzzleView extends View {
             return false;
         }
 
-        // Check if there are at least 2 unlocked pieces to shuffle
-        int unlockedCount = 0;
-        for (int row = 0; row < config.gridSize; row++) {
-            for (int col = 0; col < config.gridSize; col++) {
-                PuzzlePiece piece = grid[row][col];
-                if (piece != null && !piece.isLocked()) {
-                    unlockedCount++;
-                    if (unlockedCount >= 2) {
-                        return true; // Need at least 2 pieces to shuffle
-                    }
-                }
-            }
+        // Need at least 2 unlocked pieces to shuffle
+        if (freeLayout != null) {
+            return freeLayout.getPieceCount() - freeLayout.getPlacedCount() >= 2;
         }
-
-        return false;
+        return board.canShuffle();
     }
 
     /**
-     * ✅ NEW: Animate solving corners
+     * Áp dụng swapPlan[0 .. swapCount) lên board rồi animate mọi piece bị di chuyển trong một batch
+     * (từ cell ban đầu tới cell cuối, piece đi qua neo chỉ bay một lần).
+     *
+     * @param lockTargets cell được khoá sau animation nếu đã đúng (corners / edges), hoặc null
      */
-    private void animateSolveCorners(List<int[]> cornersToSolve) {
+    private void animateSwapPlan(int swapCount, int[] lockTargets) {
         isAnimating = true;
-        clearSelection();
-
-        final int[] currentIndex = {0};
-        Handler handler = new Handler(Looper.getMainLooper());
-
-        Runnable solveNext = new Runnable() {
-            @Override
-            public void run() {
-                if (currentIndex[0] >= cornersToSolve.size()) {
-                    // All corners animated
-                    isAnimating = false;
-
-                    // IMPORTANT: Only lock corners that are actually correct
-                    lockCorrectCorners();
-
-                    invalidate();
-
-                    if (listener != null) {
-                        listener.onPieceConnected();
-                    }
-
-                    if (isPuzzleComplete()) {
-                        showCompletionImage();
-                    } else if (listener != null) {
-                        listener.onProgressChanged();
-                    }
-                    return;
-                }
-
-                int[] corner = cornersToSolve.get(currentIndex[0]);
-
-                // Perform the swap
-                animateSwap(corner[0], corner[1], corner[2], corner[3]);
-
-                currentIndex[0]++;
-
-                // Wait for animation to complete (adjust based on your animateSwap duration)
-                handler.postDelayed(this, 400);
-            }
-        };
-
-        handler.post(solveNext);
-    }
-
-    // NEW METHOD: Only lock corners that are in correct positions
-    private void lockCorrectCorners() {
-        int[][] corners = {
-                {0, 0},
-                {0, config.gridSize - 1},
-                {config.gridSize - 1, 0},
-                {config.gridSize - 1, config.gridSize - 1}
-        };
-
-        for (int[] corner : corners) {
-            int row = corner[0];
-            int col = corner[1];
-            PuzzlePiece piece = grid[row][col];
-
-            // Only lock if piece is in correct position
-            if (piece != null &&
-                    piece.getCorrectRow() == row &&
-                    piece.getCorrectCol() == col) {
-                piece.setLocked(true);
-                Log.d(TAG, "Locked corner at (" + row + "," + col + ")");
-            } else {
-                Log.w(TAG, "Corner at (" + row + "," + col + ") is NOT correct - not locking");
+        animationState = STATE_SWAP_ANIMATION;
+
+        // Tập piece trong các cell liên quan không đổi qua các swap; cell trùng (neo) chỉ làm lặp piece
+        int involved = 0;
+        for (int i = 0; i < swapCount * 2; i++) {
+            int cell = swapPlan[i];
+            int piece = board.pieceAt(cell);
+            if (swapStartCells[piece] < 0) {
+                swapStartCells[piece] = cell;
+                swapPieces[involved++] = piece;
             }
         }
-    }
-
-    /**
-     * ✅ NEW: Animate solving edges
-     */
-    private void animateSolveEdges(List<int[]> edgesToSolve) {
-        isAnimating = true;
-        clearSelection();
 
-        final int[] currentIndex = {0};
-        Handler handler = new Handler(Looper.getMainLooper());
-
-        Runnable solveNext = new Runnable() {
-            @Override
-            public void run() {
-                if (currentIndex[0] >= edgesToSolve.size()) {
-                    // All edges animated
-                    isAnimating = false;
+        board.applySwapPlan(swapPlan, swapCount);
+        markBoardLayerDirty();
 
-                    // IMPORTANT: Only lock edges that are actually correct
-                    lockCorrectEdges();
+        PieceAnimator.Batch batch = pieceAnimator.newBatch(() -> {
+            isAnimating = pieceAnimator.getActiveCount() > 0;
 
-                    invalidate();
-
-                    if (listener != null) {
-                        listener.onPieceConnected();
-                    }
-
-                    if (isPuzzleComplete()) {
-                        showCompletionImage();
-                    } else if (listener != null) {
-                        listener.onProgressChanged();
-                    }
-                    return;
+            if (lockTargets != null) {
+                // Chỉ khoá cell đích thực sự đúng
+                int lockedCount = board.lockCorrectCells(lockTargets);
+                if (lockedCount > 0) {
+                    markBoardLayerDirty();
                 }
+                Log.d(TAG, "Locked " + lockedCount + "/" + lockTargets.length + " solved cells");
+            }
+            checkLocking();
+            invalidate();
 
-                int[] edge = edgesToSolve.get(currentIndex[0]);
-
-                // Perform the swap
-                animateSwap(edge[0], edge[1], edge[2], edge[3]);
-
-                currentIndex[0]++;
-
-                // Wait for animation to complete
-                handler.postDelayed(this, 400);
+            if (listener != null) {
+                listener.onPieceConnected();
             }
-        };
 
-        handler.post(solveNext);
-    }
+            if (isPuzzleComplete()) {
+                showCompletionImage();
+            } else if (listener != null) {
+                listener.onProgressChanged();
+            }
+        });
 
-    // NEW METHOD: Only lock edges that are in correct positions
-    private void lockCorrectEdges() {
-        for (int row = 0; row < config.gridSize; row++) {
-            for (int col = 0; col < config.gridSize; col++) {
-                // Check if this is an edge position (excluding corners)
-                boolean isEdge = (row == 0 || row == config.gridSize - 1 ||
-                        col == 0 || col == config.gridSize - 1);
-                boolean isCorner = (row == 0 || row == config.gridSize - 1) &&
-                        (col == 0 || col == config.gridSize - 1);
-
-                if (isEdge && !isCorner) {
-                    PuzzlePiece piece = grid[row][col];
-
-                    // Only lock if piece is in correct position
-                    if (piece != null &&
-                            piece.getCorrectRow() == row &&
-                            piece.getCorrectCol() == col) {
-                        piece.setLocked(true);
-                        Log.d(TAG, "Locked edge at (" + row + "," + col + ")");
-                    } else {
-                        Log.w(TAG, "Edge at (" + row + "," + col + ") is NOT correct - not locking");
-                    }
-                }
+        int gridSize = config.gridSize;
+        for (int i = 0; i < involved; i++) {
+            int piece = swapPieces[i];
+            int fromCell = swapStartCells[piece];
+            int toCell = board.cellOf(piece);
+            swapStartCells[piece] = -1;
+            if (fromCell != toCell) {
+                pieceAnimator.animate(batch, piece,
+                        gridX + (fromCell % gridSize) * cellWidth, gridY + (fromCell / gridSize) * cellHeight,
+                        gridX + (toCell % gridSize) * cellWidth, gridY + (toCell / gridSize) * cellHeight,
+                        SWAP_DURATION_MS, SWAP_INTERPOLATOR);
             }
         }
-    }
-
-    private void highlightSwap(int fromRow, int fromCol, int toRow, int toCol) {
-        // Visual feedback for the swap
         invalidate();
+        pieceAnimator.commit(batch);
     }
 
-    private void validateCorners() {
-        int[][] corners = {
-                {0, 0},
-                {0, config.gridSize - 1},
-                {config.gridSize - 1, 0},
-                {config.gridSize - 1, config.gridSize - 1}
-        };
-
-        boolean allCorrect = true;
-        for (int[] corner : corners) {
-            int row = corner[0];
-            int col = corner[1];
-            PuzzlePiece piece = grid[row][col];
-
-            if (piece == null) {
-                Log.e(TAG, "Corner at (" + row + "," + col + ") is NULL!");
-                allCorrect = false;
-            } else if (piece.getCorrectRow() != row || piece.getCorrectCol() != col) {
-                Log.e(TAG, "Corner at (" + row + "," + col + ") is WRONG! Should be (" +
-                        piece.getCorrectRow() + "," + piece.getCorrectCol() + ")");
-                allCorrect = false;
-            } else {
-                Log.d(TAG, "Corner at (" + row + "," + col + ") is CORRECT");
-            }
+    private void clearAnimatedPositions() {
+        if (pieceAnimator.getActiveCount() > 0) {
+            markBoardLayerDirty();
         }
-
-        Log.d(TAG, "All corners correct: " + allCorrect);
+        pieceAnimator.cancelAll();
+        isAnimating = false;
     }
 
-    private void lockEdgePieces() {
-        for (int row = 0; row < config.gridSize; row++) {
-            for (int col = 0; col < config.gridSize; col++) {
-                // Check if this is an edge position (excluding corners)
-                boolean isEdge = (row == 0 || row == config.gridSize - 1 ||
-                        col == 0 || col == config.gridSize - 1);
-                boolean isCorner = (row == 0 || row == config.gridSize - 1) &&
-                        (col == 0 || col == config.gridSize - 1);
-
-                if (isEdge && !isCorner) {
-                    PuzzlePiece piece = grid[row][col];
-                    if (piece != null &&
-                            piece.getCorrectRow() == row &&
-                            piece.getCorrectCol() == col) {
-                        piece.setLocked(true);
-                    }
-                }
-            }
-        }
+    private int computeInteractionState() {
+        if (showingCompletion) return STATE_COMPLETION;
+        if (isAnimating) return animationState;
+        if (isDragging) return STATE_DRAGGING;
+        return STATE_IDLE;
     }
 
-    private void animateSwap(int fromRow, int fromCol, int toRow, int toCol) {
-        isAnimating = true;
-        animatedPositions.clear();
-
-        PuzzlePiece piece1 = grid[fromRow][fromCol];
-        PuzzlePiece piece2 = grid[toRow][toCol];
-
-        float fromX = gridX + fromCol * cellWidth;
-        float fromY = gridY + fromRow * cellHeight;
-        float toX = gridX + toCol * cellWidth;
-        float toY = gridY + toRow * cellHeight;
-
-        swapPieces(fromRow, fromCol, toRow, toCol);
+    /**
+     * Trạng thái tương tác ở frame vẽ gần nhất (STATE_*). An toàn khi gọi từ thread khác.
+     */
+    public int getInteractionState() {
+        return interactionState;
+    }
 
-        ValueAnimator animator = ValueAnimator.ofFloat(0f, 1f);
-        animator.setDuration(800);
-        animator.setInterpolator(new OvershootInterpolator(0.8f));
+    private int pieceIndex(PuzzlePiece piece) {
+        return piece.getCorrectRow() * config.gridSize + piece.getCorrectCol();
+    }
 
-        animator.addUpdateListener(animation -> {
-            float progress = (float) animation.getAnimatedValue();
+    /**
+     * Gắn / gỡ render-thread backend. Backend phải nằm ngay dưới view này với cùng kích thước.
+     */
+    public void setRenderBackend(PuzzleTextureView backend) {
+        if (renderBackend == backend) {
+            return;
+        }
+        if (renderBackend != null) {
+            renderBackend.setSurfaceReadyListener(null);
+            renderBackend.clearSnapshot();
+        }
+        renderBackend = backend;
+        if (backend != null) {
+            // Surface (tạo lại) sẵn sàng: vẽ lại để publish snapshot mới
+            backend.setSurfaceReadyListener(this::invalidate);
+        }
+        markBoardLayerDirty();
+        invalidate();
+    }
 
-            if (piece1 != null) {
-                float currentX = fromX + (toX - fromX) * progress;
-                float currentY = fromY + (toY - fromY) * progress;
-                animatedPositions.put(piece1, new PointF(currentX, currentY));
+    /**
+     * Chụp trạng thái board hiện tại vào một snapshot rảnh của pool và gửi cho render thread (chỉ gọi
+     * trên UI thread). Render thread giữ tối đa 2 snapshot (đang vẽ + chờ vẽ) nên luôn còn một cái rảnh.
+     */
+    private void publishSnapshot() {
+        int gridSize = config.gridSize;
+        int cellCount = gridSize * gridSize;
+        if (snapshotSourceRects == null) {
+            snapshotSourceRects = new Rect[cellCount];
+            for (PuzzlePiece piece : allPieces) {
+                snapshotSourceRects[pieceIndex(piece)] = piece.getSourceRect();
             }
-
-            if (piece2 != null) {
-                float currentX = toX + (fromX - toX) * progress;
-                float currentY = toY + (fromY - toY) * progress;
-                animatedPositions.put(piece2, new PointF(currentX, currentY));
+        }
+        if (snapshotPool[0] == null || snapshotPool[0].getCellCount() != cellCount) {
+            // Chỉ khi đổi level (render thread đã bỏ pool cũ qua clearSnapshot)
+            for (int i = 0; i < snapshotPool.length; i++) {
+                snapshotPool[i] = new BoardSnapshot(cellCount);
             }
+        }
 
-            invalidate();
-        });
-
-        animator.addListener(new AnimatorListenerAdapter() {
-            @Override
-            public void onAnimationEnd(Animator animation) {
-                animatedPositions.clear();
-                isAnimating = false;
-
-                checkLocking();
-                invalidate();
-
-                if (listener != null) {
-                    listener.onPieceConnected();
-                }
+        BoardSnapshot snapshot = null;
+        for (BoardSnapshot candidate : snapshotPool) {
+            if (!candidate.inRender.get()) {
+                snapshot = candidate;
+                break;
+            }
+        }
+        if (snapshot == null) {
+            // Không xảy ra khi render thread trả snapshot đúng giao ước; thử lại frame sau
+            postInvalidateOnAnimation();
+            return;
+        }
 
-                if (isPuzzleComplete()) {
-                    showCompletionImage();
-                } else if (listener != null) {
-                    listener.onProgressChanged();
-                }
+        int[] cells = snapshot.cells;
+        board.copyCellsInto(cells);
+        for (int cell = 0; cell < cellCount; cell++) {
+            if (piecesByIndex[cells[cell]] == null) {
+                cells[cell] = BoardSnapshot.EMPTY;
+            } else if (board.isLocked(cell)) {
+                cells[cell] |= BoardSnapshot.LOCKED_BIT;
             }
-        });
+        }
+        board.copyRotationsInto(snapshot.rotations);
+
+        snapshot.atlas = pieceAtlas;
+        snapshot.sourceRects = snapshotSourceRects;
+        snapshot.gridSize = gridSize;
+        snapshot.gridX = gridX;
+        snapshot.gridY = gridY;
+        snapshot.gridWidth = gridWidth;
+        snapshot.gridHeight = gridHeight;
+        snapshot.cellWidth = cellWidth;
+        snapshot.cellHeight = cellHeight;
+        snapshot.dimLockedPieces = config.dimLockedPieces;
+        snapshot.scaleFactor = scaleFactor;
+        snapshot.panX = panX;
+        snapshot.panY = panY;
+        snapshot.selectedCell = selectedPiece != null && selectedRow >= 0 && selectedCol >= 0
+                ? selectedRow * gridSize + selectedCol
+                : -1;
+        if (isDragging && draggedPiece != null) {
+            System.arraycopy(draggedCells, 0, snapshot.draggedCells, 0, draggedCellCount);
+            snapshot.draggedCount = draggedCellCount;
+        } else {
+            snapshot.draggedCount = 0;
+        }
+        snapshot.draggedX = draggedPieceX;
+        snapshot.draggedY = draggedPieceY;
+        snapshot.tweenCount = pieceAnimator.exportTweens(snapshot.tweens);
+        snapshot.updateMoving();
 
-        animator.start();
+        renderBackend.publish(snapshot);
     }
 
     public boolean shuffleRemainingPieces() {
@@ -1538,112 +2261,101 @@ public class PuzzleView extends View {
 
         clearSelection();
 
-        List<PuzzlePiece> incorrectPieces = new ArrayList<>();
-        List<int[]> incorrectPositions = new ArrayList<>();
-
-        for (int row = 0; row < config.gridSize; row++) {
-            for (int col = 0; col < config.gridSize; col++) {
-                PuzzlePiece piece = grid[row][col];
-
-                if (piece != null) {
-                    boolean isLocked = piece.isLocked();
-                    boolean isCorrectPosition = (piece.getCorrectRow() == row && piece.getCorrectCol() == col);
-
-                    if (!isLocked && !isCorrectPosition) {
-                        incorrectPieces.add(piece);
-                        incorrectPositions.add(new int[]{row, col});
-                    }
-                }
-            }
+        if (freeLayout != null) {
+            return scatterFreePieces();
         }
 
-        if (incorrectPieces.isEmpty()) {
+        int[] incorrectCells = board.collectMisplacedCells();
+        if (incorrectCells.length == 0) {
             return false;
         }
 
-        animateShuffle(incorrectPieces, incorrectPositions);
+        animateShuffle(incorrectCells);
         return true;
     }
 
-    private void animateShuffle(List<PuzzlePiece> pieces, List<int[]> oldPositions) {
+    private void animateShuffle(int[] cells) {
         isAnimating = true;
-        animatedPositions.clear();
+        animationState = STATE_SHUFFLE;
 
-        Map<PuzzlePiece, PointF> startPositions = new HashMap<>();
-        for (int i = 0; i < pieces.size(); i++) {
-            int[] pos = oldPositions.get(i);
-            float x = gridX + pos[1] * cellWidth;
-            float y = gridY + pos[0] * cellHeight;
-            startPositions.put(pieces.get(i), new PointF(x, y));
+        // Vị trí cũ theo piece index, trước khi xáo
+        float[] startX = new float[piecesByIndex.length];
+        float[] startY = new float[piecesByIndex.length];
+        for (int cell : cells) {
+            int index = board.pieceAt(cell);
+            startX[index] = gridX + (cell % config.gridSize) * cellWidth;
+            startY[index] = gridY + (cell / config.gridSize) * cellHeight;
         }
 
-        Collections.shuffle(pieces);
-
-        for (int i = 0; i < pieces.size(); i++) {
-            int[] pos = oldPositions.get(i);
-            grid[pos[0]][pos[1]] = pieces.get(i);
+        // Seed riêng cho lần xáo để nhật ký phát lại được
+        long seed = random.nextLong();
+        board.shuffleCells(cells, new Random(seed));
+        if (isRecording()) {
+            replayRecorder.recordShuffleRemaining(seed);
         }
 
-        Map<PuzzlePiece, PointF> endPositions = new HashMap<>();
-        for (int i = 0; i < pieces.size(); i++) {
-            int[] pos = oldPositions.get(i);
-            float x = gridX + pos[1] * cellWidth;
-            float y = gridY + pos[0] * cellHeight;
-            endPositions.put(pieces.get(i), new PointF(x, y));
-        }
+        markBoardLayerDirty();
+        invalidate();
 
-        ValueAnimator animator = ValueAnimator.ofFloat(0f, 1f);
-        animator.setDuration(1000);
-        animator.setInterpolator(new AccelerateDecelerateInterpolator());
+        PieceAnimator.Batch batch = pieceAnimator.newBatch(() -> {
+            isAnimating = pieceAnimator.getActiveCount() > 0;
 
-        animator.addUpdateListener(animation -> {
-            float progress = (float) animation.getAnimatedValue();
-
-            for (PuzzlePiece piece : pieces) {
-                PointF start = startPositions.get(piece);
-                PointF end = endPositions.get(piece);
+            checkLocking();
+            invalidate();
 
-                if (start != null && end != null) {
-                    float currentX = start.x + (end.x - start.x) * progress;
-                    float currentY = start.y + (end.y - start.y) * progress;
-                    animatedPositions.put(piece, new PointF(currentX, currentY));
-                }
+            if (listener != null) {
+                listener.onProgressChanged();
             }
-
-            invalidate();
         });
 
-        animator.addListener(new AnimatorListenerAdapter() {
-            @Override
-            public void onAnimationEnd(Animator animation) {
-                animatedPositions.clear();
-                isAnimating = false;
+        for (int cell : cells) {
+            int index = board.pieceAt(cell);
+            pieceAnimator.animate(batch, index, startX[index], startY[index],
+                    gridX + (cell % config.gridSize) * cellWidth, gridY + (cell / config.gridSize) * cellHeight,
+                    SHUFFLE_DURATION_MS, SHUFFLE_INTERPOLATOR);
+        }
+        pieceAnimator.commit(batch);
+    }
 
-                checkLocking();
-                invalidate();
+    /**
+     * Đặt tự do: rải lại các piece chưa đặt, animate từ vị trí cũ.
+     */
+    private boolean scatterFreePieces() {
+        int count = freeLayout.getPieceCount();
+        float[] startX = new float[count];
+        float[] startY = new float[count];
+        for (int index = 0; index < count; index++) {
+            startX[index] = freeLayout.getX(index);
+            startY[index] = freeLayout.getY(index);
+        }
 
-                if (listener != null) {
-                    listener.onProgressChanged();
-                }
-            }
-        });
+        if (freeLayout.scatterUnplaced(random) == 0) {
+            return false;
+        }
 
-        animator.start();
-    }
+        isAnimating = true;
+        animationState = STATE_SHUFFLE;
+        PieceAnimator.Batch batch = pieceAnimator.newBatch(() -> {
+            isAnimating = pieceAnimator.getActiveCount() > 0;
+            invalidate();
 
-    public int getCorrectPiecesCount() {
-        int count = 0;
-        for (int row = 0; row < config.gridSize; row++) {
-            for (int col = 0; col < config.gridSize; col++) {
-                PuzzlePiece piece = grid[row][col];
-                if (piece != null && piece.getCorrectRow() == row && piece.getCorrectCol() == col) {
-                    count++;
-                }
+            if (listener != null) {
+                listener.onProgressChanged();
+            }
+        });
+        for (int index = 0; index < count; index++) {
+            if (!freeLayout.isPlaced(index)) {
+                pieceAnimator.animate(batch, index, startX[index], startY[index],
+                        freeLayout.getX(index), freeLayout.getY(index), SHUFFLE_DURATION_MS, SHUFFLE_INTERPOLATOR);
             }
         }
-        return count;
+        pieceAnimator.commit(batch);
+        return true;
     }
 
+    public int getCorrectPiecesCount() {
+        return freeLayout != null ? freeLayout.getPlacedCount() : board.getCorrectCount();
+    }
     public boolean isPuzzleCompleted() {
         return showingCompletion;
     }
@@ -1657,18 +2369,34 @@ public class PuzzleView extends View {
 
         GameSaveData saveData = new GameSaveData();
 
+        if (freeLayout != null) {
+            // Lưu toạ độ thật của piece; "locked" = đã đặt vào đúng chỗ
+            for (PuzzlePiece piece : allPieces) {
+                int index = pieceIndex(piece);
+                saveData.piecePositions.add(new GameSaveData.PiecePosition(
+                        piece.getCorrectRow(),
+                        piece.getCorrectCol(),
+                        freeLayout.getX(index), freeLayout.getY(index),
+                        freeLayout.isPlaced(index)
+                ));
+            }
+            return saveData;
+        }
+
         for (int row = 0; row < config.gridSize; row++) {
             for (int col = 0; col < config.gridSize; col++) {
-                PuzzlePiece piece = grid[row][col];
+                PuzzlePiece piece = pieceAt(row, col);
                 if (piece != null) {
                     float x = gridX + col * cellWidth;
                     float y = gridY + row * cellHeight;
-                    saveData.piecePositions.add(new GameSaveData.PiecePosition(
+                    GameSaveData.PiecePosition pos = new GameSaveData.PiecePosition(
                             piece.getCorrectRow(),
                             piece.getCorrectCol(),
                             x, y,
-                            piece.isLocked()
-                    ));
+                            board.isLocked(board.cellIndex(row, col))
+                    );
+                    pos.rotation = board.getRotation(pieceIndex(piece));
+                    saveData.piecePositions.add(pos);
                 }
             }
         }
@@ -1681,20 +2409,34 @@ public class PuzzleView extends View {
 
         clearSelection();
 
+        int gridSize = config.gridSize;
         for (GameSaveData.PiecePosition pos : saveData.piecePositions) {
-            for (PuzzlePiece piece : allPieces) {
-                if (piece.getCorrectRow() == pos.correctRow &&
-                        piece.getCorrectCol() == pos.correctCol) {
+            if (pos.correctRow < 0 || pos.correctRow >= gridSize || pos.correctCol < 0 || pos.correctCol >= gridSize) {
+                continue;
+            }
 
-                    int col = Math.round((pos.x - gridX) / cellWidth);
-                    int row = Math.round((pos.y - gridY) / cellHeight);
+            if (freeLayout != null) {
+                freeLayout.restore(pos.correctRow * gridSize + pos.correctCol, pos.x, pos.y, pos.isLocked);
+                continue;
+            }
 
-                    if (row >= 0 && row < config.gridSize && col >= 0 && col < config.gridSize) {
-                        grid[row][col] = piece;
-                        piece.setLocked(pos.isLocked);
-                    }
-                    break;
-                }
+            int col = Math.round((pos.x - gridX) / cellWidth);
+            int row = Math.round((pos.y - gridY) / cellHeight);
+
+            if (row >= 0 && row < gridSize && col >= 0 && col < gridSize) {
+                // Đổi chỗ với piece đang ở cell đó nên board luôn là một hoán vị hợp lệ
+                board.restoreRotation(pos.correctRow * gridSize + pos.correctCol, pos.rotation);
+                board.placePiece(pos.correctRow * gridSize + pos.correctCol, board.cellIndex(row, col), pos.isLocked);
+                markBoardLayerDirty();
+            }
+        }
+        if (freeLayout != null) {
+            freeLayout.rebuildGroups();
+        } else {
+            // Các lần đặt piece khi load không phải nước đi để undo
+            board.resetJournal();
+            if (replayRecorder != null) {
+                replayRecorder.beginSnapshot(board);
             }
         }
 
@@ -1702,7 +2444,7 @@ public class PuzzleView extends View {
     }
 
     public void cleanup() {
-        animatedPositions.clear();
+        clearAnimatedPositions();
         clearSelection();
 
         if (completionAnimator != null && completionAnimator.isRunning()) {
@@ -1711,22 +2453,21 @@ public class PuzzleView extends View {
         }
 
         if (allPieces != null) {
-            for (PuzzlePiece piece : allPieces) {
-                if (piece != null && piece.getBitmap() != null && !piece.getBitmap().isRecycled()) {
-                    piece.getBitmap().recycle();
-                }
-            }
             allPieces.clear();
         }
 
-        if (fullImage != null && !fullImage.isRecycled()) {
-            fullImage.recycle();
-            fullImage = null;
-        }
+        releasePieceAtlas(null);
+        releaseTilePyramid();
 
-        grid = null;
+        // fullImage thuộc caller (cache ảnh dùng chung), view chỉ bỏ tham chiếu
+        fullImage = null;
+
+        board = null;
+        freeLayout = null;
+        pieceShapes = null;
         draggedPiece = null;
         isDragging = false;
+        markBoardLayerDirty();
 
         if (velocityTracker != null) {
             velocityTracker.recycle();
@@ -1738,6 +2479,28 @@ public class PuzzleView extends View {
         }
     }
 
+    /**
+     * Recycle atlas cũ (nếu nó là bản scaled riêng, không phải ảnh gốc đang dùng). Ảnh board đúng kích
+     * thước được dùng thẳng làm atlas và vẫn thuộc caller: caller chỉ được release / recycle nó sau
+     * cleanup() (hoặc initPuzzle với ảnh khác), khi render thread đã bỏ snapshot.
+     */
+    private void releasePieceAtlas(Bitmap keep) {
+        snapshotSourceRects = null;
+        if (batchRenderer != null) {
+            batchRenderer.setAtlas(null, 0);
+        }
+        if (renderBackend != null) {
+            // Đợi render thread bỏ snapshot cũ trước khi recycle atlas nó đang dùng
+            renderBackend.clearSnapshot();
+        }
+        if (pieceAtlas != null && pieceAtlas != keep && pieceAtlas != fullImage && !pieceAtlas.isRecycled()) {
+            pieceAtlas.recycle();
+        }
+        pieceAtlas = null;
+        shapePaint = null;
+        dimShapePaint = null;
+    }
+
     private void vibratePiece() {
         if (SettingsActivity.isVibrationEnabled(getContext())) {
             Vibrator vibrator = (Vibrator) getContext().getSystemService(Context.VIBRATOR_SERVICE);
@@ -1765,21 +2528,12 @@ public class PuzzleView extends View {
     }
 
     public int getLockedPiecesCount() {
-        int count = 0;
-        for (int row = 0; row < config.gridSize; row++) {
-            for (int col = 0; col < config.gridSize; col++) {
-                PuzzlePiece piece = grid[row][col];
-                if (piece != null && piece.isLocked()) {
-                    count++;
-                }
-            }
-        }
-        return count;
+        return freeLayout != null ? freeLayout.getPlacedCount() : board.getLockedCount();
     }
 
     public int getRemainingPiecesCount() {
-        int totalPieces = config.gridSize * config.gridSize;
-        int correctPieces = getCorrectPiecesCount();
-        return totalPieces - correctPieces;
+        return freeLayout != null
+                ? freeLayout.getPieceCount() - freeLayout.getPlacedCount()
+                : board.getRemainingCount();
     }
 }
\ No newline at end of file
@@ -0,0 +1,254 @@
+package com.example.puzzle_assemble_picture;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * Chạy lại nhật ký của ReplayRecorder trên một PuzzleBoard không có view (không phụ thuộc Android):
+ * theo đúng nhịp đã ghi (1×) hoặc nhanh nhất có thể để đo thời gian engine của một phiên chậm.
+ *
+ * Power-up được tái hiện bằng chính SwapPlanner / seed đã ghi nên board đi qua đúng các trạng thái
+ * của phiên gốc; zoom / pan chỉ được theo dõi (getZoom, getPanX, getPanY).
+ */
+public class ReplayPlayer {
+    private final InputStream in;
+    private final PuzzleBoard board;
+    private final long startedAtMillis;
+    private final SwapPlanner swapPlanner;
+    private final int[] swapPlan;
+    private final int[] blockCells;
+
+    private int lastEventType;
+    private long lastDelayMillis;
+    private int eventCount;
+    private int zoom = 1000;
+    private int panX;
+    private int panY;
+
+    public ReplayPlayer(InputStream source) throws IOException {
+        in = new BufferedInputStream(source);
+        if (readInt() != ReplayRecorder.MAGIC) {
+            throw new IOException("Not a replay log");
+        }
+        int version = readByte();
+        if (version != ReplayRecorder.VERSION) {
+            throw new IOException("Unsupported replay version " + version);
+        }
+        int flags = readByte();
+        int gridSize = readVarint();
+        startedAtMillis = readLong();
+        boolean rotation = (flags & ReplayRecorder.FLAG_ROTATION) != 0;
+
+        board = new PuzzleBoard(gridSize, (flags & ReplayRecorder.FLAG_AUTO_LOCK) != 0,
+                (flags & ReplayRecorder.FLAG_AUTO_CONNECT) != 0, rotation);
+        if ((flags & ReplayRecorder.FLAG_SNAPSHOT) != 0) {
+            readSnapshot(rotation);
+        } else {
+            long seed = readLong();
+            int correctPieces = readVarint();
+            int cycleCount = readVarint();
+            board.setShuffleGenerator(new ShuffleGenerator(gridSize, rotation, correctPieces, cycleCount));
+            board.shuffle(seed);
+        }
+
+        int cellCount = board.getCellCount();
+        swapPlanner = new SwapPlanner(cellCount);
+        swapPlan = new int[cellCount * 2];
+        blockCells = new int[cellCount];
+    }
+
+    private void readSnapshot(boolean rotation) throws IOException {
+        int cellCount = board.getCellCount();
+        int[] cells = new int[cellCount];
+        for (int cell = 0; cell < cellCount; cell++) {
+            cells[cell] = readVarint();
+        }
+        byte[] rotations = new byte[cellCount];
+        if (rotation) {
+            for (int piece = 0; piece < cellCount; piece++) {
+                rotations[piece] = (byte) readByte();
+            }
+        }
+        BitSet locked = new BitSet(cellCount);
+        for (int i = readVarint(); i > 0; i--) {
+            locked.set(readVarint());
+        }
+
+        // Giống PuzzleView.loadGameState: cell trước đã cố định khi đặt cell sau
+        for (int cell = 0; cell < cellCount; cell++) {
+            board.restoreRotation(cells[cell], rotations[cells[cell]]);
+            board.placePiece(cells[cell], cell, locked.get(cell));
+        }
+        board.resetJournal();
+    }
+
+    public PuzzleBoard getBoard() {
+        return board;
+    }
+
+    public long getStartedAtMillis() {
+        return startedAtMillis;
+    }
+
+    public int getEventCount() {
+        return eventCount;
+    }
+
+    public int getLastEventType() {
+        return lastEventType;
+    }
+
+    /**
+     * Khoảng thời gian (ms) giữa event vừa chạy và event trước nó trong phiên gốc.
+     */
+    public long getLastDelayMillis() {
+        return lastDelayMillis;
+    }
+
+    public float getZoom() {
+        return zoom / 1000f;
+    }
+
+    public int getPanX() {
+        return panX;
+    }
+
+    public int getPanY() {
+        return panY;
+    }
+
+    /**
+     * Đọc và áp dụng event tiếp theo.
+     *
+     * @param realTime true để chờ đúng khoảng thời gian đã ghi trước khi áp dụng (1×)
+     * @return false khi hết nhật ký
+     */
+    public boolean step(boolean realTime) throws IOException, InterruptedException {
+        if (!readEvent(realTime)) {
+            return false;
+        }
+        apply(lastEventType);
+        eventCount++;
+        return true;
+    }
+
+    /**
+     * Chạy tới hết nhật ký.
+     *
+     * @return thời gian engine (ns) dành cho các event, không tính thời gian chờ ở chế độ 1×
+     */
+    public long playToEnd(boolean realTime) throws IOException, InterruptedException {
+        long boardNanos = 0;
+        while (readEvent(realTime)) {
+            long start = System.nanoTime();
+            apply(lastEventType);
+            boardNanos += System.nanoTime() - start;
+            eventCount++;
+        }
+        return boardNanos;
+    }
+
+    private boolean readEvent(boolean realTime) throws IOException, InterruptedException {
+        int type = in.read();
+        if (type < 0 || type == ReplayRecorder.EVENT_END) {
+            return false;
+        }
+        lastEventType = type;
+        lastDelayMillis = readVarint();
+        if (realTime && lastDelayMillis > 0) {
+            Thread.sleep(lastDelayMillis);
+        }
+        return true;
+    }
+
+    private void apply(int type) throws IOException {
+        switch (type) {
+            case ReplayRecorder.EVENT_MOVE:
+                board.move(readVarint(), readVarint());
+                break;
+            case ReplayRecorder.EVENT_MOVE_BLOCK:
+                int cell = readVarint();
+                int dRow = unzigzag(readVarint());
+                int dCol = unzigzag(readVarint());
+                int count = board.collectGroupCells(board.pieceAt(cell), blockCells);
+                board.moveBlock(blockCells, count, dRow, dCol);
+                break;
+            case ReplayRecorder.EVENT_ROTATE:
+                board.rotate(readVarint());
+                break;
+            case ReplayRecorder.EVENT_AUTO_SOLVE:
+                board.applySwapPlan(swapPlan, swapPlanner.planAutoSolve(board, swapPlan));
+                break;
+            case ReplayRecorder.EVENT_SOLVE_CORNERS:
+                solveTargets(board.cornerCells());
+                break;
+            case ReplayRecorder.EVENT_SOLVE_EDGES:
+                solveTargets(board.edgeCells());
+                break;
+            case ReplayRecorder.EVENT_SHUFFLE_REMAINING:
+                int[] misplaced = board.collectMisplacedCells();
+                board.shuffleCells(misplaced, new Random(readLong()));
+                break;
+            case ReplayRecorder.EVENT_UNDO:
+                board.undo();
+                break;
+            case ReplayRecorder.EVENT_REDO:
+                board.redo();
+                break;
+            case ReplayRecorder.EVENT_VIEWPORT:
+                zoom += unzigzag(readVarint());
+                panX += unzigzag(readVarint());
+                panY += unzigzag(readVarint());
+                return;
+            default:
+                throw new IOException("Unknown replay event " + type);
+        }
+        // Như PuzzleView.checkLocking sau mỗi thay đổi (undo / redo không khoá thêm)
+        if (type != ReplayRecorder.EVENT_UNDO && type != ReplayRecorder.EVENT_REDO) {
+            board.lockCorrectPieces();
+        }
+    }
+
+    private void solveTargets(int[] targets) {
+        board.applySwapPlan(swapPlan, swapPlanner.planInto(board, targets, swapPlan));
+        board.lockCorrectCells(targets);
+    }
+
+    // ===== Giải mã =====
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private int readByte() throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException("Truncated replay");
+        }
+        return b;
+    }
+
+    private int readVarint() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private int readInt() throws IOException {
+        return (readByte() << 24) | (readByte() << 16) | (readByte() << 8) | readByte();
+    }
+
+    private long readLong() throws IOException {
+        return ((long) readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+    }
+}
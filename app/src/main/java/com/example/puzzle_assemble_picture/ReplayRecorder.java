@@ -0,0 +1,300 @@
+package com.example.puzzle_assemble_picture;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Ghi nhật ký nhị phân của một phiên chơi (chế độ cell) để tái hiện báo lỗi và chạy lại làm benchmark
+ * (ReplayPlayer).
+ *
+ * Định dạng: header (magic, version, cờ board, seed + độ khó hoặc snapshot board) rồi các event
+ * {type, varint ms từ event trước, payload}. Số nguyên không dấu là varint 7 bit, có dấu (dịch khối,
+ * zoom / pan so với lần ghi trước) là zigzag varint. Event được mã hoá trên main thread vào buffer nhỏ;
+ * buffer đầy (hoặc flush) được chuyển sang thread ghi riêng - main thread không chạm tới file.
+ */
+public class ReplayRecorder {
+    private static final String TAG = "ReplayRecorder";
+
+    static final int MAGIC = 0x505A5250; // "PZRP"
+    static final int VERSION = 1;
+
+    static final int FLAG_AUTO_LOCK = 1;
+    static final int FLAG_AUTO_CONNECT = 1 << 1;
+    static final int FLAG_ROTATION = 1 << 2;
+    static final int FLAG_SNAPSHOT = 1 << 3;
+
+    static final int EVENT_MOVE = 1;              // from, to
+    static final int EVENT_MOVE_BLOCK = 2;        // cell của một piece trong nhóm, dRow, dCol
+    static final int EVENT_ROTATE = 3;            // cell
+    static final int EVENT_AUTO_SOLVE = 4;
+    static final int EVENT_SOLVE_CORNERS = 5;
+    static final int EVENT_SOLVE_EDGES = 6;
+    static final int EVENT_SHUFFLE_REMAINING = 7; // seed (8 byte)
+    static final int EVENT_UNDO = 8;
+    static final int EVENT_REDO = 9;
+    static final int EVENT_VIEWPORT = 10;         // zoom (1/1000), panX, panY (px), delta so với lần trước
+    static final int EVENT_END = 11;
+
+    private static final int FLUSH_BYTES = 4096;
+
+    private static final ExecutorService writer = Executors.newSingleThreadExecutor();
+
+    private final File file;
+    private OutputStream out;
+
+    // Chỉ truy cập trên main thread
+    private byte[] buffer = new byte[FLUSH_BYTES + 64];
+    private int length;
+    private boolean active;
+    private long lastEventTime;
+    private int lastZoom = 1000;
+    private int lastPanX;
+    private int lastPanY;
+
+    public ReplayRecorder(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Bắt đầu phiên mới (ghi đè file) từ board vừa xáo bằng seed.
+     */
+    public void beginSeeded(PuzzleBoard board, long seed) {
+        ShuffleGenerator generator = board.getShuffleGenerator();
+        beginHeader(board, 0);
+        writeLong(seed);
+        writeVarint(generator.getCorrectPieces());
+        writeVarint(generator.getCycleCount());
+        flush();
+    }
+
+    /**
+     * Bắt đầu phiên mới từ trạng thái board hiện tại (game đã lưu, không có seed).
+     */
+    public void beginSnapshot(PuzzleBoard board) {
+        beginHeader(board, FLAG_SNAPSHOT);
+        int cellCount = board.getCellCount();
+        for (int cell = 0; cell < cellCount; cell++) {
+            writeVarint(board.pieceAt(cell));
+        }
+        if (board.isRotationEnabled()) {
+            for (int piece = 0; piece < cellCount; piece++) {
+                put(board.getRotation(piece));
+            }
+        }
+        BitSet locked = board.copyLocked();
+        writeVarint(locked.cardinality());
+        for (int cell = locked.nextSetBit(0); cell >= 0; cell = locked.nextSetBit(cell + 1)) {
+            writeVarint(cell);
+        }
+        flush();
+    }
+
+    private void beginHeader(PuzzleBoard board, int flags) {
+        length = 0;
+        active = true;
+        lastEventTime = SystemClock.elapsedRealtime();
+        lastZoom = 1000;
+        lastPanX = 0;
+        lastPanY = 0;
+        writer.execute(this::openFile);
+
+        flags |= board.isAutoLockEnabled() ? FLAG_AUTO_LOCK : 0;
+        flags |= board.isAutoConnectEnabled() ? FLAG_AUTO_CONNECT : 0;
+        flags |= board.isRotationEnabled() ? FLAG_ROTATION : 0;
+        writeInt(MAGIC);
+        put(VERSION);
+        put(flags);
+        writeVarint(board.getGridSize());
+        writeLong(System.currentTimeMillis());
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    // ===== Event =====
+
+    public void recordMove(int fromCell, int toCell) {
+        if (begin(EVENT_MOVE)) {
+            writeVarint(fromCell);
+            writeVarint(toCell);
+        }
+    }
+
+    public void recordMoveBlock(int cell, int dRow, int dCol) {
+        if (begin(EVENT_MOVE_BLOCK)) {
+            writeVarint(cell);
+            writeVarint(zigzag(dRow));
+            writeVarint(zigzag(dCol));
+        }
+    }
+
+    public void recordRotate(int cell) {
+        if (begin(EVENT_ROTATE)) {
+            writeVarint(cell);
+        }
+    }
+
+    /**
+     * Power-up không có tham số (auto solve, solve corners / edges) hoặc undo / redo.
+     */
+    public void recordAction(int eventType) {
+        begin(eventType);
+    }
+
+    public void recordShuffleRemaining(long seed) {
+        if (begin(EVENT_SHUFFLE_REMAINING)) {
+            writeLong(seed);
+        }
+    }
+
+    /**
+     * Ghi zoom / pan nếu đã đổi kể từ lần ghi trước.
+     */
+    public void recordViewport(float scale, float panX, float panY) {
+        int zoom = Math.round(scale * 1000);
+        int x = Math.round(panX);
+        int y = Math.round(panY);
+        if (zoom == lastZoom && x == lastPanX && y == lastPanY) {
+            return;
+        }
+        if (begin(EVENT_VIEWPORT)) {
+            writeVarint(zigzag(zoom - lastZoom));
+            writeVarint(zigzag(x - lastPanX));
+            writeVarint(zigzag(y - lastPanY));
+            lastZoom = zoom;
+            lastPanX = x;
+            lastPanY = y;
+        }
+    }
+
+    private boolean begin(int eventType) {
+        if (!active) {
+            return false;
+        }
+        long now = SystemClock.elapsedRealtime();
+        put(eventType);
+        writeVarint((int) Math.min(Integer.MAX_VALUE, now - lastEventTime));
+        lastEventTime = now;
+        if (length >= FLUSH_BYTES) {
+            flush();
+        }
+        return true;
+    }
+
+    // ===== Ghi nền =====
+
+    /**
+     * Chuyển phần đã mã hoá sang thread ghi (gọi khi activity pause).
+     */
+    public void flush() {
+        if (length == 0) {
+            return;
+        }
+        byte[] chunk = Arrays.copyOf(buffer, length);
+        length = 0;
+        writer.execute(() -> writeChunk(chunk));
+    }
+
+    /**
+     * Ghi event kết thúc và đóng file; recorder có thể begin lại cho phiên sau.
+     */
+    public void close() {
+        if (!active) {
+            return;
+        }
+        begin(EVENT_END);
+        flush();
+        active = false;
+        writer.execute(this::closeFile);
+    }
+
+    /**
+     * Chờ thread ghi xử lý xong mọi chunk đã gửi (test đọc lại file ngay sau close).
+     */
+    static void awaitWrites() throws InterruptedException, ExecutionException {
+        writer.submit(() -> { }).get();
+    }
+
+    private void openFile() {
+        closeFile();
+        try {
+            File dir = file.getParentFile();
+            if (dir != null && !dir.exists() && !dir.mkdirs()) {
+                Log.w(TAG, "Cannot create " + dir);
+            }
+            out = new BufferedOutputStream(new FileOutputStream(file, false), 8192);
+        } catch (IOException e) {
+            Log.e(TAG, "Cannot open replay file " + file, e);
+        }
+    }
+
+    private void writeChunk(byte[] chunk) {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.write(chunk);
+            out.flush();
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing replay", e);
+            closeFile();
+        }
+    }
+
+    private void closeFile() {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            Log.w(TAG, "Error closing replay", e);
+        }
+        out = null;
+    }
+
+    // ===== Mã hoá =====
+
+    static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private void put(int b) {
+        if (length == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        buffer[length++] = (byte) b;
+    }
+
+    private void writeVarint(int value) {
+        while ((value & ~0x7F) != 0) {
+            put((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        put(value);
+    }
+
+    private void writeInt(int value) {
+        put(value >>> 24);
+        put(value >>> 16);
+        put(value >>> 8);
+        put(value);
+    }
+
+    private void writeLong(long value) {
+        writeInt((int) (value >>> 32));
+        writeInt((int) value);
+    }
+}
@@ -24,6 +24,11 @@ public class SettingsActivity extends AppCompatActivity {
     public static final String KEY_LANGUAGE = "language";
     public static final String KEY_SHOW_HINTS = "show_hints";
     public static final String KEY_AUTO_SAVE = "auto_save";
+    public static final String KEY_RENDER_THREAD = "render_thread";
+    public static final String KEY_BATCHED_RENDERING = "batched_rendering";
+    public static final String KEY_FREE_PLACEMENT = "free_placement";
+    public static final String KEY_JIGSAW_SHAPES = "jigsaw_shapes";
+    public static final String KEY_REGION_DECODE = "region_decode";
     public static final String KEY_THEME = "theme";
 
     private SharedPreferences prefs;
@@ -35,6 +40,11 @@ public class SettingsActivity extends AppCompatActivity {
     private SwitchCompat switchVibration;
     private SwitchCompat switchHints;
     private SwitchCompat switchAutoSave;
+    private SwitchCompat switchRenderThread;
+    private SwitchCompat switchBatchedRendering;
+    private SwitchCompat switchFreePlacement;
+    private SwitchCompat switchJigsawShapes;
+    private SwitchCompat switchRegionDecode;
 
     private SeekBar seekBarMusic;
     private SeekBar seekBarSound;
@@ -55,6 +65,11 @@ public class SettingsActivity extends AppCompatActivity {
     private boolean originalVibration;
     private boolean originalHints;
     private boolean originalAutoSave;
+    private boolean originalRenderThread;
+    private boolean originalBatchedRendering;
+    private boolean originalFreePlacement;
+    private boolean originalJigsawShapes;
+    private boolean originalRegionDecode;
     private int originalMusicVolume;
     private int originalSoundVolume;
     private String originalLanguage;
@@ -80,6 +95,11 @@ public class SettingsActivity extends AppCompatActivity {
         switchVibration = findViewById(R.id.switchVibration);
         switchHints = findViewById(R.id.switchHints);
         switchAutoSave = findViewById(R.id.switchAutoSave);
+        switchRenderThread = findViewById(R.id.switchRenderThread);
+        switchBatchedRendering = findViewById(R.id.switchBatchedRendering);
+        switchFreePlacement = findViewById(R.id.switchFreePlacement);
+        switchJigsawShapes = findViewById(R.id.switchJigsawShapes);
+        switchRegionDecode = findViewById(R.id.switchRegionDecode);
 
         // SeekBars
         seekBarMusic = findViewById(R.id.seekBarMusic);
@@ -124,6 +144,11 @@ public class SettingsActivity extends AppCompatActivity {
         switchVibration.setChecked(prefs.getBoolean(KEY_VIBRATION_ENABLED, true));
         switchHints.setChecked(prefs.getBoolean(KEY_SHOW_HINTS, true));
         switchAutoSave.setChecked(prefs.getBoolean(KEY_AUTO_SAVE, true));
+        switchRenderThread.setChecked(prefs.getBoolean(KEY_RENDER_THREAD, false));
+        switchBatchedRendering.setChecked(prefs.getBoolean(KEY_BATCHED_RENDERING, isBatchedRenderingDefault()));
+        switchFreePlacement.setChecked(prefs.getBoolean(KEY_FREE_PLACEMENT, false));
+        switchJigsawShapes.setChecked(prefs.getBoolean(KEY_JIGSAW_SHAPES, false));
+        switchRegionDecode.setChecked(prefs.getBoolean(KEY_REGION_DECODE, false));
 
         // Load volumes
         int musicVolume = prefs.getInt(KEY_MUSIC_VOLUME, 70);
@@ -154,6 +179,11 @@ public class SettingsActivity extends AppCompatActivity {
         originalVibration = switchVibration.isChecked();
         originalHints = switchHints.isChecked();
         originalAutoSave = switchAutoSave.isChecked();
+        originalRenderThread = switchRenderThread.isChecked();
+        originalBatchedRendering = switchBatchedRendering.isChecked();
+        originalFreePlacement = switchFreePlacement.isChecked();
+        originalJigsawShapes = switchJigsawShapes.isChecked();
+        originalRegionDecode = switchRegionDecode.isChecked();
         originalMusicVolume = seekBarMusic.getProgress();
         originalSoundVolume = seekBarSound.getProgress();
         originalLanguage = prefs.getString(KEY_LANGUAGE, "en");
@@ -185,6 +215,11 @@ public class SettingsActivity extends AppCompatActivity {
         switchVibration.setOnCheckedChangeListener((buttonView, isChecked) -> hasChanges = true);
         switchHints.setOnCheckedChangeListener((buttonView, isChecked) -> hasChanges = true);
         switchAutoSave.setOnCheckedChangeListener((buttonView, isChecked) -> hasChanges = true);
+        switchRenderThread.setOnCheckedChangeListener((buttonView, isChecked) -> hasChanges = true);
+        switchBatchedRendering.setOnCheckedChangeListener((buttonView, isChecked) -> hasChanges = true);
+        switchFreePlacement.setOnCheckedChangeListener((buttonView, isChecked) -> hasChanges = true);
+        switchJigsawShapes.setOnCheckedChangeListener((buttonView, isChecked) -> hasChanges = true);
+        switchRegionDecode.setOnCheckedChangeListener((buttonView, isChecked) -> hasChanges = true);
 
         // SeekBar listeners
         seekBarMusic.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
@@ -251,6 +286,11 @@ public class SettingsActivity extends AppCompatActivity {
         editor.putBoolean(KEY_VIBRATION_ENABLED, switchVibration.isChecked());
         editor.putBoolean(KEY_SHOW_HINTS, switchHints.isChecked());
         editor.putBoolean(KEY_AUTO_SAVE, switchAutoSave.isChecked());
+        editor.putBoolean(KEY_RENDER_THREAD, switchRenderThread.isChecked());
+        editor.putBoolean(KEY_BATCHED_RENDERING, switchBatchedRendering.isChecked());
+        editor.putBoolean(KEY_FREE_PLACEMENT, switchFreePlacement.isChecked());
+        editor.putBoolean(KEY_JIGSAW_SHAPES, switchJigsawShapes.isChecked());
+        editor.putBoolean(KEY_REGION_DECODE, switchRegionDecode.isChecked());
 
         editor.putInt(KEY_MUSIC_VOLUME, seekBarMusic.getProgress());
         editor.putInt(KEY_SOUND_VOLUME, seekBarSound.getProgress());
@@ -288,6 +328,11 @@ public class SettingsActivity extends AppCompatActivity {
         editor.putBoolean(KEY_VIBRATION_ENABLED, originalVibration);
         editor.putBoolean(KEY_SHOW_HINTS, originalHints);
         editor.putBoolean(KEY_AUTO_SAVE, originalAutoSave);
+        editor.putBoolean(KEY_RENDER_THREAD, originalRenderThread);
+        editor.putBoolean(KEY_BATCHED_RENDERING, originalBatchedRendering);
+        editor.putBoolean(KEY_FREE_PLACEMENT, originalFreePlacement);
+        editor.putBoolean(KEY_JIGSAW_SHAPES, originalJigsawShapes);
+        editor.putBoolean(KEY_REGION_DECODE, originalRegionDecode);
         editor.putInt(KEY_MUSIC_VOLUME, originalMusicVolume);
         editor.putInt(KEY_SOUND_VOLUME, originalSoundVolume);
         editor.putString(KEY_LANGUAGE, originalLanguage);
@@ -311,6 +356,11 @@ public class SettingsActivity extends AppCompatActivity {
         switchVibration.setChecked(true);
         switchHints.setChecked(true);
         switchAutoSave.setChecked(true);
+        switchRenderThread.setChecked(false);
+        switchBatchedRendering.setChecked(isBatchedRenderingDefault());
+        switchFreePlacement.setChecked(false);
+        switchJigsawShapes.setChecked(false);
+        switchRegionDecode.setChecked(false);
 
         seekBarMusic.setProgress(70);
         seekBarSound.setProgress(80);
@@ -406,6 +456,36 @@ public class SettingsActivity extends AppCompatActivity {
         return prefs.getBoolean(KEY_AUTO_SAVE, true);
     }
 
+    public static boolean isRenderThreadEnabled(android.content.Context context) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+        return prefs.getBoolean(KEY_RENDER_THREAD, false);
+    }
+
+    public static boolean isBatchedRenderingEnabled(android.content.Context context) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+        return prefs.getBoolean(KEY_BATCHED_RENDERING, isBatchedRenderingDefault());
+    }
+
+    // Mặc định bật trên API 29+, nơi hardware canvas hỗ trợ drawVertices
+    private static boolean isBatchedRenderingDefault() {
+        return android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.Q;
+    }
+
+    public static boolean isFreePlacementEnabled(android.content.Context context) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+        return prefs.getBoolean(KEY_FREE_PLACEMENT, false);
+    }
+
+    public static boolean isJigsawShapesEnabled(android.content.Context context) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+        return prefs.getBoolean(KEY_JIGSAW_SHAPES, false);
+    }
+
+    public static boolean isRegionDecodeEnabled(android.content.Context context) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+        return prefs.getBoolean(KEY_REGION_DECODE, false);
+    }
+
     public static String getLanguage(android.content.Context context) {
         SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
         return prefs.getString(KEY_LANGUAGE, "en");
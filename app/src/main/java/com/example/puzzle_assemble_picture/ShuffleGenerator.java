@@ -0,0 +1,124 @@
+package com.example.puzzle_assemble_picture;
+
+import java.util.Random;
+
+/**
+ * Sinh board xáo có kiểm soát độ khó từ một seed long (không phụ thuộc Android).
+ *
+ * Board sinh ra có đúng correctPieces piece nằm sẵn đúng chỗ (0 = derangement) và phần còn lại chia
+ * thành đúng cycleCount chu trình, mỗi chu trình dài ít nhất 2. Số swap tối thiểu để giải là
+ * (số piece sai chỗ - cycleCount): nhiều chu trình ngắn dễ hơn một chu trình dài. Cùng seed + cùng
+ * tham số luôn cho cùng board, nên MoveJournal chỉ cần lưu seed để dựng lại. O(n).
+ */
+public class ShuffleGenerator {
+    private final int gridSize;
+    private final boolean rotationEnabled;
+    private final int correctPieces;
+    private final int cycleCount;
+
+    /**
+     * @param correctPieces số piece đúng chỗ lúc bắt đầu (bị giới hạn để còn ít nhất 2 piece sai chỗ)
+     * @param cycleCount    số chu trình của phần sai chỗ (bị giới hạn trong [1, số piece sai chỗ / 2])
+     */
+    public ShuffleGenerator(int gridSize, boolean rotationEnabled, int correctPieces, int cycleCount) {
+        int count = gridSize * gridSize;
+        int correct = count < 2 ? count : Math.max(0, Math.min(correctPieces, count - 2));
+        int misplaced = count - correct;
+
+        this.gridSize = gridSize;
+        this.rotationEnabled = rotationEnabled;
+        this.correctPieces = correct;
+        this.cycleCount = misplaced == 0 ? 0 : Math.max(1, Math.min(cycleCount, misplaced / 2));
+    }
+
+    /**
+     * Độ khó theo tỉ lệ, không phụ thuộc kích thước grid.
+     *
+     * @param correctFraction phần piece đúng chỗ lúc bắt đầu; > 0 thì có ít nhất 1 piece
+     * @param cycleDensity    1 = toàn chu trình độ dài 2 (dễ nhất), 0 = một chu trình dài duy nhất
+     */
+    public static ShuffleGenerator forDifficulty(int gridSize, boolean rotationEnabled,
+                                                 float correctFraction, float cycleDensity) {
+        int count = gridSize * gridSize;
+        int correct = correctFraction > 0 ? Math.max(1, Math.round(count * correctFraction)) : 0;
+        int cycles = Math.round((count - correct) / 2f * cycleDensity);
+        return new ShuffleGenerator(gridSize, rotationEnabled, correct, cycles);
+    }
+
+    public int getGridSize() {
+        return gridSize;
+    }
+
+    public boolean isRotationEnabled() {
+        return rotationEnabled;
+    }
+
+    public int getCorrectPieces() {
+        return correctPieces;
+    }
+
+    public int getCycleCount() {
+        return cycleCount;
+    }
+
+    /**
+     * Số swap tối thiểu để giải board sinh ra (chưa tính các lần xoay).
+     */
+    public int getMinSwaps() {
+        return gridSize * gridSize - correctPieces - cycleCount;
+    }
+
+    /**
+     * Ghi board xáo từ seed: cellsOut[cell] = piece, rotationsOut[piece] = số lần xoay 90°.
+     */
+    public void generate(long seed, int[] cellsOut, byte[] rotationsOut) {
+        int count = gridSize * gridSize;
+        Random random = new Random(seed);
+
+        // Thứ tự ngẫu nhiên của các cell (Fisher-Yates): phần đầu đứng yên, phần sau cắt thành chu trình
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+            rotationsOut[i] = 0;
+        }
+        for (int i = count - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int cell = order[i];
+            order[i] = order[j];
+            order[j] = cell;
+        }
+
+        for (int i = 0; i < correctPieces; i++) {
+            cellsOut[order[i]] = order[i];
+        }
+        if (cycleCount == 0) {
+            return;
+        }
+
+        // Mỗi chu trình dài 2, phần dư chia ngẫu nhiên từng đơn vị
+        int[] lengths = new int[cycleCount];
+        for (int i = 0; i < cycleCount; i++) {
+            lengths[i] = 2;
+        }
+        for (int extra = count - correctPieces - 2 * cycleCount; extra > 0; extra--) {
+            lengths[random.nextInt(cycleCount)]++;
+        }
+
+        // Cell order[k] chứa piece order[k + 1], cell cuối của đoạn chứa piece của cell đầu
+        int start = correctPieces;
+        for (int length : lengths) {
+            int end = start + length - 1;
+            for (int k = start; k < end; k++) {
+                cellsOut[order[k]] = order[k + 1];
+            }
+            cellsOut[order[end]] = order[start];
+            start = end + 1;
+        }
+
+        if (rotationEnabled) {
+            for (int i = correctPieces; i < count; i++) {
+                rotationsOut[order[i]] = (byte) random.nextInt(4);
+            }
+        }
+    }
+}
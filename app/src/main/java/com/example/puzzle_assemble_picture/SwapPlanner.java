@@ -0,0 +1,133 @@
+package com.example.puzzle_assemble_picture;
+
+import java.util.Arrays;
+
+/**
+ * Lên kế hoạch swap cho các power-up dựa trên phân rã chu trình của hoán vị board (không phụ thuộc Android).
+ *
+ * Cell c chứa piece cells[c] mà đích là cell cells[c]; đi theo c -> cells[c] -> ... sẽ quay về c nên
+ * board là hợp các chu trình rời nhau. Đưa k cell đích (nằm trong chu trình dài L) về đúng chỗ cần
+ * ít nhất k swap, hoặc L - 1 nếu cả chu trình đều là đích (swap cuối sửa cùng lúc 2 cell). Planner
+ * sinh đúng số swap đó trong O(n), không mô phỏng trên bản sao board.
+ *
+ * Mỗi swap {from, to} nghĩa là đưa piece ở from về cell đích to của nó (PuzzleBoard.applySwapPlan);
+ * {c, c} là dựng thẳng piece đã đúng cell nhưng bị xoay. Cell sai chỗ không bao giờ bị khoá (cell
+ * khoá luôn đúng) nên mọi swap trong kế hoạch đều hợp lệ.
+ */
+public class SwapPlanner {
+    private final int[] targetStamp;
+    private final int[] visitStamp;
+    private final int[] cycle;
+    private int stamp;
+
+    public SwapPlanner(int cellCount) {
+        targetStamp = new int[cellCount];
+        visitStamp = new int[cellCount];
+        cycle = new int[cellCount];
+    }
+
+    /**
+     * Kế hoạch tối thiểu đưa đúng piece (và đúng chiều) vào mọi cell trong targets.
+     *
+     * @param plan nhận các cặp {from, to} liên tiếp, cần ít nhất 2 * số cell của board
+     * @return số swap đã ghi
+     */
+    public int planInto(PuzzleBoard board, int[] targets, int[] plan) {
+        nextStamp();
+        for (int cell : targets) {
+            targetStamp[cell] = stamp;
+        }
+
+        int swaps = 0;
+        for (int target : targets) {
+            if (visitStamp[target] == stamp) {
+                continue;
+            }
+            int piece = board.pieceAt(target);
+            if (piece == target) {
+                visitStamp[target] = stamp;
+                if (board.getRotation(piece) != 0) {
+                    swaps = emit(plan, swaps, target, target);
+                }
+                continue;
+            }
+            swaps = planCycle(board, target, plan, swaps);
+        }
+        return swaps;
+    }
+
+    /**
+     * Một swap cho auto solve: ưu tiên chu trình độ dài 2 (một swap đưa cả 2 piece về đúng chỗ),
+     * nếu không có thì piece sai chỗ / bị xoay đầu tiên.
+     *
+     * @return 1 nếu đã ghi {from, to} vào plan, 0 nếu board đã đúng hết
+     */
+    public int planAutoSolve(PuzzleBoard board, int[] plan) {
+        int fallback = -1;
+        for (int cell = 0; cell < board.getCellCount(); cell++) {
+            if (board.isCorrect(cell)) {
+                continue;
+            }
+            int piece = board.pieceAt(cell);
+            // piece về cell của nó và piece ở đó về đây; cả 2 đúng nếu piece đổi về không bị xoay
+            if (piece != cell && board.pieceAt(piece) == cell && board.getRotation(cell) == 0) {
+                return emit(plan, 0, cell, piece);
+            }
+            if (fallback < 0) {
+                fallback = cell;
+            }
+        }
+        return fallback < 0 ? 0 : emit(plan, 0, fallback, board.pieceAt(fallback));
+    }
+
+    /**
+     * Sửa các cell đích trong chu trình chứa start. Neo tại một cell không phải đích nếu có: mỗi đích
+     * gặp trên đường đi tốn đúng 1 swap với neo hiện tại (đích bị tách khỏi chu trình). Nếu cả chu
+     * trình là đích thì neo là start và swap cuối sửa cả neo.
+     */
+    private int planCycle(PuzzleBoard board, int start, int[] plan, int swaps) {
+        int length = 0;
+        int anchorIndex = 0;
+        boolean hasFreeAnchor = false;
+        int cell = start;
+        do {
+            visitStamp[cell] = stamp;
+            if (!hasFreeAnchor && targetStamp[cell] != stamp) {
+                hasFreeAnchor = true;
+                anchorIndex = length;
+            }
+            cycle[length++] = cell;
+            cell = board.pieceAt(cell);
+        } while (cell != start);
+
+        int anchor = cycle[anchorIndex];
+        for (int i = 1; i < length; i++) {
+            int next = cycle[(anchorIndex + i) % length];
+            if (targetStamp[next] == stamp) {
+                swaps = emit(plan, swaps, anchor, next);
+            } else {
+                anchor = next;
+            }
+        }
+
+        // Cả chu trình là đích: piece cuối cùng về neo không đi qua applySwapPlan nên chưa được dựng thẳng
+        if (!hasFreeAnchor && board.getRotation(start) != 0) {
+            swaps = emit(plan, swaps, start, start);
+        }
+        return swaps;
+    }
+
+    private static int emit(int[] plan, int swaps, int from, int to) {
+        plan[swaps * 2] = from;
+        plan[swaps * 2 + 1] = to;
+        return swaps + 1;
+    }
+
+    private void nextStamp() {
+        if (++stamp == Integer.MAX_VALUE) {
+            Arrays.fill(targetStamp, 0);
+            Arrays.fill(visitStamp, 0);
+            stamp = 1;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.puzzle_assemble_picture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Kiểm tra toàn bộ state của PuzzleBoard bằng cách quét lại từ đầu, để so với các counter / nhóm mà
+ * board cập nhật từng bước.
+ */
+final class BoardInvariants {
+    private BoardInvariants() {
+    }
+
+    static void assertConsistent(PuzzleBoard board) {
+        int cellCount = board.getCellCount();
+        boolean[] seen = new boolean[cellCount];
+        int correct = 0;
+        int locked = 0;
+        for (int cell = 0; cell < cellCount; cell++) {
+            int piece = board.pieceAt(cell);
+            assertTrue("Piece " + piece + " appears twice", !seen[piece]);
+            seen[piece] = true;
+            assertEquals("cellOf is not the inverse of pieceAt", cell, board.cellOf(piece));
+
+            boolean isCorrect = piece == cell && board.getRotation(piece) == 0;
+            assertEquals(isCorrect, board.isCorrect(cell));
+            if (isCorrect) {
+                correct++;
+            }
+            if (board.isLocked(cell)) {
+                locked++;
+                assertTrue("Locked cell " + cell + " holds a misplaced piece", isCorrect);
+            }
+        }
+        assertEquals("correct count", correct, board.getCorrectCount());
+        assertEquals("locked count", locked, board.getLockedCount());
+
+        if (board.isAutoConnectEnabled()) {
+            assertSameGroups(board);
+        }
+    }
+
+    /**
+     * Nhóm của board phải đúng bằng các thành phần liên thông dựng lại từ đầu theo vị trí hiện tại.
+     */
+    static void assertSameGroups(PuzzleBoard board) {
+        PieceGroups expected = new PieceGroups(board.getGridSize());
+        int cellCount = board.getCellCount();
+        for (int cell = 0; cell < cellCount; cell++) {
+            expected.connectAround(board, cell);
+        }
+        for (int a = 0; a < cellCount; a++) {
+            assertEquals("group size of " + a, expected.groupSize(a), board.groupSize(a));
+            for (int b = a + 1; b < cellCount; b++) {
+                assertEquals("pieces " + a + " and " + b, expected.sameGroup(a, b), board.sameGroup(a, b));
+            }
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.puzzle_assemble_picture;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+public class MoveJournalTest {
+
+    @Test
+    public void undoAndRedoWalkThroughEachStep() {
+        PuzzleBoard board = new PuzzleBoard(4, true, true, true);
+        board.shuffle(99L);
+        Random random = new Random(5);
+        List<State> history = new ArrayList<>();
+        history.add(new State(board));
+
+        for (int step = 0; step < 40; step++) {
+            if (applyRandomStep(board, random)) {
+                history.add(new State(board));
+            }
+        }
+
+        for (int i = history.size() - 2; i >= 0; i--) {
+            assertTrue(board.undo());
+            history.get(i).assertMatches(board);
+            BoardInvariants.assertConsistent(board);
+        }
+        assertFalse(board.canUndo());
+        assertFalse(board.undo());
+
+        for (int i = 1; i < history.size(); i++) {
+            assertTrue(board.redo());
+            history.get(i).assertMatches(board);
+            BoardInvariants.assertConsistent(board);
+        }
+        assertFalse(board.canRedo());
+        assertFalse(board.redo());
+    }
+
+    @Test
+    public void newStepAfterUndoDropsRedo() {
+        PuzzleBoard board = new PuzzleBoard(3, false, true);
+        board.swapCells(0, 1);
+        board.swapCells(2, 3);
+        assertTrue(board.undo());
+        assertTrue(board.canRedo());
+
+        board.swapCells(4, 5);
+        assertFalse(board.canRedo());
+        assertEquals(2, board.getJournal().getSize());
+        assertTrue(board.undo());
+        assertTrue(board.undo());
+        assertFalse(board.canUndo());
+        assertTrue(board.isComplete());
+    }
+
+    @Test
+    public void rebuildFromJournalMatchesLiveBoard() {
+        Random random = new Random(11);
+        for (int round = 0; round < 50; round++) {
+            int gridSize = 3 + random.nextInt(6);
+            PuzzleBoard board = new PuzzleBoard(gridSize, random.nextBoolean(), true, random.nextBoolean());
+            board.shuffle(random.nextLong());
+            for (int step = 0; step < 80; step++) {
+                applyRandomStep(board, random);
+            }
+            // Cursor giữa buffer: phần redo không được áp dụng lại
+            for (int i = random.nextInt(10); i > 0; i--) {
+                board.undo();
+            }
+
+            State live = new State(board);
+            board.rebuildFromJournal();
+            live.assertMatches(board);
+            BoardInvariants.assertConsistent(board);
+            BoardInvariants.assertSameGroups(board);
+        }
+    }
+
+    @Test
+    public void evictionFoldsSeededStepsIntoBase() {
+        PuzzleBoard board = new PuzzleBoard(4, false, true);
+        board.shuffle(2024L);
+        assertEvictionKeepsHistory(board);
+    }
+
+    @Test
+    public void evictionFoldsStepsIntoLoadedBase() {
+        PuzzleBoard board = new PuzzleBoard(4, false, true);
+        board.shuffle(7L);
+        board.swapCells(0, 1);
+        // Như game vừa load: gốc là mảng, không phải seed
+        board.resetJournal();
+        assertEvictionKeepsHistory(board);
+    }
+
+    /**
+     * Ghi nhiều bước 1 entry hơn sức chứa ring buffer: bước cũ nhất bị gộp vào gốc, buffer không vượt
+     * MAX_ENTRIES, undo dừng đúng ở ranh giới đã gộp và dựng lại từ journal vẫn ra board hiện tại.
+     */
+    private static void assertEvictionKeepsHistory(PuzzleBoard board) {
+        MoveJournal journal = board.getJournal();
+        int cellCount = board.getCellCount();
+        int steps = MoveJournal.MAX_ENTRIES + 1500;
+        Random random = new Random(3);
+        State[] recent = new State[steps + 1];
+        recent[0] = new State(board);
+        for (int step = 1; step <= steps; step++) {
+            int a = random.nextInt(cellCount);
+            int b = (a + 1 + random.nextInt(cellCount - 1)) % cellCount;
+            board.swapCells(a, b);
+            recent[step] = new State(board);
+        }
+
+        assertEquals(MoveJournal.MAX_ENTRIES, journal.getSize());
+        assertEquals(MoveJournal.MAX_ENTRIES * 4, journal.getBufferBytes());
+
+        State live = recent[steps];
+        board.rebuildFromJournal();
+        live.assertMatches(board);
+
+        int undone = 0;
+        while (board.undo()) {
+            undone++;
+        }
+        assertEquals(MoveJournal.MAX_ENTRIES, undone);
+        recent[steps - undone].assertMatches(board);
+        BoardInvariants.assertConsistent(board);
+
+        // Gốc sau khi gộp chính là trạng thái tại ranh giới
+        int[] baseCells = new int[cellCount];
+        byte[] baseRotations = new byte[cellCount];
+        BitSet baseLocked = new BitSet(cellCount);
+        journal.copyBase(baseCells, baseRotations, baseLocked);
+        assertArrayEquals(board.copyCells(), baseCells);
+
+        while (board.redo()) {
+            undone--;
+        }
+        assertEquals(0, undone);
+        live.assertMatches(board);
+        BoardInvariants.assertConsistent(board);
+    }
+
+    /**
+     * Một thao tác ngẫu nhiên của người chơi / power-up; true nếu nó mở bước mới trong journal.
+     */
+    private static boolean applyRandomStep(PuzzleBoard board, Random random) {
+        int cellCount = board.getCellCount();
+        int a = random.nextInt(cellCount);
+        int b = random.nextInt(cellCount);
+        int cursorBefore = board.getJournal().getCursor();
+        switch (random.nextInt(5)) {
+            case 0:
+            case 1:
+                board.move(a, b);
+                break;
+            case 2:
+                int[] group = new int[cellCount];
+                int count = board.collectGroupCells(board.pieceAt(a), group);
+                board.moveBlock(group, count, random.nextInt(3) - 1, random.nextInt(3) - 1);
+                break;
+            case 3:
+                board.rotate(a);
+                break;
+            default:
+                int[] plan = new int[cellCount * 2];
+                board.applySwapPlan(plan, new SwapPlanner(cellCount).planAutoSolve(board, plan));
+                break;
+        }
+        return board.getJournal().getCursor() > cursorBefore;
+    }
+
+    private static final class State {
+        final int[] cells;
+        final byte[] rotations;
+        final BitSet locked;
+
+        State(PuzzleBoard board) {
+            cells = board.copyCells();
+            rotations = board.copyRotations();
+            locked = board.copyLocked();
+        }
+
+        void assertMatches(PuzzleBoard board) {
+            assertArrayEquals(cells, board.copyCells());
+            assertArrayEquals(rotations, board.copyRotations());
+            assertEquals(locked, board.copyLocked());
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.puzzle_assemble_picture;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class PieceGroupsTest {
+
+    @Test
+    public void unionMergesGroupsAndLinksMembers() {
+        PieceGroups groups = new PieceGroups(4);
+
+        assertTrue(groups.union(0, 1));
+        assertTrue(groups.union(2, 3));
+        assertFalse(groups.sameGroup(1, 2));
+        assertTrue(groups.union(1, 3));
+        assertFalse(groups.union(0, 2));
+
+        assertTrue(groups.sameGroup(0, 2));
+        assertEquals(4, groups.groupSize(3));
+        assertEquals(1, groups.groupSize(4));
+        assertArrayEquals(new int[]{0, 1, 2, 3}, sortedMembers(groups, 2));
+
+        groups.reset();
+        assertEquals(1, groups.groupSize(0));
+        assertArrayEquals(new int[]{0}, sortedMembers(groups, 0));
+    }
+
+    @Test
+    public void connectAroundJoinsOnlyCorrectNeighbours() {
+        PuzzleBoard board = new PuzzleBoard(3, false, false);
+        PieceGroups groups = new PieceGroups(3);
+
+        // Ô giữa đúng vị trí tương đối với cả 4 hàng xóm
+        assertEquals(4, groups.connectAround(board, 4));
+        assertEquals(5, groups.groupSize(4));
+        assertFalse(groups.sameGroup(4, 0));
+
+        // Piece 2 (cuối hàng 0) và 3 (đầu hàng 1) liền nhau theo index nhưng không kề nhau trong ảnh
+        PuzzleBoard shifted = new PuzzleBoard(3, false, false);
+        shifted.swapCells(0, shifted.cellOf(2));
+        shifted.swapCells(1, shifted.cellOf(3));
+        PieceGroups shiftedGroups = new PieceGroups(3);
+        shiftedGroups.connectAround(shifted, 0);
+        assertFalse(shiftedGroups.sameGroup(2, 3));
+    }
+
+    @Test
+    public void rebuildGroupSplitsMovedMembers() {
+        PuzzleBoard board = new PuzzleBoard(3, false, false);
+        PieceGroups groups = new PieceGroups(3);
+        for (int cell = 0; cell < 9; cell++) {
+            groups.connectAround(board, cell);
+        }
+        assertEquals(9, groups.groupSize(0));
+
+        // Đổi chỗ 2 góc: 0 và 8 rời nhóm, 7 piece còn lại vẫn liền nhau
+        board.swapCells(0, 8);
+        groups.rebuildGroup(board, 4);
+        assertEquals(1, groups.groupSize(0));
+        assertEquals(1, groups.groupSize(8));
+        assertEquals(7, groups.groupSize(4));
+        assertArrayEquals(new int[]{1, 2, 3, 4, 5, 6, 7}, sortedMembers(groups, 1));
+    }
+
+    @Test
+    public void rebuildGroupSplitsIntoSeparateParts() {
+        PuzzleBoard board = new PuzzleBoard(3, false, false);
+        PieceGroups groups = new PieceGroups(3);
+        for (int cell = 0; cell < 9; cell++) {
+            groups.connectAround(board, cell);
+        }
+
+        // Xoay vòng cột giữa lên một ô (cell 1, 4, 7 giữ piece 4, 7, 1): cột trái và cột phải mất nối
+        // với nhau, 4 và 7 vẫn đúng vị trí tương đối nên giữ một nhóm
+        board.swapCells(1, 4);
+        board.swapCells(4, 7);
+        groups.rebuildGroup(board, 0);
+        assertArrayEquals(new int[]{0, 3, 6}, sortedMembers(groups, 0));
+        assertArrayEquals(new int[]{2, 5, 8}, sortedMembers(groups, 2));
+        assertArrayEquals(new int[]{4, 7}, sortedMembers(groups, 7));
+        assertEquals(1, groups.groupSize(1));
+    }
+
+    @Test
+    public void boardMergesAndSplitsGroupsAsPiecesMove() {
+        PuzzleBoard board = new PuzzleBoard(4, false, true, true);
+        assertEquals(16, board.groupSize(0));
+
+        // Xoay tách piece khỏi nhóm, xoay đủ vòng thì nối lại
+        assertTrue(board.rotate(5));
+        assertEquals(1, board.groupSize(5));
+        assertEquals(15, board.groupSize(0));
+        board.rotate(5);
+        board.rotate(5);
+        board.rotate(5);
+        assertEquals(16, board.groupSize(5));
+
+        // Đổi chỗ rồi đổi lại: tách rồi gộp
+        board.swapCells(0, 15);
+        assertEquals(1, board.groupSize(0));
+        assertEquals(1, board.groupSize(15));
+        BoardInvariants.assertSameGroups(board);
+        board.swapCells(0, 15);
+        assertEquals(16, board.groupSize(0));
+        BoardInvariants.assertSameGroups(board);
+    }
+
+    private static int[] sortedMembers(PieceGroups groups, int piece) {
+        int[] out = new int[groups.groupSize(piece)];
+        assertEquals(out.length, groups.collectMembers(piece, out));
+        Arrays.sort(out);
+        return out;
+    }
+}
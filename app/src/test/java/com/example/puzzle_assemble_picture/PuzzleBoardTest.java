@@ -0,0 +1,193 @@
+package com.example.puzzle_assemble_picture;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class PuzzleBoardTest {
+
+    @Test
+    public void newBoardIsSolvedAndUnlocked() {
+        PuzzleBoard board = new PuzzleBoard(4, true, true);
+
+        assertTrue(board.isComplete());
+        assertEquals(16, board.getCorrectCount());
+        assertEquals(0, board.getLockedCount());
+        assertEquals(16, board.groupSize(0));
+        BoardInvariants.assertConsistent(board);
+    }
+
+    @Test
+    public void swapUpdatesCountersAndLocksOnlyCorrectPieces() {
+        PuzzleBoard board = new PuzzleBoard(4, true, true);
+
+        board.swapCells(0, 5);
+        assertEquals(14, board.getCorrectCount());
+        assertEquals(2, board.getRemainingCount());
+        assertEquals(0, board.lockCorrectPieces());
+        BoardInvariants.assertConsistent(board);
+
+        board.swapCells(0, 5);
+        assertTrue(board.isComplete());
+        assertEquals(2, board.lockCorrectPieces());
+        assertTrue(board.isLocked(0));
+        assertTrue(board.isLocked(5));
+        assertEquals(2, board.getLockedCount());
+        BoardInvariants.assertConsistent(board);
+    }
+
+    @Test
+    public void lockedCellsRejectMovesButForcedSwapUnlocks() {
+        PuzzleBoard board = new PuzzleBoard(3, false, true);
+        assertTrue(board.lockIfCorrect(0));
+
+        assertFalse(board.canMove(0, 1));
+        assertFalse(board.move(0, 1));
+        assertFalse(board.move(1, 0));
+        assertEquals(0, board.pieceAt(0));
+
+        assertTrue(board.move(1, 2));
+        assertEquals(7, board.getCorrectCount());
+
+        // Solve / power-up đi qua swapCells: cell khoá bị bỏ khoá thay vì giữ piece sai
+        board.swapCells(0, 1);
+        assertFalse(board.isLocked(0));
+        assertEquals(0, board.getLockedCount());
+        BoardInvariants.assertConsistent(board);
+    }
+
+    @Test
+    public void moveBlockShiftsBlockAndFillsVacatedCells() {
+        PuzzleBoard board = new PuzzleBoard(4, false, false);
+
+        // Khối {0, 1} sang phải 1 ô: piece ở cell 2 bị đẩy về cell 0 vừa trống
+        assertTrue(board.moveBlock(new int[]{0, 1}, 2, 0, 1));
+        assertEquals(2, board.pieceAt(0));
+        assertEquals(0, board.pieceAt(1));
+        assertEquals(1, board.pieceAt(2));
+        assertEquals(3, board.pieceAt(3));
+        assertEquals(13, board.getCorrectCount());
+        BoardInvariants.assertConsistent(board);
+
+        // Khối {4, 8} (cột 0) xuống 1 ô
+        assertTrue(board.moveBlock(new int[]{4, 8}, 2, 1, 0));
+        assertEquals(12, board.pieceAt(4));
+        assertEquals(4, board.pieceAt(8));
+        assertEquals(8, board.pieceAt(12));
+        BoardInvariants.assertConsistent(board);
+    }
+
+    @Test
+    public void moveBlockRejectsOffBoardAndLockedTargets() {
+        PuzzleBoard board = new PuzzleBoard(4, false, false);
+        int[] before = board.copyCells();
+
+        assertFalse(board.moveBlock(new int[]{3}, 1, 0, 1));
+        assertFalse(board.moveBlock(new int[]{12, 13}, 2, 1, 0));
+        assertTrue(board.lockIfCorrect(2));
+        assertFalse(board.moveBlock(new int[]{0, 1}, 2, 0, 1));
+        assertFalse(board.moveBlock(new int[]{0}, 1, 0, 0));
+
+        assertArrayEquals(before, board.copyCells());
+        BoardInvariants.assertConsistent(board);
+    }
+
+    @Test
+    public void moveBlockMovesWholeGroup() {
+        PuzzleBoard board = new PuzzleBoard(4, false, true);
+        board.shuffle(7L);
+        // Đưa piece 0, 1 về cạnh nhau ở hàng dưới cùng để thành một nhóm
+        board.swapCells(board.cellOf(0), 12);
+        board.swapCells(board.cellOf(1), 13);
+        assertTrue(board.sameGroup(0, 1));
+
+        int[] group = new int[16];
+        int count = board.collectGroupCells(0, group);
+        assertEquals(board.groupSize(0), count);
+        assertTrue(board.moveBlock(group, count, -1, 0));
+        assertEquals(8, board.cellOf(0));
+        assertEquals(9, board.cellOf(1));
+        assertTrue(board.sameGroup(0, 1));
+        BoardInvariants.assertConsistent(board);
+    }
+
+    @Test
+    public void shuffleClearsLocksAndRecountsFromGenerator() {
+        PuzzleBoard board = new PuzzleBoard(5, true, true);
+        board.lockCorrectCells(board.cornerCells());
+        assertEquals(4, board.getLockedCount());
+
+        ShuffleGenerator generator = new ShuffleGenerator(5, false, 6, 3);
+        board.setShuffleGenerator(generator);
+        board.shuffle(1234L);
+
+        assertEquals(0, board.getLockedCount());
+        assertEquals(6, board.getCorrectCount());
+        BoardInvariants.assertConsistent(board);
+
+        // Mọi cell được đánh dấu đã đổi: piece sẵn đúng chỗ được khoá ngay lần đầu
+        assertEquals(6, board.lockCorrectPieces());
+        BoardInvariants.assertConsistent(board);
+    }
+
+    @Test
+    public void randomOperationsKeepCountersLocksAndGroups() {
+        runRandomOperations(new Random(1), false);
+    }
+
+    @Test
+    public void randomOperationsWithRotationKeepCountersLocksAndGroups() {
+        runRandomOperations(new Random(2), true);
+    }
+
+    /**
+     * Chuỗi nước đi / khoá / xáo / xoay ngẫu nhiên trên nhiều cỡ board; sau mỗi bước state phải khớp
+     * với state quét lại từ đầu.
+     */
+    private static void runRandomOperations(Random random, boolean rotation) {
+        for (int round = 0; round < 150; round++) {
+            int gridSize = 3 + random.nextInt(6);
+            int cellCount = gridSize * gridSize;
+            PuzzleBoard board = new PuzzleBoard(gridSize, random.nextBoolean(), true, rotation);
+            board.shuffle(random);
+            int[] group = new int[cellCount];
+            int[] plan = new int[cellCount * 2];
+            SwapPlanner planner = new SwapPlanner(cellCount);
+
+            for (int step = 0; step < 60; step++) {
+                int a = random.nextInt(cellCount);
+                int b = random.nextInt(cellCount);
+                switch (random.nextInt(rotation ? 7 : 4)) {
+                    case 0:
+                        board.move(a, b);
+                        break;
+                    case 1:
+                        int count = board.collectGroupCells(board.pieceAt(a), group);
+                        board.moveBlock(group, count, random.nextInt(3) - 1, random.nextInt(3) - 1);
+                        break;
+                    case 2:
+                        board.lockCorrectPieces();
+                        break;
+                    case 3:
+                        board.shuffleCells(board.collectMisplacedCells(), random);
+                        break;
+                    case 4:
+                        board.rotate(a);
+                        break;
+                    case 5:
+                        board.applySwapPlan(plan, planner.planAutoSolve(board, plan));
+                        break;
+                    default:
+                        board.restoreRotation(board.pieceAt(a), random.nextInt(4));
+                        break;
+                }
+                BoardInvariants.assertConsistent(board);
+            }
+        }
+    }
+}
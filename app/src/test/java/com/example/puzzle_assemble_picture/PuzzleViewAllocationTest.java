@@ -0,0 +1,164 @@
+package com.example.puzzle_assemble_picture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Point;
+import android.os.SystemClock;
+import android.view.MotionEvent;
+import android.view.View;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Kéo một piece trên board 11x11 qua 1.000 frame (ACTION_MOVE + draw) và kiểm tra thread UI không
+ * cấp phát byte nào, để GC pause khi kéo không quay lại. Chạy cả ở zoom 1x và ở zoom sâu có tile
+ * pyramid (mỗi piece vẽ bằng tile level 2).
+ */
+@RunWith(RobolectricTestRunner.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+@Config(sdk = 33)
+public class PuzzleViewAllocationTest {
+    private static final int VIEW_WIDTH = 1080;
+    private static final int VIEW_HEIGHT = 1920;
+    private static final int GRID_SIZE = 11;
+    private static final int WARMUP_FRAMES = 200;
+    private static final int DRAG_FRAMES = 1000;
+    private static final float DEEP_ZOOM = 3.0f;
+    private static final long TILE_DECODE_TIMEOUT_MS = 10_000;
+
+    private PuzzleView view;
+    private Bitmap image;
+    private Bitmap target;
+    private Canvas canvas;
+
+    @Before
+    public void setUp() {
+        view = new PuzzleView(ApplicationProvider.getApplicationContext(), null);
+        view.measure(View.MeasureSpec.makeMeasureSpec(VIEW_WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(VIEW_HEIGHT, View.MeasureSpec.EXACTLY));
+        view.layout(0, 0, VIEW_WIDTH, VIEW_HEIGHT);
+
+        image = Bitmap.createBitmap(1024, 1024, Bitmap.Config.RGB_565);
+        image.eraseColor(Color.GRAY);
+
+        PuzzleConfig config = new PuzzleConfig();
+        config.gridSize = GRID_SIZE;
+        config.shuffleSeed = 42;
+        view.initPuzzle(image, config, null);
+
+        target = Bitmap.createBitmap(VIEW_WIDTH, VIEW_HEIGHT, Bitmap.Config.ARGB_8888);
+        canvas = new Canvas(target);
+    }
+
+    @After
+    public void tearDown() {
+        view.cleanup();
+        target.recycle();
+    }
+
+    @Test
+    public void dragFramesDoNotAllocate() {
+        // Board luôn nằm giữa view; chạm vào tâm cell (0, 0)
+        Point board = PuzzleView.measureBoard(VIEW_WIDTH, VIEW_HEIGHT, image.getWidth(), image.getHeight());
+        float startX = (VIEW_WIDTH - board.x) / 2f + board.x / GRID_SIZE / 2f;
+        float startY = (VIEW_HEIGHT - board.y) / 2f + board.y / GRID_SIZE / 2f;
+
+        assertDragDoesNotAllocate(startX, startY, 300f);
+    }
+
+    @Test
+    public void zoomedDragWithTilePyramidDoesNotAllocate() throws Exception {
+        view.attachHighResSource(newRegionDecoder());
+        PieceTilePyramid pyramid = view.getTilePyramid();
+        assertNotNull(pyramid);
+        view.setViewport(DEEP_ZOOM, 0f, 0f);
+        assertEquals(2, PieceTilePyramid.levelForScale(DEEP_ZOOM));
+
+        // Vẽ tới khi mọi piece trong viewport đã có tile: frame sau đó không còn request decode
+        long deadline = System.currentTimeMillis() + TILE_DECODE_TIMEOUT_MS;
+        do {
+            view.draw(canvas);
+            while (pyramid.getPendingCount() > 0) {
+                assertTrue("Tiles not decoded in time", System.currentTimeMillis() < deadline);
+                Thread.sleep(5);
+                ShadowLooper.idleMainLooper();
+            }
+            view.draw(canvas);
+        } while (pyramid.getPendingCount() > 0);
+
+        // Pan 0: tâm view là tâm board, tức tâm cell giữa; vòng kéo nhỏ để piece ở trong viewport
+        assertDragDoesNotAllocate(VIEW_WIDTH / 2f, VIEW_HEIGHT / 2f, 100f);
+        assertEquals(0, pyramid.getPendingCount());
+    }
+
+    private void assertDragDoesNotAllocate(float startX, float startY, float radius) {
+        long downTime = SystemClock.uptimeMillis();
+        MotionEvent down = MotionEvent.obtain(downTime, downTime, MotionEvent.ACTION_DOWN, startX, startY, 0);
+        view.onTouchEvent(down);
+        down.recycle();
+        assertEquals(PuzzleView.STATE_DRAGGING, drawAndGetState());
+
+        // Một MotionEvent dùng lại cho mọi frame, chỉ đổi toạ độ
+        MotionEvent move = MotionEvent.obtain(downTime, downTime, MotionEvent.ACTION_MOVE, startX, startY, 0);
+        for (int frame = 0; frame < WARMUP_FRAMES; frame++) {
+            dragFrame(move, startX, startY, radius, frame);
+        }
+
+        long before = allocatedBytes();
+        long overhead = allocatedBytes() - before;
+        before = allocatedBytes();
+        for (int frame = 0; frame < DRAG_FRAMES; frame++) {
+            dragFrame(move, startX, startY, radius, frame);
+        }
+        long allocated = allocatedBytes() - before - overhead;
+        move.recycle();
+
+        assertEquals(PuzzleView.STATE_DRAGGING, view.getInteractionState());
+        assertEquals("Bytes allocated over " + DRAG_FRAMES + " drag frames", 0, allocated);
+    }
+
+    private void dragFrame(MotionEvent move, float startX, float startY, float radius, int frame) {
+        // Vòng tròn qua điểm chạm, tâm cách nó radius sang phải: đi qua nhiều cell
+        double angle = frame * (Math.PI / 60);
+        move.setLocation(startX + radius + (float) (radius * Math.cos(angle)),
+                startY + (float) (radius * Math.sin(angle)));
+        view.onTouchEvent(move);
+        view.draw(canvas);
+    }
+
+    private BitmapRegionDecoder newRegionDecoder() throws IOException {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        image.compress(Bitmap.CompressFormat.PNG, 100, png);
+        byte[] bytes = png.toByteArray();
+        return BitmapRegionDecoder.newInstance(bytes, 0, bytes.length, false);
+    }
+
+    private int drawAndGetState() {
+        view.draw(canvas);
+        return view.getInteractionState();
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.puzzle_assemble_picture;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+/**
+ * Ghi một phiên chơi ngẫu nhiên bằng ReplayRecorder rồi chạy lại bằng ReplayPlayer: board chạy lại phải
+ * đi tới đúng trạng thái (cả khoá, xoay và lịch sử undo / redo) của board gốc.
+ */
+public class ReplayRoundTripTest {
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("replay", ".pzr");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void seededSessionReplaysToSameBoard() throws Exception {
+        Random random = new Random(11);
+        for (int round = 0; round < 60; round++) {
+            PuzzleBoard board = newBoard(random);
+            long seed = random.nextLong();
+            board.shuffle(seed);
+
+            ReplayRecorder recorder = new ReplayRecorder(file);
+            recorder.beginSeeded(board, seed);
+            assertSessionReplays(board, recorder, random);
+        }
+    }
+
+    @Test
+    public void snapshotSessionReplaysToSameBoard() throws Exception {
+        Random random = new Random(12);
+        for (int round = 0; round < 60; round++) {
+            PuzzleBoard board = newBoard(random);
+            board.shuffle(random.nextLong());
+            // Như game vừa load: vài nước đi và khoá trước khi bắt đầu ghi
+            for (int i = 0; i < 5; i++) {
+                board.move(random.nextInt(board.getCellCount()), random.nextInt(board.getCellCount()));
+                board.lockCorrectPieces();
+            }
+            board.resetJournal();
+
+            ReplayRecorder recorder = new ReplayRecorder(file);
+            recorder.beginSnapshot(board);
+            assertSessionReplays(board, recorder, random);
+        }
+    }
+
+    @Test
+    public void rejectsOtherFiles() {
+        try {
+            new ReplayPlayer(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5}));
+            fail("Expected IOException");
+        } catch (IOException expected) {
+            // Magic sai
+        }
+    }
+
+    private static PuzzleBoard newBoard(Random random) {
+        int gridSize = 2 + random.nextInt(9);
+        boolean rotation = random.nextBoolean();
+        PuzzleBoard board = new PuzzleBoard(gridSize, random.nextBoolean(), random.nextBoolean(), rotation);
+        board.setShuffleGenerator(ShuffleGenerator.forDifficulty(gridSize, rotation,
+                random.nextFloat() * 0.2f, random.nextFloat()));
+        return board;
+    }
+
+    /**
+     * Chơi ngẫu nhiên như PuzzleView (ghi event chỉ khi thao tác thành công, khoá sau mỗi thay đổi),
+     * đóng recorder rồi so board chạy lại với board gốc.
+     */
+    private void assertSessionReplays(PuzzleBoard board, ReplayRecorder recorder, Random random)
+            throws Exception {
+        int cellCount = board.getCellCount();
+        SwapPlanner planner = new SwapPlanner(cellCount);
+        int[] plan = new int[cellCount * 2];
+        int[] group = new int[cellCount];
+        int zoom = 1000;
+        int panX = 0;
+        int panY = 0;
+
+        for (int event = random.nextInt(400); event > 0; event--) {
+            int a = random.nextInt(cellCount);
+            int b = random.nextInt(cellCount);
+            switch (random.nextInt(12)) {
+                case 0:
+                case 1:
+                case 2:
+                    if (board.move(a, b)) {
+                        recorder.recordMove(a, b);
+                        board.lockCorrectPieces();
+                    }
+                    break;
+                case 3:
+                    int count = board.collectGroupCells(board.pieceAt(a), group);
+                    int dRow = random.nextInt(3) - 1;
+                    int dCol = random.nextInt(3) - 1;
+                    if (board.moveBlock(group, count, dRow, dCol)) {
+                        recorder.recordMoveBlock(a, dRow, dCol);
+                        board.lockCorrectPieces();
+                    }
+                    break;
+                case 4:
+                    if (board.rotate(a)) {
+                        recorder.recordRotate(a);
+                        board.lockCorrectPieces();
+                    }
+                    break;
+                case 5:
+                    int swaps = planner.planAutoSolve(board, plan);
+                    if (swaps > 0) {
+                        recorder.recordAction(ReplayRecorder.EVENT_AUTO_SOLVE);
+                        board.applySwapPlan(plan, swaps);
+                        board.lockCorrectPieces();
+                    }
+                    break;
+                case 6:
+                    solveTargets(board, recorder, planner, plan, board.cornerCells(),
+                            ReplayRecorder.EVENT_SOLVE_CORNERS);
+                    break;
+                case 7:
+                    solveTargets(board, recorder, planner, plan, board.edgeCells(),
+                            ReplayRecorder.EVENT_SOLVE_EDGES);
+                    break;
+                case 8:
+                    int[] misplaced = board.collectMisplacedCells();
+                    if (misplaced.length > 0) {
+                        long seed = random.nextLong();
+                        board.shuffleCells(misplaced, new Random(seed));
+                        recorder.recordShuffleRemaining(seed);
+                        board.lockCorrectPieces();
+                    }
+                    break;
+                case 9:
+                    if (board.undo()) {
+                        recorder.recordAction(ReplayRecorder.EVENT_UNDO);
+                    }
+                    break;
+                case 10:
+                    if (board.redo()) {
+                        recorder.recordAction(ReplayRecorder.EVENT_REDO);
+                    }
+                    break;
+                default:
+                    zoom = 1000 + random.nextInt(3000);
+                    panX = random.nextInt(2000) - 1000;
+                    panY = random.nextInt(2000) - 1000;
+                    recorder.recordViewport(zoom / 1000f, panX, panY);
+                    break;
+            }
+        }
+        recorder.close();
+        assertFalse(recorder.isActive());
+        ReplayRecorder.awaitWrites();
+
+        ReplayPlayer player;
+        try (InputStream in = new FileInputStream(file)) {
+            player = new ReplayPlayer(in);
+            player.playToEnd(false);
+        }
+        PuzzleBoard replayed = player.getBoard();
+        assertArrayEquals(board.copyCells(), replayed.copyCells());
+        assertArrayEquals(board.copyRotations(), replayed.copyRotations());
+        assertEquals(board.copyLocked(), replayed.copyLocked());
+        assertEquals(board.canUndo(), replayed.canUndo());
+        assertEquals(board.canRedo(), replayed.canRedo());
+        assertEquals(zoom, Math.round(player.getZoom() * 1000));
+        assertEquals(panX, player.getPanX());
+        assertEquals(panY, player.getPanY());
+        BoardInvariants.assertConsistent(replayed);
+    }
+
+    private static void solveTargets(PuzzleBoard board, ReplayRecorder recorder, SwapPlanner planner,
+                                     int[] plan, int[] targets, int eventType) {
+        int swaps = planner.planInto(board, targets, plan);
+        if (swaps > 0) {
+            recorder.recordAction(eventType);
+            board.applySwapPlan(plan, swaps);
+            board.lockCorrectCells(targets);
+            board.lockCorrectPieces();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.puzzle_assemble_picture;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class ShuffleGeneratorTest {
+
+    @Test
+    public void sameSeedGivesSameBoard() {
+        ShuffleGenerator generator = new ShuffleGenerator(6, true, 5, 4);
+        int[] cells = new int[36];
+        byte[] rotations = new byte[36];
+        int[] otherCells = new int[36];
+        byte[] otherRotations = new byte[36];
+
+        generator.generate(42L, cells, rotations);
+        // Mảng đầu ra bẩn từ lần trước không được ảnh hưởng kết quả
+        Arrays.fill(otherRotations, (byte) 3);
+        generator.generate(42L, otherCells, otherRotations);
+        assertArrayEquals(cells, otherCells);
+        assertArrayEquals(rotations, otherRotations);
+
+        generator.generate(43L, otherCells, otherRotations);
+        assertFalse(Arrays.equals(cells, otherCells));
+    }
+
+    @Test
+    public void boardHasExactFixedPointsAndCycles() {
+        Random random = new Random(12);
+        for (int round = 0; round < 2000; round++) {
+            int gridSize = 2 + random.nextInt(10);
+            int count = gridSize * gridSize;
+            boolean rotation = random.nextBoolean();
+            ShuffleGenerator generator = new ShuffleGenerator(gridSize, rotation,
+                    random.nextInt(count + 1), random.nextInt(count));
+            int correct = generator.getCorrectPieces();
+            int cycles = generator.getCycleCount();
+            assertTrue(correct <= count - 2);
+            assertTrue(cycles >= 1 && cycles <= (count - correct) / 2);
+            assertEquals(count - correct - cycles, generator.getMinSwaps());
+
+            int[] cells = new int[count];
+            byte[] rotations = new byte[count];
+            generator.generate(random.nextLong(), cells, rotations);
+
+            boolean[] seen = new boolean[count];
+            int fixedPoints = 0;
+            for (int cell = 0; cell < count; cell++) {
+                assertFalse("Piece " + cells[cell] + " appears twice", seen[cells[cell]]);
+                seen[cells[cell]] = true;
+                if (cells[cell] == cell) {
+                    fixedPoints++;
+                    // Piece đúng chỗ lúc bắt đầu không bị xoay
+                    assertEquals(0, rotations[cell]);
+                }
+                if (!rotation) {
+                    assertEquals(0, rotations[cells[cell]]);
+                }
+            }
+            assertEquals(correct, fixedPoints);
+            assertEquals(cycles, countCycles(cells));
+        }
+    }
+
+    @Test
+    public void parametersAreClamped() {
+        ShuffleGenerator solved = new ShuffleGenerator(4, false, 100, 100);
+        assertEquals(14, solved.getCorrectPieces());
+        assertEquals(1, solved.getCycleCount());
+        assertEquals(1, solved.getMinSwaps());
+
+        ShuffleGenerator derangement = new ShuffleGenerator(4, false, -3, 0);
+        assertEquals(0, derangement.getCorrectPieces());
+        assertEquals(1, derangement.getCycleCount());
+        assertEquals(15, derangement.getMinSwaps());
+
+        ShuffleGenerator pairs = new ShuffleGenerator(4, false, 0, 100);
+        assertEquals(8, pairs.getCycleCount());
+        assertEquals(8, pairs.getMinSwaps());
+    }
+
+    @Test
+    public void forDifficultyScalesWithGrid() {
+        ShuffleGenerator easy = ShuffleGenerator.forDifficulty(10, false, 0.5f, 1f);
+        assertEquals(50, easy.getCorrectPieces());
+        assertEquals(25, easy.getCycleCount());
+
+        ShuffleGenerator hard = ShuffleGenerator.forDifficulty(10, false, 0f, 0f);
+        assertEquals(0, hard.getCorrectPieces());
+        assertEquals(1, hard.getCycleCount());
+        assertEquals(99, hard.getMinSwaps());
+
+        // Tỉ lệ dương nhỏ vẫn cho ít nhất 1 piece đúng chỗ
+        assertEquals(1, ShuffleGenerator.forDifficulty(3, false, 0.01f, 0.5f).getCorrectPieces());
+    }
+
+    @Test
+    public void boardShuffledFromGeneratorMatchesItsTargets() {
+        ShuffleGenerator generator = new ShuffleGenerator(7, false, 10, 6);
+        PuzzleBoard board = new PuzzleBoard(7, false, true);
+        board.setShuffleGenerator(generator);
+        board.shuffle(5L);
+
+        assertEquals(10, board.getCorrectCount());
+        assertEquals(6, countCycles(board.copyCells()));
+        BoardInvariants.assertConsistent(board);
+
+        PuzzleBoard same = new PuzzleBoard(7, false, true);
+        same.setShuffleGenerator(generator);
+        same.shuffle(5L);
+        assertArrayEquals(board.copyCells(), same.copyCells());
+    }
+
+    /**
+     * Số chu trình dài hơn 1 của hoán vị cell -> piece.
+     */
+    private static int countCycles(int[] cells) {
+        boolean[] visited = new boolean[cells.length];
+        int cycles = 0;
+        for (int start = 0; start < cells.length; start++) {
+            if (visited[start] || cells[start] == start) {
+                continue;
+            }
+            cycles++;
+            int cell = start;
+            do {
+                visited[cell] = true;
+                cell = cells[cell];
+            } while (cell != start);
+        }
+        return cycles;
+    }
+}
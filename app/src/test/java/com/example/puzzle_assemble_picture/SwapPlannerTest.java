@@ -0,0 +1,219 @@
+package com.example.puzzle_assemble_picture;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class SwapPlannerTest {
+
+    @Test
+    public void fullBoardPlanIsMisplacedMinusCycles() {
+        Random random = new Random(7);
+        for (int round = 0; round < 300; round++) {
+            int gridSize = 2 + random.nextInt(10);
+            PuzzleBoard board = new PuzzleBoard(gridSize, false, true);
+            board.shuffle(random.nextLong());
+            int cellCount = board.getCellCount();
+
+            int expected = countMisplaced(board) - countCycles(board);
+            int[] plan = new int[cellCount * 2];
+            int swaps = new SwapPlanner(cellCount).planInto(board, allCells(cellCount), plan);
+            assertEquals(expected, swaps);
+
+            board.applySwapPlan(plan, swaps);
+            assertTrue(board.isComplete());
+            BoardInvariants.assertConsistent(board);
+        }
+    }
+
+    @Test
+    public void planMatchesGeneratorMinimum() {
+        Random random = new Random(8);
+        for (int round = 0; round < 200; round++) {
+            int gridSize = 3 + random.nextInt(9);
+            int cellCount = gridSize * gridSize;
+            int correctPieces = random.nextInt(cellCount / 2);
+            int cycleCount = 1 + random.nextInt((cellCount - correctPieces) / 2);
+            ShuffleGenerator generator = new ShuffleGenerator(gridSize, false, correctPieces, cycleCount);
+            PuzzleBoard board = new PuzzleBoard(gridSize, false, true);
+            board.setShuffleGenerator(generator);
+            board.shuffle(random.nextLong());
+
+            int[] plan = new int[cellCount * 2];
+            assertEquals(generator.getMinSwaps(),
+                    new SwapPlanner(cellCount).planInto(board, allCells(cellCount), plan));
+        }
+    }
+
+    @Test
+    public void partialTargetsCostOneSwapEach() {
+        // Chu trình 0 -> 1 -> 2: cell 0 chứa piece 1, cell 1 chứa piece 2, cell 2 chứa piece 0
+        PuzzleBoard board = new PuzzleBoard(3, false, true);
+        board.swapCells(0, 1);
+        board.swapCells(1, 2);
+        assertEquals(1, board.pieceAt(0));
+        assertEquals(2, board.pieceAt(1));
+        assertEquals(0, board.pieceAt(2));
+
+        SwapPlanner planner = new SwapPlanner(9);
+        int[] plan = new int[18];
+        int swaps = planner.planInto(board, new int[]{1}, plan);
+        assertEquals(1, swaps);
+        board.applySwapPlan(plan, swaps);
+        assertTrue(board.isCorrect(1));
+        assertEquals(7, board.getCorrectCount());
+
+        // Chu trình còn lại (0 <-> 2) là đích hết: 1 swap sửa cả 2
+        swaps = planner.planInto(board, new int[]{0, 2}, plan);
+        assertEquals(1, swaps);
+        board.applySwapPlan(plan, swaps);
+        assertTrue(board.isComplete());
+    }
+
+    @Test
+    public void randomTargetsUseMinimumPerCycle() {
+        Random random = new Random(9);
+        for (int round = 0; round < 300; round++) {
+            int gridSize = 2 + random.nextInt(9);
+            PuzzleBoard board = new PuzzleBoard(gridSize, random.nextBoolean(), true);
+            board.shuffle(random.nextLong());
+            int cellCount = board.getCellCount();
+
+            boolean[] isTarget = new boolean[cellCount];
+            int targetCount = 0;
+            for (int cell = 0; cell < cellCount; cell++) {
+                isTarget[cell] = random.nextInt(3) == 0;
+                if (isTarget[cell]) {
+                    targetCount++;
+                }
+            }
+            int[] targets = new int[targetCount];
+            for (int cell = 0, i = 0; cell < cellCount; cell++) {
+                if (isTarget[cell]) {
+                    targets[i++] = cell;
+                }
+            }
+
+            // k đích trong chu trình dài L: k swap, hoặc L - 1 nếu cả chu trình là đích
+            int expected = 0;
+            boolean[] visited = new boolean[cellCount];
+            for (int start = 0; start < cellCount; start++) {
+                if (visited[start]) {
+                    continue;
+                }
+                int length = 0;
+                int hits = 0;
+                int cell = start;
+                do {
+                    visited[cell] = true;
+                    length++;
+                    if (isTarget[cell]) {
+                        hits++;
+                    }
+                    cell = board.pieceAt(cell);
+                } while (cell != start);
+                if (length > 1) {
+                    expected += hits == length ? length - 1 : hits;
+                }
+            }
+
+            int[] plan = new int[cellCount * 2];
+            int[] untouched = board.copyCells();
+            int swaps = new SwapPlanner(cellCount).planInto(board, targets, plan);
+            assertEquals(expected, swaps);
+            assertArrayEquals(untouched, board.copyCells());
+
+            board.applySwapPlan(plan, swaps);
+            for (int target : targets) {
+                assertTrue(board.isCorrect(target));
+            }
+            BoardInvariants.assertConsistent(board);
+        }
+    }
+
+    @Test
+    public void rotatedTargetsAreStraightened() {
+        Random random = new Random(10);
+        for (int round = 0; round < 200; round++) {
+            int gridSize = 2 + random.nextInt(9);
+            PuzzleBoard board = new PuzzleBoard(gridSize, false, true, true);
+            board.shuffle(random.nextLong());
+            int cellCount = board.getCellCount();
+
+            int[] plan = new int[cellCount * 2];
+            int swaps = new SwapPlanner(cellCount).planInto(board, allCells(cellCount), plan);
+            assertTrue(swaps <= cellCount);
+            board.applySwapPlan(plan, swaps);
+            assertTrue(board.isComplete());
+        }
+    }
+
+    @Test
+    public void autoSolveFinishesWithinMisplacedSwaps() {
+        Random random = new Random(11);
+        for (int round = 0; round < 200; round++) {
+            int gridSize = 2 + random.nextInt(9);
+            PuzzleBoard board = new PuzzleBoard(gridSize, random.nextBoolean(), true, random.nextBoolean());
+            board.shuffle(random.nextLong());
+            int cellCount = board.getCellCount();
+            SwapPlanner planner = new SwapPlanner(cellCount);
+            int[] plan = new int[cellCount * 2];
+
+            // Mỗi swap đưa ít nhất một piece về đúng chỗ (hoặc dựng thẳng một piece)
+            int budget = cellCount - board.getCorrectCount();
+            int used = 0;
+            while (board.canAutoSolve()) {
+                int swaps = planner.planAutoSolve(board, plan);
+                assertEquals(1, swaps);
+                board.applySwapPlan(plan, swaps);
+                used++;
+                assertTrue("Auto solve used more than " + budget + " swaps", used <= budget);
+            }
+            assertEquals(0, planner.planAutoSolve(board, plan));
+            BoardInvariants.assertConsistent(board);
+        }
+    }
+
+    private static int[] allCells(int cellCount) {
+        int[] cells = new int[cellCount];
+        for (int cell = 0; cell < cellCount; cell++) {
+            cells[cell] = cell;
+        }
+        return cells;
+    }
+
+    private static int countMisplaced(PuzzleBoard board) {
+        int misplaced = 0;
+        for (int cell = 0; cell < board.getCellCount(); cell++) {
+            if (board.pieceAt(cell) != cell) {
+                misplaced++;
+            }
+        }
+        return misplaced;
+    }
+
+    /**
+     * Số chu trình dài hơn 1 của hoán vị cell -> piece.
+     */
+    private static int countCycles(PuzzleBoard board) {
+        int cellCount = board.getCellCount();
+        boolean[] visited = new boolean[cellCount];
+        int cycles = 0;
+        for (int start = 0; start < cellCount; start++) {
+            if (visited[start] || board.pieceAt(start) == start) {
+                continue;
+            }
+            cycles++;
+            int cell = start;
+            do {
+                visited[cell] = true;
+                cell = board.pieceAt(cell);
+            } while (cell != start);
+        }
+        return cycles;
+    }
+}